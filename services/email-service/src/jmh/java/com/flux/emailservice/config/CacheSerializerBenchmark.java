@@ -0,0 +1,105 @@
+package com.flux.emailservice.config;
+
+import com.flux.emailservice.entity.EmailTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: So sánh bytes và ns per cache put (encode) / get (decode) của EmailTemplate
+ * Context: Serializers được build bằng RedisConfig.cacheValueSerializer giống cache manager.
+ *          Không gồm network round-trip tới Redis; phần đó tỉ lệ với serialized size
+ *          được in ra lúc setup
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+@State(Scope.Benchmark)
+public class CacheSerializerBenchmark {
+
+    @Param({"json", "compact"})
+    public String serializer;
+
+    // Why: 0 = không nén
+    @Param({"0", "1024"})
+    public int compressionThresholdBytes;
+
+    // Why: Số content blocks trong HTML, 4 ~ WELCOME_EMAIL, 40 ~ digest template lớn
+    @Param({"4", "40"})
+    public int blocks;
+
+    private RedisSerializer<Object> cacheSerializer;
+    private EmailTemplate template;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ApplicationProperties.Cache config = new ApplicationProperties.Cache();
+        config.setSerializer(serializer);
+        config.setCompressionThresholdBytes(compressionThresholdBytes);
+        cacheSerializer = RedisConfig.cacheValueSerializer(config);
+        template = sampleTemplate(blocks);
+        encoded = cacheSerializer.serialize(template);
+        System.out.printf("%n[%s, threshold=%d, blocks=%d] serialized size: %d bytes%n",
+                          serializer, compressionThresholdBytes, blocks, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] put() {
+        return cacheSerializer.serialize(template);
+    }
+
+    @Benchmark
+    public Object get() {
+        return cacheSerializer.deserialize(encoded);
+    }
+
+    private static EmailTemplate sampleTemplate(int blocks) {
+        StringBuilder html = new StringBuilder("""
+                <!DOCTYPE html>
+                <html xmlns:th="http://www.thymeleaf.org">
+                <head><meta charset="UTF-8"><title th:text="${subject}">Flux</title></head>
+                <body style="font-family: Arial, sans-serif; background-color: #f4f4f5; margin: 0; padding: 0;">
+                """);
+        for (int i = 0; i < blocks; i++) {
+            html.append("""
+                    <table role="presentation" width="100%%" cellpadding="0" cellspacing="0" style="max-width: 600px; margin: 0 auto;">
+                      <tr><td style="padding: 24px; background-color: #ffffff; border-radius: 8px;">
+                        <h2 style="color: #18181b; font-size: 20px;">Xin chào <span th:text="${userName}">bạn</span> (%d)</h2>
+                        <p style="color: #3f3f46; line-height: 1.6;">Bạn có thông báo mới từ <strong th:text="${serverName}">Flux</strong>.</p>
+                        <a th:href="${actionUrl}" style="display: inline-block; padding: 12px 24px; background-color: #6366f1; color: #ffffff; text-decoration: none; border-radius: 6px;">Xem ngay</a>
+                      </td></tr>
+                    </table>
+                    """.formatted(i));
+        }
+        html.append("""
+                <p style="color: #71717a; font-size: 12px;">Liên hệ <a th:href="'mailto:' + ${supportEmail}" th:text="${supportEmail}">support</a> · © <span th:text="${currentYear}">2024</span> Flux</p>
+                </body>
+                </html>
+                """);
+
+        EmailTemplate template = new EmailTemplate("WELCOME_EMAIL", "WELCOME",
+                "Chào mừng [[${userName}]] đến với Flux!", html.toString(),
+                "Xin chào [[${userName}]], chào mừng bạn đến với Flux.", "system");
+        template.setId(42L);
+        template.setCurrentVersionId(7L);
+        template.setCreatedAt(LocalDateTime.of(2024, 1, 15, 10, 30));
+        template.setUpdatedAt(LocalDateTime.of(2024, 3, 2, 8, 0, 12, 345_000_000));
+        return template;
+    }
+}
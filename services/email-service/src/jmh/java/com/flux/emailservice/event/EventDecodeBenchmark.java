@@ -0,0 +1,120 @@
+package com.flux.emailservice.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: So sánh decode + build template variables giữa generic Map path và typed payload path
+ * Context: Chạy với -prof gc để xem gc.alloc.rate.norm (bytes/event) bên cạnh decode time.
+ *          Legacy path giống Jackson2JsonMessageConverter + handler cũ: readValue vào
+ *          EmailEvent (data là LinkedHashMap), rồi copy từng getter vào HashMap mới
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+@State(Scope.Benchmark)
+public class EventDecodeBenchmark {
+
+    @Param({EmailEvent.EventTypes.USER_CREATED,
+            EmailEvent.EventTypes.SERVER_MEMBER_INVITED,
+            EmailEvent.EventTypes.PASSWORD_RESET_REQUESTED})
+    public String eventType;
+
+    private ObjectMapper objectMapper;
+    private EmailEventDecoder decoder;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Why: Cùng cấu hình với ObjectMapper bean của Spring Boot
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        decoder = new EmailEventDecoder(objectMapper);
+        body = sampleEvent(eventType).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String, Object> legacyDecode() throws Exception {
+        EmailEvent event = objectMapper.readValue(body, EmailEvent.class);
+        return legacyTemplateVariables(event);
+    }
+
+    @Benchmark
+    public Map<String, Object> typedDecode() {
+        EmailEvent event = decoder.decode(eventType, body);
+        // Why: Static defaults được merge lúc render bởi TemplateVariableResolver
+        return event.getPayload().templateVariables();
+    }
+
+    /**
+     * Why: Bản sao các handlers trước khi có typed payloads
+     */
+    private static Map<String, Object> legacyTemplateVariables(EmailEvent event) {
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("userName", event.getUserName());
+        templateVariables.put("userEmail", event.getUserEmail());
+        switch (event.getEventType()) {
+            case EmailEvent.EventTypes.SERVER_MEMBER_INVITED -> {
+                templateVariables.put("serverName", event.getServerName());
+                templateVariables.put("inviterName", event.getInviterName());
+                templateVariables.put("inviteUrl", event.getInviteUrl());
+            }
+            case EmailEvent.EventTypes.PASSWORD_RESET_REQUESTED -> {
+                templateVariables.put("resetUrl", "https://flux.com/reset-password?token=" + event.getResetToken());
+                templateVariables.put("resetToken", event.getResetToken());
+                templateVariables.put("expiryMinutes", "30");
+            }
+            default -> templateVariables.put("loginUrl", "https://flux.com/login");
+        }
+        templateVariables.put("supportEmail", "support@flux.com");
+        templateVariables.put("currentYear", "2024");
+        templateVariables.putAll(event.getAdditionalData());
+        return templateVariables;
+    }
+
+    private static String sampleEvent(String eventType) {
+        String data = switch (eventType) {
+            case EmailEvent.EventTypes.SERVER_MEMBER_INVITED -> """
+                    "serverId": "srv-7f3a2c", "serverName": "Flux Builders",
+                    "inviterName": "Tran Thi B", "inviteUrl": "https://flux.com/invite/abc123",
+                    """;
+            case EmailEvent.EventTypes.PASSWORD_RESET_REQUESTED -> """
+                    "resetToken": "c1d8f0e2-5b7a-4c3e-9f21-6a0b8d4e7c19",
+                    """;
+            default -> "";
+        };
+        return """
+                {
+                  "eventType": "%s",
+                  "eventId": "5b0e6f8a-2c1d-4e3f-8a9b-0c1d2e3f4a5b",
+                  "timestamp": "2024-01-15T10:30:00",
+                  "version": "1.0",
+                  "data": {
+                    "userId": "8d9e0f1a-2b3c-4d5e-6f7a-8b9c0d1e2f3a",
+                    "userEmail": "nguyen.van.a@example.com",
+                    "userName": "Nguyen Van A",
+                    %s
+                    "additionalData": {"locale": "vi-VN", "source": "web"}
+                  }
+                }
+                """.formatted(eventType, data);
+    }
+}
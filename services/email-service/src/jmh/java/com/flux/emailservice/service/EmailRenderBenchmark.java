@@ -0,0 +1,197 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.entity.EmailQueue;
+import com.flux.emailservice.entity.EmailTemplate;
+import com.flux.emailservice.repository.DispatchJdbcRepository;
+import com.flux.emailservice.repository.EmailLogRepository;
+import com.flux.emailservice.repository.EmailQueueRepository;
+import com.flux.emailservice.repository.EmailSettingsRepository;
+import com.flux.emailservice.repository.EmailTemplateRepository;
+import com.flux.emailservice.repository.EmailTemplateVersionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: Baseline cho render + MIME-build hot path
+ * Context: Đo ops/sec và allocation rate (-prof gc) của processTemplate và createMimeMessage
+ *          với WELCOME_EMAIL-sized HTML, có và không có text part
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+@State(Scope.Benchmark)
+public class EmailRenderBenchmark {
+
+    private static final String TEMPLATE_NAME = "WELCOME_EMAIL";
+
+    @Param({"true", "false"})
+    public boolean withTextPart;
+
+    private EmailTemplateService emailTemplateService;
+    private EmailSendingService emailSendingService;
+    private Map<String, Object> variables;
+    private EmailQueue emailQueue;
+    private EmailTemplateService.ProcessedTemplate processedTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        EmailTemplate template = new EmailTemplate(
+                TEMPLATE_NAME,
+                "WELCOME",
+                "Welcome to Flux, [[${userName}]]!",
+                readResource("benchmark/welcome-email.html"),
+                withTextPart ? readResource("benchmark/welcome-email.txt") : null,
+                "benchmark"
+        );
+        template.setId(1L);
+
+        // Why: Giống production - SpringTemplateEngine (SpEL) + StringTemplateResolver
+        StringTemplateResolver resolver = new StringTemplateResolver();
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCacheable(false);
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        // Why: Không có settings rows - chỉ built-in defaults (supportEmail, loginUrl, currentYear)
+        //      và giá trị từ ApplicationProperties; snapshot rỗng vì không gọi load()
+        EmailSettingsService emailSettingsService = new EmailSettingsService(
+                stub(EmailSettingsRepository.class, Map.of()), event -> { });
+        TemplateVariableResolver templateVariableResolver = new TemplateVariableResolver(emailSettingsService);
+        emailTemplateService = new EmailTemplateService(
+                templateRepository(template), stub(EmailTemplateVersionRepository.class, Map.of()),
+                templateEngine, templateVariableResolver);
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(2525);
+
+        emailSendingService = new EmailSendingService(
+                mailSender,
+                emailTemplateService,
+                stub(EmailLogRepository.class, Map.of()),
+                stub(EmailQueueRepository.class, Map.of()),
+                applicationProperties,
+                new RateLimitService(null, applicationProperties, emailSettingsService),
+                new SmtpConcurrencyLimiter(applicationProperties, meterRegistry, emailSettingsService),
+                new SmtpFailureClassifier(),
+                new TemplateVersionRegistry(stub(EmailTemplateVersionRepository.class, Map.of()), emailTemplateService),
+                // Why: Benchmark chỉ render và build MIME, không ghi database
+                new DispatchJdbcRepository(null, null)
+        );
+
+        variables = new HashMap<>();
+        variables.put("userName", "Nguyen Van A");
+        variables.put("userEmail", "nguyen.van.a@example.com");
+
+        emailQueue = new EmailQueue("nguyen.van.a@example.com", "Nguyen Van A", template, variables, 3);
+        emailQueue.setId(42L);
+
+        processedTemplate = emailTemplateService.processTemplate(TEMPLATE_NAME, variables);
+    }
+
+    @Benchmark
+    public EmailTemplateService.ProcessedTemplate processTemplate() {
+        return emailTemplateService.processTemplate(TEMPLATE_NAME, variables);
+    }
+
+    @Benchmark
+    public MimeMessage createMimeMessage() throws Exception {
+        return emailSendingService.createMimeMessage(emailQueue, processedTemplate);
+    }
+
+    /**
+     * Why: MimeMessage build lazily - serialize giống Transport.send để đo full MIME cost
+     */
+    @Benchmark
+    public MimeMessage createAndWriteMimeMessage() throws Exception {
+        MimeMessage message = emailSendingService.createMimeMessage(emailQueue, processedTemplate);
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+    @Benchmark
+    public MimeMessage renderAndBuild() throws Exception {
+        EmailTemplateService.ProcessedTemplate rendered =
+                emailTemplateService.processTemplate(TEMPLATE_NAME, variables);
+        MimeMessage message = emailSendingService.createMimeMessage(emailQueue, rendered);
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+    private static EmailTemplateRepository templateRepository(EmailTemplate template) {
+        return stub(EmailTemplateRepository.class, Map.of(
+                "findByTemplateNameAndIsActiveTrue", args -> Optional.of(template),
+                "findById", args -> Optional.of(template)
+        ));
+    }
+
+    /**
+     * Why: Minimal in-memory stub cho Spring Data repositories
+     * Context: Benchmark không cần database - chỉ những methods trên hot path được implement
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T stub(Class<T> type, Map<String, StubMethod> methods) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            StubMethod handler = methods.get(method.getName());
+            if (handler != null) {
+                return handler.invoke(args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + "Stub";
+                };
+            }
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+        });
+    }
+
+    static String readResource(String path) throws IOException {
+        try (InputStream in = EmailRenderBenchmark.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IOException("Benchmark resource not found: " + path);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @FunctionalInterface
+    interface StubMethod {
+        Object invoke(Object[] args) throws Exception;
+    }
+}
@@ -0,0 +1,324 @@
+package com.flux.emailservice.loadtest;
+
+import com.flux.emailservice.EmailServiceApplication;
+import com.flux.emailservice.entity.EmailTemplate;
+import com.flux.emailservice.repository.EmailTemplateRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.RabbitMQContainer;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Why: End-to-end throughput benchmark cho toàn bộ pipeline
+ * Context: AMQP event → EmailEventListener → queue → EmailProcessingJob → render → SMTP,
+ *          chạy trên Testcontainers Postgres/Redis/RabbitMQ và FakeSmtpServer in-process.
+ *          Output: sustained throughput, p50/p99 event-to-SMTP-accept latency,
+ *          DB statements (đếm ở JDBC level) và Redis commands per email, CPU time và allocations
+ *          per 10k emails
+ *
+ * Run: mvn -Pload-test test-compile exec:exec [-Dloadtest.events=10000 -Dloadtest.rate=1000 ...]
+ *      Arguments dạng --app.email.batch-size=100 được forward vào application context
+ */
+public class EmailPipelineLoadTest {
+
+    private static final int EVENTS = Integer.getInteger("loadtest.events", 5000);
+    private static final int WARMUP_EVENTS = Integer.getInteger("loadtest.warmupEvents", 500);
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "500"));
+    private static final int DOMAINS = Integer.getInteger("loadtest.domains", 20);
+    private static final long SMTP_LATENCY_MS = Long.getLong("loadtest.smtpLatencyMs", 20L);
+    private static final double TRANSIENT_FAILURE_RATE =
+            Double.parseDouble(System.getProperty("loadtest.transientFailureRate", "0.0"));
+    private static final double PERMANENT_FAILURE_RATE =
+            Double.parseDouble(System.getProperty("loadtest.permanentFailureRate", "0.0"));
+    private static final long TIMEOUT_SECONDS = Long.getLong("loadtest.timeoutSeconds", 600L);
+
+    // Why: JDBC statement executions trên DataSource của application, gồm cả JdbcTemplate
+    private static final AtomicLong JDBC_STATEMENTS = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+             RabbitMQContainer rabbit = new RabbitMQContainer("rabbitmq:3.12-management-alpine");
+             GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+             FakeSmtpServer smtp = new FakeSmtpServer(SMTP_LATENCY_MS, TRANSIENT_FAILURE_RATE, PERMANENT_FAILURE_RATE)) {
+
+            postgres.start();
+            rabbit.start();
+            redis.start();
+
+            try (ConfigurableApplicationContext context = startApplication(postgres, rabbit, redis, smtp, args)) {
+                seedTemplates(context.getBean(EmailTemplateRepository.class));
+
+                CachingConnectionFactory publisherConnections =
+                        new CachingConnectionFactory(rabbit.getHost(), rabbit.getAmqpPort());
+                publisherConnections.setUsername(rabbit.getAdminUsername());
+                publisherConnections.setPassword(rabbit.getAdminPassword());
+                RabbitTemplate publisher = new RabbitTemplate(publisherConnections);
+                publisher.setMessageConverter(new Jackson2JsonMessageConverter());
+
+                try {
+                    LoadTestEventGenerator generator = new LoadTestEventGenerator(publisher, DOMAINS);
+
+                    // Why: Warm-up để JIT, connection pools và template parsing ổn định trước khi đo
+                    if (WARMUP_EVENTS > 0) {
+                        generator.publish("warmup", WARMUP_EVENTS, RATE);
+                        awaitDelivery(smtp, WARMUP_EVENTS);
+                    }
+
+                    Statistics statistics = hibernateStatistics(context);
+                    statistics.clear();
+                    long jdbcStatementsBefore = JDBC_STATEMENTS.get();
+                    long redisCommandsBefore = redisCommandCount(context);
+                    long acceptedBefore = smtp.getAcceptedCount();
+                    long permanentBefore = smtp.getPermanentFailureCount();
+                    long transientBefore = smtp.getTransientFailureCount();
+                    ResourceSample resourcesBefore = ResourceSample.take();
+
+                    generator.publish("run", EVENTS, RATE);
+                    boolean completed = awaitDelivery(smtp, WARMUP_EVENTS + EVENTS);
+
+                    long jdbcStatements = JDBC_STATEMENTS.get() - jdbcStatementsBefore;
+                    // Why: -2 cho chính hai lệnh INFO dùng để đo
+                    long redisCommands = redisCommandCount(context) - redisCommandsBefore - 2;
+                    long accepted = smtp.getAcceptedCount() - acceptedBefore;
+                    ResourceSample resources = ResourceSample.take().minus(resourcesBefore);
+
+                    report(generator.getPublishedAtNanos(), smtp.getAcceptedAtNanos(), "run-",
+                            accepted,
+                            smtp.getPermanentFailureCount() - permanentBefore,
+                            smtp.getTransientFailureCount() - transientBefore,
+                            jdbcStatements, statistics, redisCommands, resources, completed);
+                } finally {
+                    publisherConnections.destroy();
+                }
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(PostgreSQLContainer<?> postgres,
+                                                                   RabbitMQContainer rabbit,
+                                                                   GenericContainer<?> redis,
+                                                                   FakeSmtpServer smtp,
+                                                                   String[] args) {
+        return new SpringApplicationBuilder(EmailServiceApplication.class)
+                .profiles("loadtest")
+                .initializers(context -> context.getBeanFactory()
+                        .addBeanPostProcessor(StatementCountingDataSource.wrapping(JDBC_STATEMENTS)))
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + postgres.getJdbcUrl(),
+                        "spring.datasource.username=" + postgres.getUsername(),
+                        "spring.datasource.password=" + postgres.getPassword(),
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=true",
+                        "spring.rabbitmq.host=" + rabbit.getHost(),
+                        "spring.rabbitmq.port=" + rabbit.getAmqpPort(),
+                        "spring.rabbitmq.username=" + rabbit.getAdminUsername(),
+                        "spring.rabbitmq.password=" + rabbit.getAdminPassword(),
+                        "spring.data.redis.host=" + redis.getHost(),
+                        "spring.data.redis.port=" + redis.getMappedPort(6379),
+                        "spring.mail.host=localhost",
+                        "spring.mail.port=" + smtp.getPort(),
+                        "spring.mail.username=",
+                        "spring.mail.password=",
+                        "spring.mail.properties.mail.smtp.auth=false",
+                        "spring.mail.properties.mail.smtp.starttls.enable=false",
+                        "app.email.processing-interval-ms=100",
+                        "app.email.batch-size=50",
+                        "logging.level.com.flux.emailservice=WARN",
+                        "logging.level.org.springframework.mail=WARN",
+                        "logging.level.org.springframework.amqp=WARN"
+                )
+                .run(args);
+    }
+
+    /**
+     * Why: Templates tối thiểu cho các event types mà generator publish
+     */
+    private static void seedTemplates(EmailTemplateRepository repository) {
+        String html = "<html><body><h1>Hello <span th:text=\"${userName}\">user</span></h1>"
+                + "<p th:if=\"${serverName}\">Server: <span th:text=\"${serverName}\">server</span></p>"
+                + "<p th:if=\"${inviteUrl}\"><a th:href=\"${inviteUrl}\">Join</a></p>"
+                + "<p th:if=\"${resetUrl}\"><a th:href=\"${resetUrl}\">Reset password</a></p>"
+                + "<footer>&copy; <span th:text=\"${currentYear}\">2024</span> Flux</footer></body></html>";
+        String text = "Hello [[${userName}]]";
+
+        for (String[] definition : new String[][]{
+                {"WELCOME_EMAIL", "WELCOME"},
+                {"SERVER_INVITATION", "INVITATION"},
+                {"SERVER_JOIN_CONFIRMATION", "CONFIRMATION"},
+                {"PASSWORD_RESET", "PASSWORD_RESET"},
+                {"SERVER_CREATED", "NOTIFICATION"}}) {
+            if (repository.findByTemplateNameAndIsActiveTrue(definition[0]).isEmpty()) {
+                repository.save(new EmailTemplate(definition[0], definition[1],
+                        definition[0] + " for [[${userName}]]", html, text, "load-test"));
+            }
+        }
+    }
+
+    /**
+     * Why: Chờ tới khi mọi email được accept hoặc bị reject vĩnh viễn
+     * Context: Transient failures được pipeline retry nên vẫn tính vào accepted
+     */
+    private static boolean awaitDelivery(FakeSmtpServer smtp, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (System.nanoTime() < deadline) {
+            if (smtp.getAcceptedCount() + smtp.getPermanentFailureCount() >= expected) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+    private static Statistics hibernateStatistics(ConfigurableApplicationContext context) {
+        return context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static long redisCommandCount(ConfigurableApplicationContext context) {
+        try (RedisConnection connection = context.getBean(RedisConnectionFactory.class).getConnection()) {
+            Properties stats = connection.serverCommands().info("stats");
+            return Long.parseLong(stats.getProperty("total_commands_processed", "0").trim());
+        }
+    }
+
+    private static void report(Map<String, Long> publishedAt, Map<String, Long> acceptedAt, String runPrefix,
+                               long accepted, long permanentFailures, long transientFailures,
+                               long jdbcStatements, Statistics statistics, long redisCommands, ResourceSample resources,
+                               boolean completed) {
+        List<Long> latenciesNanos = new ArrayList<>();
+        List<Long> acceptTimes = new ArrayList<>();
+        long firstPublish = Long.MAX_VALUE;
+
+        for (Map.Entry<String, Long> entry : publishedAt.entrySet()) {
+            if (!entry.getKey().startsWith(runPrefix)) {
+                continue;
+            }
+            firstPublish = Math.min(firstPublish, entry.getValue());
+            Long accept = acceptedAt.get(entry.getKey());
+            if (accept != null) {
+                latenciesNanos.add(accept - entry.getValue());
+                acceptTimes.add(accept);
+            }
+        }
+
+        Collections.sort(latenciesNanos);
+        Collections.sort(acceptTimes);
+
+        double perEmail = Math.max(1, accepted);
+        System.out.println();
+        System.out.println("==== Email pipeline load test ====");
+        System.out.printf("events=%d rate=%.0f/s domains=%d smtpLatency=%dms transient=%.3f permanent=%.3f%n",
+                EVENTS, RATE, DOMAINS, SMTP_LATENCY_MS, TRANSIENT_FAILURE_RATE, PERMANENT_FAILURE_RATE);
+        System.out.printf("completed=%s accepted=%d permanentFailures=%d transientFailures=%d%n",
+                completed, accepted, permanentFailures, transientFailures);
+
+        if (!acceptTimes.isEmpty()) {
+            double totalSeconds = (acceptTimes.get(acceptTimes.size() - 1) - firstPublish) / 1e9;
+            System.out.printf("throughput (overall)   = %.1f emails/s%n", acceptTimes.size() / totalSeconds);
+            System.out.printf("throughput (sustained) = %.1f emails/s%n", sustainedThroughput(acceptTimes));
+            System.out.printf("latency p50 = %.1f ms, p99 = %.1f ms, max = %.1f ms%n",
+                    percentile(latenciesNanos, 0.50) / 1e6,
+                    percentile(latenciesNanos, 0.99) / 1e6,
+                    latenciesNanos.get(latenciesNanos.size() - 1) / 1e6);
+        }
+
+        System.out.printf("db statements/email     = %.2f (jdbc executions=%d)%n",
+                jdbcStatements / perEmail, jdbcStatements);
+        // Why: Hibernate statistics chỉ thấy phần JPA - để biết statements đến từ đâu, không dùng so sánh
+        System.out.printf("  of which hibernate    : prepared=%d, entity loads=%d, queries=%d%n",
+                statistics.getPrepareStatementCount(),
+                statistics.getEntityLoadCount(),
+                statistics.getQueryExecutionCount());
+        // Why: Dispatcher statements chạy autocommit ngoài JPA nên không có trong transaction count
+        System.out.printf("jpa transactions/email  = %.2f%n", statistics.getTransactionCount() / perEmail);
+        System.out.printf("redis commands/email    = %.2f (total=%d)%n", redisCommands / perEmail, redisCommands);
+        System.out.printf("cpu / 10k emails        = %.2f s (process cpu %.2f s)%n",
+                resources.cpuNanos / 1e9 / perEmail * 10_000, resources.cpuNanos / 1e9);
+        System.out.printf("allocated / 10k emails  = %.1f MB (gc count=%d, gc time=%d ms)%n",
+                resources.allocatedBytes / 1e6 / perEmail * 10_000, resources.gcCount, resources.gcMillis);
+        System.out.println("==================================");
+    }
+
+    /**
+     * Why: Process CPU time, bytes allocated và GC activity tại một thời điểm
+     * Context: Load test chạy cùng JVM với application nên số liệu gồm cả publisher và
+     *          FakeSmtpServer - dùng để so sánh giữa các builds với cùng settings, không phải
+     *          giá trị tuyệt đối. Allocations cộng trên threads còn sống; dispatcher / listener
+     *          threads được pool nên gần như đầy đủ
+     */
+    private static final class ResourceSample {
+        private final long cpuNanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private ResourceSample(long cpuNanos, long allocatedBytes, long gcCount, long gcMillis) {
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        private static ResourceSample take() {
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+            long allocated = 0;
+            for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                allocated += Math.max(0, bytes);
+            }
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcMillis += Math.max(0, gc.getCollectionTime());
+            }
+            return new ResourceSample(os.getProcessCpuTime(), allocated, gcCount, gcMillis);
+        }
+
+        private ResourceSample minus(ResourceSample before) {
+            return new ResourceSample(cpuNanos - before.cpuNanos, allocatedBytes - before.allocatedBytes,
+                    gcCount - before.gcCount, gcMillis - before.gcMillis);
+        }
+    }
+
+    /**
+     * Why: Throughput trên middle 80% accepts - bỏ ramp-up và tail
+     */
+    private static double sustainedThroughput(List<Long> sortedAcceptTimes) {
+        int from = (int) (sortedAcceptTimes.size() * 0.1);
+        int to = (int) (sortedAcceptTimes.size() * 0.9) - 1;
+        if (to <= from) {
+            return 0.0;
+        }
+        double seconds = (sortedAcceptTimes.get(to) - sortedAcceptTimes.get(from)) / 1e9;
+        return seconds > 0 ? (to - from) / seconds : 0.0;
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
@@ -0,0 +1,185 @@
+package com.flux.emailservice.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Why: In-process SMTP sink cho load tests
+ * Context: Accept mọi message với configurable latency và failure injection
+ *          (transient 451 / permanent 550), ghi lại thời điểm accept theo recipient
+ */
+public class FakeSmtpServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(FakeSmtpServer.class);
+
+    private final long latencyMs;
+    private final double transientFailureRate;
+    private final double permanentFailureRate;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connectionPool = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "fake-smtp");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Long> acceptedAtNanos = new ConcurrentHashMap<>();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong transientFailures = new AtomicLong();
+    private final AtomicLong permanentFailures = new AtomicLong();
+    private volatile boolean running = true;
+
+    public FakeSmtpServer(long latencyMs, double transientFailureRate, double permanentFailureRate)
+            throws IOException {
+        this.latencyMs = latencyMs;
+        this.transientFailureRate = transientFailureRate;
+        this.permanentFailureRate = permanentFailureRate;
+        this.serverSocket = new ServerSocket(0);
+
+        Thread acceptor = new Thread(this::acceptLoop, "fake-smtp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public Map<String, Long> getAcceptedAtNanos() {
+        return acceptedAtNanos;
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getTransientFailureCount() {
+        return transientFailures.get();
+    }
+
+    public long getPermanentFailureCount() {
+        return permanentFailures.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionPool.submit(() -> handle(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Fake SMTP accept failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Why: Minimal SMTP state machine - đủ cho Jakarta Mail client
+     */
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+
+            reply(out, "220 fake-smtp ESMTP ready");
+            List<String> recipients = new ArrayList<>();
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+
+                if (command.startsWith("EHLO")) {
+                    reply(out, "250-fake-smtp\r\n250-8BITMIME\r\n250 SIZE 52428800");
+                } else if (command.startsWith("HELO")) {
+                    reply(out, "250 fake-smtp");
+                } else if (command.startsWith("MAIL FROM")) {
+                    recipients.clear();
+                    reply(out, "250 2.1.0 OK");
+                } else if (command.startsWith("RCPT TO")) {
+                    recipients.add(extractAddress(line));
+                    reply(out, "250 2.1.5 OK");
+                } else if (command.equals("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        // Why: Drain message body
+                    }
+                    reply(out, completeMessage(recipients));
+                } else if (command.equals("RSET") || command.equals("NOOP")) {
+                    recipients.clear();
+                    reply(out, "250 2.0.0 OK");
+                } else if (command.equals("QUIT")) {
+                    reply(out, "221 2.0.0 Bye");
+                    return;
+                } else {
+                    reply(out, "502 5.5.2 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Fake SMTP connection closed: {}", e.getMessage());
+        }
+    }
+
+    private String completeMessage(List<String> recipients) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < permanentFailureRate) {
+            permanentFailures.incrementAndGet();
+            return "550 5.1.1 Recipient address rejected: user unknown";
+        }
+        if (roll < permanentFailureRate + transientFailureRate) {
+            transientFailures.incrementAndGet();
+            return "451 4.3.0 Temporary failure, try again later";
+        }
+
+        long now = System.nanoTime();
+        for (String recipient : recipients) {
+            acceptedAtNanos.putIfAbsent(recipient, now);
+        }
+        accepted.incrementAndGet();
+        return "250 2.0.0 Queued";
+    }
+
+    private static String extractAddress(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>');
+        String address = start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(8).trim();
+        return address.toLowerCase(Locale.ROOT);
+    }
+
+    private static void reply(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connectionPool.shutdownNow();
+    }
+}
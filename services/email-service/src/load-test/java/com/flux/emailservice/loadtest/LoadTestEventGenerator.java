@@ -0,0 +1,80 @@
+package com.flux.emailservice.loadtest;
+
+import com.flux.emailservice.config.RabbitMQConfig;
+import com.flux.emailservice.event.EmailEvent;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Why: Publish EmailEvents lên app.events với target rate cố định
+ * Context: Mỗi event có một recipient duy nhất để correlate publish time với SMTP accept time
+ */
+public class LoadTestEventGenerator {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final int domainCount;
+    private final Map<String, Long> publishedAtNanos = new ConcurrentHashMap<>();
+
+    public LoadTestEventGenerator(RabbitTemplate rabbitTemplate, int domainCount) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.domainCount = Math.max(1, domainCount);
+    }
+
+    public Map<String, Long> getPublishedAtNanos() {
+        return publishedAtNanos;
+    }
+
+    /**
+     * Why: Open-loop publishing - không chờ pipeline, giữ đúng target rate
+     * Context: Mix event types gần với production: phần lớn welcome, một phần invitation và password reset
+     */
+    public void publish(String runId, int events, double ratePerSecond) {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long next = System.nanoTime();
+
+        for (int i = 0; i < events; i++) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            next += intervalNanos;
+
+            String recipient = runId + "-" + i + "@d" + (i % domainCount) + ".loadtest.flux.dev";
+            EmailEvent event = createEvent(i, recipient);
+
+            publishedAtNanos.put(recipient, System.nanoTime());
+            rabbitTemplate.convertAndSend(RabbitMQConfig.EXCHANGE_NAME, event.getEventType(), event);
+        }
+    }
+
+    private static EmailEvent createEvent(int sequence, String recipient) {
+        String eventType;
+        int bucket = sequence % 10;
+        if (bucket < 7) {
+            eventType = EmailEvent.EventTypes.USER_CREATED;
+        } else if (bucket < 9) {
+            eventType = EmailEvent.EventTypes.SERVER_MEMBER_INVITED;
+        } else {
+            eventType = EmailEvent.EventTypes.PASSWORD_RESET_REQUESTED;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", "user-" + sequence);
+        data.put("userEmail", recipient);
+        data.put("userName", "Load Test User " + sequence);
+        data.put("serverId", "server-" + (sequence % 50));
+        data.put("serverName", "Load Test Server " + (sequence % 50));
+        data.put("inviterName", "Load Test Inviter");
+        data.put("inviteUrl", "https://flux.com/invite/" + sequence);
+        data.put("resetToken", UUID.randomUUID().toString());
+
+        return new EmailEvent(eventType, UUID.randomUUID().toString(), LocalDateTime.now().withNano(0), "1.0", data);
+    }
+}
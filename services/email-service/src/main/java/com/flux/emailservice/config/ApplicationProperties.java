@@ -3,7 +3,10 @@ package com.flux.emailservice.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Why: Type-safe configuration properties
@@ -21,6 +24,19 @@ public class ApplicationProperties {
     private long processingIntervalMs = 30000;
     private Template template = new Template();
     private Security security = new Security();
+    private Smtp smtp = new Smtp();
+    private DomainShaping domainShaping = new DomainShaping();
+    private Coalescing coalescing = new Coalescing();
+    private Deduplication deduplication = new Deduplication();
+    private Dispatch dispatch = new Dispatch();
+    private Tenancy tenancy = new Tenancy();
+    private Express express = new Express();
+    private Consumers consumers = new Consumers();
+    private Admission admission = new Admission();
+    private Cache cache = new Cache();
+    private Warmup warmup = new Warmup();
+    private Replica replica = new Replica();
+    private Settings settings = new Settings();
 
     // Getters and Setters
     public String getFromAddress() {
@@ -87,6 +103,110 @@ public class ApplicationProperties {
         this.security = security;
     }
 
+    public Smtp getSmtp() {
+        return smtp;
+    }
+
+    public void setSmtp(Smtp smtp) {
+        this.smtp = smtp;
+    }
+
+    public DomainShaping getDomainShaping() {
+        return domainShaping;
+    }
+
+    public void setDomainShaping(DomainShaping domainShaping) {
+        this.domainShaping = domainShaping;
+    }
+
+    public Coalescing getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(Coalescing coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public Deduplication getDeduplication() {
+        return deduplication;
+    }
+
+    public void setDeduplication(Deduplication deduplication) {
+        this.deduplication = deduplication;
+    }
+
+    public Dispatch getDispatch() {
+        return dispatch;
+    }
+
+    public void setDispatch(Dispatch dispatch) {
+        this.dispatch = dispatch;
+    }
+
+    public Tenancy getTenancy() {
+        return tenancy;
+    }
+
+    public void setTenancy(Tenancy tenancy) {
+        this.tenancy = tenancy;
+    }
+
+    public Express getExpress() {
+        return express;
+    }
+
+    public void setExpress(Express express) {
+        this.express = express;
+    }
+
+    public Consumers getConsumers() {
+        return consumers;
+    }
+
+    public void setConsumers(Consumers consumers) {
+        this.consumers = consumers;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Warmup getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    public Replica getReplica() {
+        return replica;
+    }
+
+    public void setReplica(Replica replica) {
+        this.replica = replica;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(Settings settings) {
+        this.settings = settings;
+    }
+
     /**
      * Why: Nested configuration class cho retry settings
      */
@@ -94,6 +214,11 @@ public class ApplicationProperties {
         private int maxAttempts = 3;
         private long delayMs = 5000;
         private double backoffMultiplier = 2.0;
+        private double jitterRatio = 0.5;
+        private double budgetRatio = 0.2;
+        private double budgetMinPerSecond = 1.0;
+        private double budgetMaxTokens = 100.0;
+        private long budgetExhaustedDelayMs = 300000;
 
         public int getMaxAttempts() {
             return maxAttempts;
@@ -118,6 +243,46 @@ public class ApplicationProperties {
         public void setBackoffMultiplier(double backoffMultiplier) {
             this.backoffMultiplier = backoffMultiplier;
         }
+
+        public double getJitterRatio() {
+            return jitterRatio;
+        }
+
+        public void setJitterRatio(double jitterRatio) {
+            this.jitterRatio = jitterRatio;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+
+        public double getBudgetMinPerSecond() {
+            return budgetMinPerSecond;
+        }
+
+        public void setBudgetMinPerSecond(double budgetMinPerSecond) {
+            this.budgetMinPerSecond = budgetMinPerSecond;
+        }
+
+        public double getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public void setBudgetMaxTokens(double budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+        }
+
+        public long getBudgetExhaustedDelayMs() {
+            return budgetExhaustedDelayMs;
+        }
+
+        public void setBudgetExhaustedDelayMs(long budgetExhaustedDelayMs) {
+            this.budgetExhaustedDelayMs = budgetExhaustedDelayMs;
+        }
     }
 
     /**
@@ -166,6 +331,7 @@ public class ApplicationProperties {
         private List<String> blacklistDomains = List.of("10minutemail.com", "tempmail.org");
         private boolean whitelistEnabled = false;
         private List<String> whitelistDomains = List.of();
+        private int suppressionTtlDays = 30;
 
         public List<String> getBlacklistDomains() {
             return blacklistDomains;
@@ -190,5 +356,1154 @@ public class ApplicationProperties {
         public void setWhitelistDomains(List<String> whitelistDomains) {
             this.whitelistDomains = whitelistDomains;
         }
+
+        public int getSuppressionTtlDays() {
+            return suppressionTtlDays;
+        }
+
+        public void setSuppressionTtlDays(int suppressionTtlDays) {
+            this.suppressionTtlDays = suppressionTtlDays;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho SMTP relay settings
+     */
+    public static class Smtp {
+        private Concurrency concurrency = new Concurrency();
+
+        public Concurrency getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(Concurrency concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * Why: AIMD concurrency limiter settings cho mỗi relay
+         * Context: Limit tăng cộng dần khi relay khỏe, giảm nhân khi relay throttle
+         */
+        public static class Concurrency {
+            private int initialLimit = 5;
+            private int minLimit = 1;
+            private int maxLimit = 50;
+            private double backoffRatio = 0.5;
+            private long latencyThresholdMs = 5000;
+            private double latencySpikeFactor = 3.0;
+            private double maxErrorRate = 0.1;
+            private long acquireTimeoutMs = 30000;
+
+            public int getInitialLimit() {
+                return initialLimit;
+            }
+
+            public void setInitialLimit(int initialLimit) {
+                this.initialLimit = initialLimit;
+            }
+
+            public int getMinLimit() {
+                return minLimit;
+            }
+
+            public void setMinLimit(int minLimit) {
+                this.minLimit = minLimit;
+            }
+
+            public int getMaxLimit() {
+                return maxLimit;
+            }
+
+            public void setMaxLimit(int maxLimit) {
+                this.maxLimit = maxLimit;
+            }
+
+            public double getBackoffRatio() {
+                return backoffRatio;
+            }
+
+            public void setBackoffRatio(double backoffRatio) {
+                this.backoffRatio = backoffRatio;
+            }
+
+            public long getLatencyThresholdMs() {
+                return latencyThresholdMs;
+            }
+
+            public void setLatencyThresholdMs(long latencyThresholdMs) {
+                this.latencyThresholdMs = latencyThresholdMs;
+            }
+
+            public double getLatencySpikeFactor() {
+                return latencySpikeFactor;
+            }
+
+            public void setLatencySpikeFactor(double latencySpikeFactor) {
+                this.latencySpikeFactor = latencySpikeFactor;
+            }
+
+            public double getMaxErrorRate() {
+                return maxErrorRate;
+            }
+
+            public void setMaxErrorRate(double maxErrorRate) {
+                this.maxErrorRate = maxErrorRate;
+            }
+
+            public long getAcquireTimeoutMs() {
+                return acquireTimeoutMs;
+            }
+
+            public void setAcquireTimeoutMs(long acquireTimeoutMs) {
+                this.acquireTimeoutMs = acquireTimeoutMs;
+            }
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho per-recipient-domain send shaping
+     * Context: Mailbox providers lớn (gmail.com, outlook.com) throttle theo sending IP
+     */
+    public static class DomainShaping {
+        private boolean enabled = true;
+        private int lookaheadFactor = 5;
+        private DomainLimit defaultLimit = new DomainLimit();
+        private Map<String, DomainLimit> domains = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getLookaheadFactor() {
+            return lookaheadFactor;
+        }
+
+        public void setLookaheadFactor(int lookaheadFactor) {
+            this.lookaheadFactor = lookaheadFactor;
+        }
+
+        public DomainLimit getDefaultLimit() {
+            return defaultLimit;
+        }
+
+        public void setDefaultLimit(DomainLimit defaultLimit) {
+            this.defaultLimit = defaultLimit;
+        }
+
+        public Map<String, DomainLimit> getDomains() {
+            return domains;
+        }
+
+        public void setDomains(Map<String, DomainLimit> domains) {
+            this.domains = domains;
+        }
+
+        /**
+         * Why: Token bucket và concurrency cap cho một domain
+         */
+        public static class DomainLimit {
+            private double ratePerSecond = 10.0;
+            private int burst = 20;
+            private int maxConcurrency = 5;
+
+            public double getRatePerSecond() {
+                return ratePerSecond;
+            }
+
+            public void setRatePerSecond(double ratePerSecond) {
+                this.ratePerSecond = ratePerSecond;
+            }
+
+            public int getBurst() {
+                return burst;
+            }
+
+            public void setBurst(int burst) {
+                this.burst = burst;
+            }
+
+            public int getMaxConcurrency() {
+                return maxConcurrency;
+            }
+
+            public void setMaxConcurrency(int maxConcurrency) {
+                this.maxConcurrency = maxConcurrency;
+            }
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho notification coalescing
+     * Context: Events ồn ào (server joined/invited) được gom theo recipient thành một digest email
+     */
+    public static class Coalescing {
+        private boolean enabled = true;
+        private List<String> eventTypes = List.of("server.member.joined", "server.member.invited");
+        private long windowSeconds = 300;
+        private String digestTemplate = "NOTIFICATION_DIGEST";
+        private int maxItemsPerDigest = 50;
+        private long flushIntervalMs = 5000;
+        private int flushBatchSize = 100;
+        // Why: Flush lỗi thì items được trả lại buffer và thử lại sau khoảng này
+        private long flushRetrySeconds = 60;
+        // Why: Item lỗi quá số lần này bị drop để không retry vô hạn
+        private int maxFlushAttempts = 5;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getEventTypes() {
+            return eventTypes;
+        }
+
+        public void setEventTypes(List<String> eventTypes) {
+            this.eventTypes = eventTypes;
+        }
+
+        public long getWindowSeconds() {
+            return windowSeconds;
+        }
+
+        public void setWindowSeconds(long windowSeconds) {
+            this.windowSeconds = windowSeconds;
+        }
+
+        public String getDigestTemplate() {
+            return digestTemplate;
+        }
+
+        public void setDigestTemplate(String digestTemplate) {
+            this.digestTemplate = digestTemplate;
+        }
+
+        public int getMaxItemsPerDigest() {
+            return maxItemsPerDigest;
+        }
+
+        public void setMaxItemsPerDigest(int maxItemsPerDigest) {
+            this.maxItemsPerDigest = maxItemsPerDigest;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+
+        public int getFlushBatchSize() {
+            return flushBatchSize;
+        }
+
+        public void setFlushBatchSize(int flushBatchSize) {
+            this.flushBatchSize = flushBatchSize;
+        }
+
+        public long getFlushRetrySeconds() {
+            return flushRetrySeconds;
+        }
+
+        public void setFlushRetrySeconds(long flushRetrySeconds) {
+            this.flushRetrySeconds = flushRetrySeconds;
+        }
+
+        public int getMaxFlushAttempts() {
+            return maxFlushAttempts;
+        }
+
+        public void setMaxFlushAttempts(int maxFlushAttempts) {
+            this.maxFlushAttempts = maxFlushAttempts;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho event deduplication
+     * Context: Upstream services retry publishes nên cùng event có thể đến nhiều lần
+     */
+    public static class Deduplication {
+        private boolean enabled = true;
+        private long eventIdWindowSeconds = 3600;
+        private long contentWindowSeconds = 600;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getEventIdWindowSeconds() {
+            return eventIdWindowSeconds;
+        }
+
+        public void setEventIdWindowSeconds(long eventIdWindowSeconds) {
+            this.eventIdWindowSeconds = eventIdWindowSeconds;
+        }
+
+        public long getContentWindowSeconds() {
+            return contentWindowSeconds;
+        }
+
+        public void setContentWindowSeconds(long contentWindowSeconds) {
+            this.contentWindowSeconds = contentWindowSeconds;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho lane-aware dispatch
+     * Context: Mỗi priority band có claim query, worker pool và SMTP share riêng
+     */
+    public static class Dispatch {
+        private List<Lane> lanes = new ArrayList<>(List.of(
+                new Lane("critical", 1, 1, 4, 20, 250L, 0.2),
+                new Lane("high", 2, 2, 4, 20, 1000L, 0.2),
+                new Lane("bulk", 3, Integer.MAX_VALUE, 10, null, null, 0.0)
+        ));
+        // Why: Rows PROCESSING lâu hơn ngưỡng này (worker chết, pod crash) được reaper trả về PENDING
+        private long processingTimeoutSeconds = 600;
+        private long staleCheckIntervalMs = 60000;
+
+        public List<Lane> getLanes() {
+            return lanes;
+        }
+
+        public void setLanes(List<Lane> lanes) {
+            this.lanes = lanes;
+        }
+
+        public long getProcessingTimeoutSeconds() {
+            return processingTimeoutSeconds;
+        }
+
+        public void setProcessingTimeoutSeconds(long processingTimeoutSeconds) {
+            this.processingTimeoutSeconds = processingTimeoutSeconds;
+        }
+
+        public long getStaleCheckIntervalMs() {
+            return staleCheckIntervalMs;
+        }
+
+        public void setStaleCheckIntervalMs(long staleCheckIntervalMs) {
+            this.staleCheckIntervalMs = staleCheckIntervalMs;
+        }
+
+        /**
+         * Why: Lane chứa priority; priority ngoài mọi lane rơi vào lane cuối (bulk)
+         */
+        public Lane laneFor(int priority) {
+            for (Lane lane : lanes) {
+                if (priority >= lane.getMinPriority() && priority <= lane.getMaxPriority()) {
+                    return lane;
+                }
+            }
+            return lanes.get(lanes.size() - 1);
+        }
+
+        /**
+         * Why: Một priority band với dispatch resources riêng
+         * Context: batchSize và pollIntervalMs null thì dùng app.email.batch-size / processing-interval-ms
+         */
+        public static class Lane {
+            private String name;
+            private int minPriority;
+            private int maxPriority;
+            private int workers = 4;
+            private Integer batchSize;
+            private Long pollIntervalMs;
+            private double reservedSmtpShare;
+
+            public Lane() {}
+
+            public Lane(String name, int minPriority, int maxPriority, int workers,
+                        Integer batchSize, Long pollIntervalMs, double reservedSmtpShare) {
+                this.name = name;
+                this.minPriority = minPriority;
+                this.maxPriority = maxPriority;
+                this.workers = workers;
+                this.batchSize = batchSize;
+                this.pollIntervalMs = pollIntervalMs;
+                this.reservedSmtpShare = reservedSmtpShare;
+            }
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public int getMinPriority() {
+                return minPriority;
+            }
+
+            public void setMinPriority(int minPriority) {
+                this.minPriority = minPriority;
+            }
+
+            public int getMaxPriority() {
+                return maxPriority;
+            }
+
+            public void setMaxPriority(int maxPriority) {
+                this.maxPriority = maxPriority;
+            }
+
+            public int getWorkers() {
+                return workers;
+            }
+
+            public void setWorkers(int workers) {
+                this.workers = workers;
+            }
+
+            public Integer getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(Integer batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public Long getPollIntervalMs() {
+                return pollIntervalMs;
+            }
+
+            public void setPollIntervalMs(Long pollIntervalMs) {
+                this.pollIntervalMs = pollIntervalMs;
+            }
+
+            public double getReservedSmtpShare() {
+                return reservedSmtpShare;
+            }
+
+            public void setReservedSmtpShare(double reservedSmtpShare) {
+                this.reservedSmtpShare = reservedSmtpShare;
+            }
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho fair scheduling giữa Flux servers (tenants)
+     * Context: Một server lớn mời cả member list không được chiếm hết queue
+     */
+    public static class Tenancy {
+        private boolean enabled = true;
+        private int candidatesPerTenant = 20;
+        private double defaultWeight = 1.0;
+        private Map<String, Double> weights = new HashMap<>();
+        private int defaultQuotaPerMinute = 0;
+        private Map<String, Integer> quotasPerMinute = new HashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCandidatesPerTenant() {
+            return candidatesPerTenant;
+        }
+
+        public void setCandidatesPerTenant(int candidatesPerTenant) {
+            this.candidatesPerTenant = candidatesPerTenant;
+        }
+
+        public double getDefaultWeight() {
+            return defaultWeight;
+        }
+
+        public void setDefaultWeight(double defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+
+        public Map<String, Double> getWeights() {
+            return weights;
+        }
+
+        public void setWeights(Map<String, Double> weights) {
+            this.weights = weights;
+        }
+
+        public int getDefaultQuotaPerMinute() {
+            return defaultQuotaPerMinute;
+        }
+
+        public void setDefaultQuotaPerMinute(int defaultQuotaPerMinute) {
+            this.defaultQuotaPerMinute = defaultQuotaPerMinute;
+        }
+
+        public Map<String, Integer> getQuotasPerMinute() {
+            return quotasPerMinute;
+        }
+
+        public void setQuotasPerMinute(Map<String, Integer> quotasPerMinute) {
+            this.quotasPerMinute = quotasPerMinute;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho express lane
+     * Context: Transactional events được gửi ngay từ listener, outcome persist write-behind
+     */
+    public static class Express {
+        private boolean enabled = true;
+        private List<String> eventTypes = List.of("user.password.reset.requested");
+        private int writeBehindQueueCapacity = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getEventTypes() {
+            return eventTypes;
+        }
+
+        public void setEventTypes(List<String> eventTypes) {
+            this.eventTypes = eventTypes;
+        }
+
+        public int getWriteBehindQueueCapacity() {
+            return writeBehindQueueCapacity;
+        }
+
+        public void setWriteBehindQueueCapacity(int writeBehindQueueCapacity) {
+            this.writeBehindQueueCapacity = writeBehindQueueCapacity;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho RabbitMQ consumers theo event class
+     * Context: Mỗi class có queue, listener container, prefetch và concurrency riêng nên
+     *          flood server.member.joined không nằm trước password reset trong cùng một queue
+     */
+    public static class Consumers {
+        private ConsumerClass transactional = new ConsumerClass(
+                List.of("user.password.reset.requested"), 2, 4, 1);
+        private ConsumerClass standard = new ConsumerClass(
+                List.of("user.created", "server.created"), 2, 5, 10);
+        private ConsumerClass bulk = new ConsumerClass(
+                List.of("server.member.invited", "server.member.joined"), 1, 3, 50);
+        private Autoscaling autoscaling = new Autoscaling();
+
+        public ConsumerClass getTransactional() {
+            return transactional;
+        }
+
+        public void setTransactional(ConsumerClass transactional) {
+            this.transactional = transactional;
+        }
+
+        public ConsumerClass getStandard() {
+            return standard;
+        }
+
+        public void setStandard(ConsumerClass standard) {
+            this.standard = standard;
+        }
+
+        public ConsumerClass getBulk() {
+            return bulk;
+        }
+
+        public void setBulk(ConsumerClass bulk) {
+            this.bulk = bulk;
+        }
+
+        public Autoscaling getAutoscaling() {
+            return autoscaling;
+        }
+
+        public void setAutoscaling(Autoscaling autoscaling) {
+            this.autoscaling = autoscaling;
+        }
+
+        /**
+         * Why: Runtime tuning của listener concurrency và prefetch
+         * Context: concurrency / max-concurrency của mỗi class là min / max cho autoscaler
+         */
+        public static class Autoscaling {
+            private boolean enabled = true;
+            private long intervalMs = 5000;
+            private double highUtilization = 0.8;
+            private double lowUtilization = 0.3;
+            private long targetDrainSeconds = 30;
+            private long latencyThresholdMs = 1000;
+            private long prefetchBufferMs = 1000;
+            private int minPrefetch = 1;
+            private int maxPrefetch = 250;
+            private int maxReplicas = 10;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getIntervalMs() {
+                return intervalMs;
+            }
+
+            public void setIntervalMs(long intervalMs) {
+                this.intervalMs = intervalMs;
+            }
+
+            public double getHighUtilization() {
+                return highUtilization;
+            }
+
+            public void setHighUtilization(double highUtilization) {
+                this.highUtilization = highUtilization;
+            }
+
+            public double getLowUtilization() {
+                return lowUtilization;
+            }
+
+            public void setLowUtilization(double lowUtilization) {
+                this.lowUtilization = lowUtilization;
+            }
+
+            public long getTargetDrainSeconds() {
+                return targetDrainSeconds;
+            }
+
+            public void setTargetDrainSeconds(long targetDrainSeconds) {
+                this.targetDrainSeconds = targetDrainSeconds;
+            }
+
+            public long getLatencyThresholdMs() {
+                return latencyThresholdMs;
+            }
+
+            public void setLatencyThresholdMs(long latencyThresholdMs) {
+                this.latencyThresholdMs = latencyThresholdMs;
+            }
+
+            public long getPrefetchBufferMs() {
+                return prefetchBufferMs;
+            }
+
+            public void setPrefetchBufferMs(long prefetchBufferMs) {
+                this.prefetchBufferMs = prefetchBufferMs;
+            }
+
+            public int getMinPrefetch() {
+                return minPrefetch;
+            }
+
+            public void setMinPrefetch(int minPrefetch) {
+                this.minPrefetch = minPrefetch;
+            }
+
+            public int getMaxPrefetch() {
+                return maxPrefetch;
+            }
+
+            public void setMaxPrefetch(int maxPrefetch) {
+                this.maxPrefetch = maxPrefetch;
+            }
+
+            public int getMaxReplicas() {
+                return maxReplicas;
+            }
+
+            public void setMaxReplicas(int maxReplicas) {
+                this.maxReplicas = maxReplicas;
+            }
+        }
+
+        /**
+         * Why: Routing keys và consumer tuning của một event class
+         */
+        public static class ConsumerClass {
+            private List<String> routingKeys = new ArrayList<>();
+            private int concurrency = 1;
+            private int maxConcurrency = 1;
+            private int prefetch = 10;
+
+            public ConsumerClass() {}
+
+            public ConsumerClass(List<String> routingKeys, int concurrency, int maxConcurrency, int prefetch) {
+                this.routingKeys = new ArrayList<>(routingKeys);
+                this.concurrency = concurrency;
+                this.maxConcurrency = maxConcurrency;
+                this.prefetch = prefetch;
+            }
+
+            public List<String> getRoutingKeys() {
+                return routingKeys;
+            }
+
+            public void setRoutingKeys(List<String> routingKeys) {
+                this.routingKeys = routingKeys;
+            }
+
+            public int getConcurrency() {
+                return concurrency;
+            }
+
+            public void setConcurrency(int concurrency) {
+                this.concurrency = concurrency;
+            }
+
+            public int getMaxConcurrency() {
+                return maxConcurrency;
+            }
+
+            public void setMaxConcurrency(int maxConcurrency) {
+                this.maxConcurrency = maxConcurrency;
+            }
+
+            public int getPrefetch() {
+                return prefetch;
+            }
+
+            public void setPrefetch(int prefetch) {
+                this.prefetch = prefetch;
+            }
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho admission control (load shedding)
+     * Context: Khi backlog lag hoặc DB latency cao, events ít quan trọng bị defer, downsample
+     *          hoặc reject theo event type thay vì làm chậm password reset
+     */
+    public static class Admission {
+        private boolean enabled = true;
+        private long sampleIntervalMs = 2000;
+        private long elevatedLagSeconds = 120;
+        private long criticalLagSeconds = 600;
+        private long elevatedDbLatencyMs = 250;
+        private long criticalDbLatencyMs = 1000;
+        private Rule defaultRule = new Rule(Action.DEFER, Action.DEFER, 1.0);
+        private Map<String, Rule> rules = new HashMap<>(Map.of(
+                "user.password.reset.requested", new Rule(Action.ADMIT, Action.ADMIT, 1.0),
+                "server.member.invited", new Rule(Action.ADMIT, Action.DEFER, 1.0),
+                "server.member.joined", new Rule(Action.DEFER, Action.DOWNSAMPLE, 0.25)
+        ));
+        private int maxDeferred = 100000;
+        private long maxDeferSeconds = 86400;
+        private long rateLimitDeferSeconds = 900;
+        private long readmitRetrySeconds = 60;
+        private long readmitIntervalMs = 5000;
+        private int readmitBatchSize = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getSampleIntervalMs() {
+            return sampleIntervalMs;
+        }
+
+        public void setSampleIntervalMs(long sampleIntervalMs) {
+            this.sampleIntervalMs = sampleIntervalMs;
+        }
+
+        public long getElevatedLagSeconds() {
+            return elevatedLagSeconds;
+        }
+
+        public void setElevatedLagSeconds(long elevatedLagSeconds) {
+            this.elevatedLagSeconds = elevatedLagSeconds;
+        }
+
+        public long getCriticalLagSeconds() {
+            return criticalLagSeconds;
+        }
+
+        public void setCriticalLagSeconds(long criticalLagSeconds) {
+            this.criticalLagSeconds = criticalLagSeconds;
+        }
+
+        public long getElevatedDbLatencyMs() {
+            return elevatedDbLatencyMs;
+        }
+
+        public void setElevatedDbLatencyMs(long elevatedDbLatencyMs) {
+            this.elevatedDbLatencyMs = elevatedDbLatencyMs;
+        }
+
+        public long getCriticalDbLatencyMs() {
+            return criticalDbLatencyMs;
+        }
+
+        public void setCriticalDbLatencyMs(long criticalDbLatencyMs) {
+            this.criticalDbLatencyMs = criticalDbLatencyMs;
+        }
+
+        public Rule getDefaultRule() {
+            return defaultRule;
+        }
+
+        public void setDefaultRule(Rule defaultRule) {
+            this.defaultRule = defaultRule;
+        }
+
+        public Map<String, Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(Map<String, Rule> rules) {
+            this.rules = rules;
+        }
+
+        public int getMaxDeferred() {
+            return maxDeferred;
+        }
+
+        public void setMaxDeferred(int maxDeferred) {
+            this.maxDeferred = maxDeferred;
+        }
+
+        public long getMaxDeferSeconds() {
+            return maxDeferSeconds;
+        }
+
+        public void setMaxDeferSeconds(long maxDeferSeconds) {
+            this.maxDeferSeconds = maxDeferSeconds;
+        }
+
+        public long getRateLimitDeferSeconds() {
+            return rateLimitDeferSeconds;
+        }
+
+        public void setRateLimitDeferSeconds(long rateLimitDeferSeconds) {
+            this.rateLimitDeferSeconds = rateLimitDeferSeconds;
+        }
+
+        public long getReadmitRetrySeconds() {
+            return readmitRetrySeconds;
+        }
+
+        public void setReadmitRetrySeconds(long readmitRetrySeconds) {
+            this.readmitRetrySeconds = readmitRetrySeconds;
+        }
+
+        public long getReadmitIntervalMs() {
+            return readmitIntervalMs;
+        }
+
+        public void setReadmitIntervalMs(long readmitIntervalMs) {
+            this.readmitIntervalMs = readmitIntervalMs;
+        }
+
+        public int getReadmitBatchSize() {
+            return readmitBatchSize;
+        }
+
+        public void setReadmitBatchSize(int readmitBatchSize) {
+            this.readmitBatchSize = readmitBatchSize;
+        }
+
+        /**
+         * Why: Rule cho event type nào không có rule riêng
+         */
+        public Rule ruleFor(String eventType) {
+            return rules.getOrDefault(eventType, defaultRule);
+        }
+
+        /**
+         * Why: Admission action cho một event
+         */
+        public enum Action {
+            ADMIT,
+            DEFER,
+            DOWNSAMPLE,
+            REJECT
+        }
+
+        /**
+         * Why: Action của một event type ở mỗi pressure level
+         * Context: DOWNSAMPLE giữ lại sampleRate phần events, phần còn lại bị drop
+         */
+        public static class Rule {
+            private Action onElevated = Action.ADMIT;
+            private Action onCritical = Action.ADMIT;
+            private double sampleRate = 1.0;
+
+            public Rule() {}
+
+            public Rule(Action onElevated, Action onCritical, double sampleRate) {
+                this.onElevated = onElevated;
+                this.onCritical = onCritical;
+                this.sampleRate = sampleRate;
+            }
+
+            public Action getOnElevated() {
+                return onElevated;
+            }
+
+            public void setOnElevated(Action onElevated) {
+                this.onElevated = onElevated;
+            }
+
+            public Action getOnCritical() {
+                return onCritical;
+            }
+
+            public void setOnCritical(Action onCritical) {
+                this.onCritical = onCritical;
+            }
+
+            public double getSampleRate() {
+                return sampleRate;
+            }
+
+            public void setSampleRate(double sampleRate) {
+                this.sampleRate = sampleRate;
+            }
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho Redis cache value encoding và second-level cache invalidation
+     */
+    public static class Cache {
+        // Why: compact = binary codec cho EmailTemplate, json = default-typing JSON
+        private String serializer = "compact";
+        // Why: Values từ ngưỡng này trở lên được deflate, <= 0 để tắt compression
+        private int compressionThresholdBytes = 1024;
+        // Why: Redis channel để evict Hibernate second-level cache trên các nodes khác
+        private String invalidationChannel = "email-service:l2-invalidation";
+
+        public String getSerializer() {
+            return serializer;
+        }
+
+        public void setSerializer(String serializer) {
+            this.serializer = serializer;
+        }
+
+        public int getCompressionThresholdBytes() {
+            return compressionThresholdBytes;
+        }
+
+        public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+            this.compressionThresholdBytes = compressionThresholdBytes;
+        }
+
+        public String getInvalidationChannel() {
+            return invalidationChannel;
+        }
+
+        public void setInvalidationChannel(String invalidationChannel) {
+            this.invalidationChannel = invalidationChannel;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho startup warm-up trước khi readiness lên
+     */
+    public static class Warmup {
+        private boolean enabled = true;
+        // Why: Số lần render mỗi template trong một round đo p99
+        private int renderRoundSize = 20;
+        private int maxRounds = 50;
+        // Why: p99 coi là ổn định khi thay đổi giữa hai rounds liên tiếp không quá tolerance
+        private double stabilityTolerance = 0.1;
+        private int stableRounds = 3;
+        private int rateLimiterIterations = 2000;
+        // Why: Quá thời gian thì vẫn mở traffic, warm-up chỉ là best effort
+        private long timeoutSeconds = 120;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getRenderRoundSize() {
+            return renderRoundSize;
+        }
+
+        public void setRenderRoundSize(int renderRoundSize) {
+            this.renderRoundSize = renderRoundSize;
+        }
+
+        public int getMaxRounds() {
+            return maxRounds;
+        }
+
+        public void setMaxRounds(int maxRounds) {
+            this.maxRounds = maxRounds;
+        }
+
+        public double getStabilityTolerance() {
+            return stabilityTolerance;
+        }
+
+        public void setStabilityTolerance(double stabilityTolerance) {
+            this.stabilityTolerance = stabilityTolerance;
+        }
+
+        public int getStableRounds() {
+            return stableRounds;
+        }
+
+        public void setStableRounds(int stableRounds) {
+            this.stableRounds = stableRounds;
+        }
+
+        public int getRateLimiterIterations() {
+            return rateLimiterIterations;
+        }
+
+        public void setRateLimiterIterations(int rateLimiterIterations) {
+            this.rateLimiterIterations = rateLimiterIterations;
+        }
+
+        public long getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public void setTimeoutSeconds(long timeoutSeconds) {
+            this.timeoutSeconds = timeoutSeconds;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho read replica routing
+     * Context: @Transactional(readOnly = true) chạy trên replica pool riêng để reporting
+     *          không lấy connections của dispatch path trên primary pool
+     */
+    public static class Replica {
+        private boolean enabled = false;
+        private String url;
+        // Why: Bỏ trống thì dùng credentials của spring.datasource
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+        // Why: Ngắn hơn primary - replica chậm thì fallback về primary thay vì giữ request
+        private long connectionTimeoutMs = 2000;
+        // Why: Replica trễ hơn ngưỡng này thì read-only transactions quay về primary
+        private long maxLagSeconds = 10;
+        private long lagCheckIntervalMs = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public int getMinimumIdle() {
+            return minimumIdle;
+        }
+
+        public void setMinimumIdle(int minimumIdle) {
+            this.minimumIdle = minimumIdle;
+        }
+
+        public long getConnectionTimeoutMs() {
+            return connectionTimeoutMs;
+        }
+
+        public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+            this.connectionTimeoutMs = connectionTimeoutMs;
+        }
+
+        public long getMaxLagSeconds() {
+            return maxLagSeconds;
+        }
+
+        public void setMaxLagSeconds(long maxLagSeconds) {
+            this.maxLagSeconds = maxLagSeconds;
+        }
+
+        public long getLagCheckIntervalMs() {
+            return lagCheckIntervalMs;
+        }
+
+        public void setLagCheckIntervalMs(long lagCheckIntervalMs) {
+            this.lagCheckIntervalMs = lagCheckIntervalMs;
+        }
+    }
+
+    /**
+     * Why: Nested configuration class cho runtime settings snapshot từ email_settings
+     */
+    public static class Settings {
+        // Why: Độ trễ tối đa giữa change notification và snapshot mới
+        private long refreshCheckMs = 1000;
+        // Why: Reload toàn bộ định kỳ cho rows bị sửa bằng SQL trực tiếp (không có notification)
+        private long reconcileIntervalMs = 300000;
+
+        public long getRefreshCheckMs() {
+            return refreshCheckMs;
+        }
+
+        public void setRefreshCheckMs(long refreshCheckMs) {
+            this.refreshCheckMs = refreshCheckMs;
+        }
+
+        public long getReconcileIntervalMs() {
+            return reconcileIntervalMs;
+        }
+
+        public void setReconcileIntervalMs(long reconcileIntervalMs) {
+            this.reconcileIntervalMs = reconcileIntervalMs;
+        }
     }
 }
@@ -0,0 +1,29 @@
+package com.flux.emailservice.config;
+
+/**
+ * Why: Application event khi một cached entity (EmailTemplate, EmailSettings) thay đổi
+ * Context: Publish sau commit trên node này và khi nhận invalidation từ node khác, sau khi
+ *          second-level cache đã được evict; listeners dùng để rebuild snapshots in-memory
+ */
+public class CachedEntityChangedEvent {
+
+    private final String entityName;
+    private final Object id;
+
+    public CachedEntityChangedEvent(String entityName, Object id) {
+        this.entityName = entityName;
+        this.id = id;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public Object getId() {
+        return id;
+    }
+
+    public boolean isOf(Class<?> entityClass) {
+        return entityClass.getName().equals(entityName);
+    }
+}
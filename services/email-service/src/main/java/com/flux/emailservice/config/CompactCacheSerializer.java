@@ -0,0 +1,186 @@
+package com.flux.emailservice.config;
+
+import com.flux.emailservice.entity.EmailTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Why: Binary codec cho cache values, EmailTemplate được encode field-by-field
+ * Context: Không có class name, field names hay default-typing metadata trong payload như JSON;
+ *          values khác (ít gặp) đi qua JSON delegate. Byte đầu là format tag để decode
+ *          đúng codec, unknown tag nghĩa là entry của format khác và được coi là lỗi
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+
+    private static final byte FORMAT_TEMPLATE_V1 = 0x01;
+    private static final byte FORMAT_DELEGATE = 0x02;
+
+    // Why: Presence bits cho nullable fields theo thứ tự encode
+    private static final int HAS_ID = 1;
+    private static final int HAS_NAME = 1 << 1;
+    private static final int HAS_TYPE = 1 << 2;
+    private static final int HAS_SUBJECT = 1 << 3;
+    private static final int HAS_HTML = 1 << 4;
+    private static final int HAS_TEXT = 1 << 5;
+    private static final int HAS_ACTIVE = 1 << 6;
+    private static final int IS_ACTIVE = 1 << 7;
+    private static final int HAS_CREATED_BY = 1 << 8;
+    private static final int HAS_CREATED_AT = 1 << 9;
+    private static final int HAS_UPDATED_AT = 1 << 10;
+    // Why: Field thêm sau được append cuối payload, decoder cũ bỏ qua bytes thừa
+    private static final int HAS_CURRENT_VERSION = 1 << 11;
+
+    private final RedisSerializer<Object> delegate;
+
+    public CompactCacheSerializer(RedisSerializer<Object> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof EmailTemplate template)) {
+            byte[] body = delegate.serialize(value);
+            byte[] bytes = new byte[body.length + 1];
+            bytes[0] = FORMAT_DELEGATE;
+            System.arraycopy(body, 0, bytes, 1, body.length);
+            return bytes;
+        }
+
+        try {
+            // Why: Size hint từ content để tránh resize buffer với templates lớn
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 + lengthOf(template.getHtmlContent())
+                    + lengthOf(template.getTextContent()) + lengthOf(template.getSubjectTemplate()));
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(FORMAT_TEMPLATE_V1);
+            out.writeShort(presenceOf(template));
+            if (template.getId() != null) {
+                out.writeLong(template.getId());
+            }
+            writeString(out, template.getTemplateName());
+            writeString(out, template.getTemplateType());
+            writeString(out, template.getSubjectTemplate());
+            writeString(out, template.getHtmlContent());
+            writeString(out, template.getTextContent());
+            writeString(out, template.getCreatedBy());
+            writeDateTime(out, template.getCreatedAt());
+            writeDateTime(out, template.getUpdatedAt());
+            if (template.getCurrentVersionId() != null) {
+                out.writeLong(template.getCurrentVersionId());
+            }
+            out.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode template " + template.getTemplateName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == FORMAT_DELEGATE) {
+            byte[] body = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, body, 0, body.length);
+            return delegate.deserialize(body);
+        }
+        if (bytes[0] != FORMAT_TEMPLATE_V1) {
+            throw new SerializationException("Unknown cache value format: " + bytes[0]);
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            int presence = in.readUnsignedShort();
+            EmailTemplate template = new EmailTemplate();
+            if ((presence & HAS_ID) != 0) {
+                template.setId(in.readLong());
+            }
+            template.setTemplateName(readString(in, presence, HAS_NAME));
+            template.setTemplateType(readString(in, presence, HAS_TYPE));
+            template.setSubjectTemplate(readString(in, presence, HAS_SUBJECT));
+            template.setHtmlContent(readString(in, presence, HAS_HTML));
+            template.setTextContent(readString(in, presence, HAS_TEXT));
+            template.setIsActive((presence & HAS_ACTIVE) != 0 ? (presence & IS_ACTIVE) != 0 : null);
+            template.setCreatedBy(readString(in, presence, HAS_CREATED_BY));
+            template.setCreatedAt(readDateTime(in, presence, HAS_CREATED_AT));
+            template.setUpdatedAt(readDateTime(in, presence, HAS_UPDATED_AT));
+            if ((presence & HAS_CURRENT_VERSION) != 0) {
+                template.setCurrentVersionId(in.readLong());
+            }
+            return template;
+        } catch (IOException e) {
+            throw new SerializationException("Could not decode cached template", e);
+        }
+    }
+
+    private static int presenceOf(EmailTemplate template) {
+        int presence = 0;
+        presence |= template.getId() != null ? HAS_ID : 0;
+        presence |= template.getTemplateName() != null ? HAS_NAME : 0;
+        presence |= template.getTemplateType() != null ? HAS_TYPE : 0;
+        presence |= template.getSubjectTemplate() != null ? HAS_SUBJECT : 0;
+        presence |= template.getHtmlContent() != null ? HAS_HTML : 0;
+        presence |= template.getTextContent() != null ? HAS_TEXT : 0;
+        if (template.getIsActive() != null) {
+            presence |= HAS_ACTIVE | (template.getIsActive() ? IS_ACTIVE : 0);
+        }
+        presence |= template.getCreatedBy() != null ? HAS_CREATED_BY : 0;
+        presence |= template.getCreatedAt() != null ? HAS_CREATED_AT : 0;
+        presence |= template.getUpdatedAt() != null ? HAS_UPDATED_AT : 0;
+        presence |= template.getCurrentVersionId() != null ? HAS_CURRENT_VERSION : 0;
+        return presence;
+    }
+
+    /**
+     * Why: Length-prefixed UTF-8 thay vì writeUTF vì html content có thể vượt 64KB
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in, int presence, int bit) throws IOException {
+        if ((presence & bit) == 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in, int presence, int bit) throws IOException {
+        if ((presence & bit) == 0) {
+            return null;
+        }
+        long epochSecond = in.readLong();
+        return LocalDateTime.ofEpochSecond(epochSecond, in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static int lengthOf(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.flux.emailservice.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Why: Deflate cache values lớn hơn threshold trước khi gửi sang Redis
+ * Context: HTML templates nén tốt (markup lặp lại) nên giảm memory Redis và network transfer;
+ *          values nhỏ giữ nguyên vì CPU nén không đáng. Byte đầu đánh dấu raw / deflated,
+ *          deflated payload có thêm độ dài gốc để inflate vào đúng một buffer
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    private static final byte RAW = 0x00;
+    private static final byte DEFLATED = 0x01;
+
+    private final RedisSerializer<Object> delegate;
+    private final int thresholdBytes;
+
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, int thresholdBytes) {
+        this.delegate = delegate;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] raw = delegate.serialize(value);
+        if (raw == null) {
+            return null;
+        }
+        if (raw.length >= thresholdBytes) {
+            byte[] deflated = deflate(raw);
+            // Why: Payload không nén được (đã nén sẵn / random) thì lưu raw
+            if (deflated.length < raw.length) {
+                return deflated;
+            }
+        }
+        byte[] bytes = new byte[raw.length + 1];
+        bytes[0] = RAW;
+        System.arraycopy(raw, 0, bytes, 1, raw.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        byte[] raw;
+        if (bytes[0] == DEFLATED) {
+            raw = inflate(bytes);
+        } else if (bytes[0] == RAW) {
+            raw = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, raw, 0, raw.length);
+        } else {
+            throw new SerializationException("Unknown cache compression marker: " + bytes[0]);
+        }
+        return delegate.deserialize(raw);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 5);
+            out.write(DEFLATED);
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(raw.length).array(), 0, Integer.BYTES);
+            byte[] chunk = new byte[Math.min(raw.length, 8192)];
+            while (!deflater.finished()) {
+                int written = deflater.deflate(chunk);
+                out.write(chunk, 0, written);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        try {
+            int rawLength = ByteBuffer.wrap(bytes, 1, Integer.BYTES).getInt();
+            inflater.setInput(bytes, 1 + Integer.BYTES, bytes.length - 1 - Integer.BYTES);
+            byte[] raw = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, read, rawLength - read);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != rawLength) {
+                throw new SerializationException("Truncated compressed cache value");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt compressed cache value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -79,4 +79,23 @@ public class EmailConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Why: Thread pool cho write-behind persistence của express sends
+     * Context: CallerRunsPolicy tạo backpressure lên listener thay vì drop outcomes khi database chậm
+     */
+    @Bean(name = "expressWriteBehindExecutor")
+    public Executor expressWriteBehindExecutor(ApplicationProperties applicationProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(applicationProperties.getExpress().getWriteBehindQueueCapacity());
+        executor.setThreadNamePrefix("EmailWriteBehind-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+
+        executor.initialize();
+        return executor;
+    }
 }
@@ -0,0 +1,50 @@
+package com.flux.emailservice.config;
+
+import com.flux.emailservice.entity.EmailTemplate;
+import com.flux.emailservice.event.EmailEvent;
+import com.flux.emailservice.event.EventPayload;
+import com.flux.emailservice.event.PasswordResetPayload;
+import com.flux.emailservice.event.ServerCreatedPayload;
+import com.flux.emailservice.event.ServerMemberInvitedPayload;
+import com.flux.emailservice.event.ServerMemberJoinedPayload;
+import com.flux.emailservice.event.UserCreatedPayload;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.List;
+
+/**
+ * Why: Reflection hints cho types mà Jackson đọc/ghi ngoài Spring MVC
+ * Context: AOT tự xử lý beans, entities và @ConfigurationProperties nhưng không thấy event
+ *          payloads (decode bằng ObjectReader theo routing key) hay cache values của JSON
+ *          serializer. Chỉ cần cho native image, JVM + AOT bỏ qua
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final List<Class<?>> JSON_TYPES = List.of(
+            EmailEvent.class,
+            EventPayload.class,
+            UserCreatedPayload.class,
+            PasswordResetPayload.class,
+            ServerMemberInvitedPayload.class,
+            ServerMemberJoinedPayload.class,
+            ServerCreatedPayload.class,
+            EmailTemplate.class
+    );
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        MemberCategory[] categories = {
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                MemberCategory.INVOKE_PUBLIC_METHODS,
+                MemberCategory.DECLARED_FIELDS
+        };
+        for (Class<?> type : JSON_TYPES) {
+            hints.reflection().registerType(type, categories);
+        }
+        // Why: Envelope là package-private trong event package
+        hints.reflection().registerType(TypeReference.of("com.flux.emailservice.event.EventEnvelope"), categories);
+    }
+}
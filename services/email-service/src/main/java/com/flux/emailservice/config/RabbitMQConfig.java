@@ -1,14 +1,20 @@
 package com.flux.emailservice.config;
 
+import com.flux.emailservice.service.ListenerLoadTracker;
+import org.aopalliance.intercept.MethodInterceptor;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Why: Cấu hình RabbitMQ cho event-driven communication
  * Context: Email service lắng nghe events từ các service khác
@@ -22,6 +28,16 @@ public class RabbitMQConfig {
     
     // Why: Queue riêng cho email service để xử lý các email events
     public static final String EMAIL_QUEUE = "email.queue";
+
+    // Why: Queue riêng cho mỗi event class, mỗi queue có listener container riêng
+    public static final String TRANSACTIONAL_QUEUE = "email.queue.transactional";
+    public static final String STANDARD_QUEUE = "email.queue.standard";
+    public static final String BULK_QUEUE = "email.queue.bulk";
+
+    // Why: Consumer class names, cũng là listener ids để autoscaler tìm containers
+    public static final String TRANSACTIONAL_CLASS = "transactional";
+    public static final String STANDARD_CLASS = "standard";
+    public static final String BULK_CLASS = "bulk";
     
     // Why: Routing keys để filter events cần thiết
     public static final String USER_CREATED_ROUTING_KEY = "user.created";
@@ -30,6 +46,14 @@ public class RabbitMQConfig {
     public static final String PASSWORD_RESET_ROUTING_KEY = "user.password.reset.requested";
     public static final String SERVER_CREATED_ROUTING_KEY = "server.created";
 
+    private static final List<String> LEGACY_ROUTING_KEYS = List.of(
+            USER_CREATED_ROUTING_KEY,
+            SERVER_MEMBER_INVITED_ROUTING_KEY,
+            SERVER_MEMBER_JOINED_ROUTING_KEY,
+            PASSWORD_RESET_ROUTING_KEY,
+            SERVER_CREATED_ROUTING_KEY
+    );
+
     /**
      * Why: Topic exchange cho flexible routing với patterns
      * Context: Cho phép routing dựa trên routing key patterns
@@ -43,8 +67,8 @@ public class RabbitMQConfig {
     }
 
     /**
-     * Why: Queue để nhận email events với durability
-     * Context: Đảm bảo messages không bị mất khi service restart
+     * Why: Legacy single queue, chỉ còn được drain sau khi chuyển sang queues theo class
+     * Context: Bindings cũ được gỡ lúc startup nên queue không nhận thêm messages mới
      */
     @Bean
     public Queue emailQueue() {
@@ -54,6 +78,33 @@ public class RabbitMQConfig {
                 .build();
     }
 
+    /**
+     * Why: Queue riêng cho mỗi event class
+     * Context: Password reset không phải xếp hàng sau flood server.member.joined
+     */
+    @Bean
+    public Queue transactionalEmailQueue() {
+        return classQueue(TRANSACTIONAL_QUEUE);
+    }
+
+    @Bean
+    public Queue standardEmailQueue() {
+        return classQueue(STANDARD_QUEUE);
+    }
+
+    @Bean
+    public Queue bulkEmailQueue() {
+        return classQueue(BULK_QUEUE);
+    }
+
+    private Queue classQueue(String name) {
+        return QueueBuilder
+                .durable(name)
+                .withArgument("x-dead-letter-exchange", "email.dlx")
+                .withArgument("x-dead-letter-routing-key", "email.dlq")
+                .build();
+    }
+
     /**
      * Why: Dead letter exchange cho failed messages
      * Context: Messages fail sẽ được route đến đây để debug
@@ -77,47 +128,40 @@ public class RabbitMQConfig {
     }
 
     /**
-     * Why: Binding email queue với multiple routing keys
-     * Context: Email service cần xử lý nhiều loại events khác nhau
+     * Why: Binding mỗi class queue với routing keys của class đó
+     * Context: Routing keys đọc từ app.email.consumers để có thể chuyển event type giữa các class
      */
     @Bean
-    public Binding userCreatedBinding() {
-        return BindingBuilder
-                .bind(emailQueue())
-                .to(appEventsExchange())
-                .with(USER_CREATED_ROUTING_KEY);
+    public Declarables emailClassBindings(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Consumers consumers = applicationProperties.getConsumers();
+        List<Declarable> bindings = new ArrayList<>();
+        addBindings(bindings, transactionalEmailQueue(), consumers.getTransactional());
+        addBindings(bindings, standardEmailQueue(), consumers.getStandard());
+        addBindings(bindings, bulkEmailQueue(), consumers.getBulk());
+        return new Declarables(bindings);
     }
 
-    @Bean
-    public Binding serverMemberInvitedBinding() {
-        return BindingBuilder
-                .bind(emailQueue())
-                .to(appEventsExchange())
-                .with(SERVER_MEMBER_INVITED_ROUTING_KEY);
-    }
-
-    @Bean
-    public Binding serverMemberJoinedBinding() {
-        return BindingBuilder
-                .bind(emailQueue())
-                .to(appEventsExchange())
-                .with(SERVER_MEMBER_JOINED_ROUTING_KEY);
+    private void addBindings(List<Declarable> bindings, Queue queue,
+                             ApplicationProperties.Consumers.ConsumerClass consumerClass) {
+        for (String routingKey : consumerClass.getRoutingKeys()) {
+            bindings.add(BindingBuilder.bind(queue).to(appEventsExchange()).with(routingKey));
+        }
     }
 
+    /**
+     * Why: Gỡ bindings của legacy queue đã được declare bởi versions trước
+     * Context: Bindings tồn tại trên broker, không gỡ thì mỗi event được deliver hai lần
+     */
     @Bean
-    public Binding passwordResetBinding() {
-        return BindingBuilder
-                .bind(emailQueue())
-                .to(appEventsExchange())
-                .with(PASSWORD_RESET_ROUTING_KEY);
-    }
-
-    @Bean
-    public Binding serverCreatedBinding() {
-        return BindingBuilder
-                .bind(emailQueue())
-                .to(appEventsExchange())
-                .with(SERVER_CREATED_ROUTING_KEY);
+    public ApplicationRunner legacyEmailQueueUnbinder(AmqpAdmin amqpAdmin) {
+        return args -> {
+            for (String routingKey : LEGACY_ROUTING_KEYS) {
+                amqpAdmin.removeBinding(BindingBuilder
+                        .bind(emailQueue())
+                        .to(appEventsExchange())
+                        .with(routingKey));
+            }
+        };
     }
 
     /**
@@ -153,17 +197,65 @@ public class RabbitMQConfig {
 
     /**
      * Why: Listener container factory với JSON converter
-     * Context: Để consume JSON messages từ queue
+     * Context: Default factory, chỉ còn dùng để drain legacy queue
      */
     @Bean
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
-            ConnectionFactory connectionFactory) {
+            ConnectionFactory connectionFactory, ApplicationProperties applicationProperties) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(messageConverter());
         // Why: Concurrent consumers để xử lý multiple messages cùng lúc
-        factory.setConcurrentConsumers(2);
-        factory.setMaxConcurrentConsumers(5);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(2);
+        // Why: WarmupService start listeners sau warm-up
+        factory.setAutoStartup(!applicationProperties.getWarmup().isEnabled());
+        return factory;
+    }
+
+    /**
+     * Why: Container factory riêng cho mỗi event class
+     * Context: Concurrency và prefetch tune độc lập qua app.email.consumers.*
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory transactionalListenerContainerFactory(
+            ConnectionFactory connectionFactory, ApplicationProperties applicationProperties,
+            ListenerLoadTracker listenerLoadTracker) {
+        return classContainerFactory(connectionFactory, applicationProperties,
+                applicationProperties.getConsumers().getTransactional(),
+                listenerLoadTracker.adviceFor(TRANSACTIONAL_CLASS));
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory standardListenerContainerFactory(
+            ConnectionFactory connectionFactory, ApplicationProperties applicationProperties,
+            ListenerLoadTracker listenerLoadTracker) {
+        return classContainerFactory(connectionFactory, applicationProperties,
+                applicationProperties.getConsumers().getStandard(),
+                listenerLoadTracker.adviceFor(STANDARD_CLASS));
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory bulkListenerContainerFactory(
+            ConnectionFactory connectionFactory, ApplicationProperties applicationProperties,
+            ListenerLoadTracker listenerLoadTracker) {
+        return classContainerFactory(connectionFactory, applicationProperties,
+                applicationProperties.getConsumers().getBulk(),
+                listenerLoadTracker.adviceFor(BULK_CLASS));
+    }
+
+    private SimpleRabbitListenerContainerFactory classContainerFactory(
+            ConnectionFactory connectionFactory, ApplicationProperties applicationProperties,
+            ApplicationProperties.Consumers.ConsumerClass consumerClass, MethodInterceptor loadAdvice) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter());
+        factory.setConcurrentConsumers(consumerClass.getConcurrency());
+        factory.setMaxConcurrentConsumers(Math.max(consumerClass.getConcurrency(), consumerClass.getMaxConcurrency()));
+        factory.setPrefetchCount(consumerClass.getPrefetch());
+        // Why: Đo busy time của consumers cho ListenerAutoscalingJob
+        factory.setAdviceChain(loadAdvice);
+        factory.setAutoStartup(!applicationProperties.getWarmup().isEnabled());
         return factory;
     }
 }
@@ -0,0 +1,58 @@
+package com.flux.emailservice.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Why: Route @Transactional(readOnly = true) tới replica pool, còn lại tới primary
+ * Context: Phải được bọc trong LazyConnectionDataSourceProxy - JpaTransactionManager lấy
+ *          connection trong doBegin, trước khi read-only flag được bind vào
+ *          TransactionSynchronizationManager. Replica lỗi khi lấy connection thì fallback về
+ *          primary ngay trong request đó
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaLagMonitor.isUsable()
+                ? Route.REPLICA
+                : Route.PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (determineCurrentLookupKey() == Route.REPLICA) {
+            try {
+                return getResolvedDataSources().get(Route.REPLICA).getConnection();
+            } catch (SQLException e) {
+                replicaLagMonitor.markDown(e);
+            }
+        }
+        return getResolvedDataSources().get(Route.PRIMARY).getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // Why: Credentials riêng chỉ có ý nghĩa với primary
+        return getResolvedDataSources().get(Route.PRIMARY).getConnection(username, password);
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
@@ -12,7 +14,10 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
@@ -56,22 +61,33 @@ public class RedisConfig {
 
     /**
      * Why: Cache manager với custom configuration
-     * Context: Different TTL cho different types của cache
+     * Context: Different TTL cho different types của cache. Values dùng serializer theo
+     *          app.email.cache; key prefix chứa tên format để đổi serializer không đọc nhầm
+     *          entries cũ (chúng tự hết hạn theo TTL)
      */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(10)) // Default 10 minutes TTL
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     ApplicationProperties applicationProperties) {
+        ApplicationProperties.Cache cacheConfig = applicationProperties.getCache();
+        RedisSerializationContext.SerializationPair<Object> valuePair =
+                RedisSerializationContext.SerializationPair.fromSerializer(cacheValueSerializer(cacheConfig));
+        String format = cacheConfig.getSerializer()
+                + (cacheConfig.getCompressionThresholdBytes() > 0 ? "-deflate" : "");
+
+        RedisCacheConfiguration baseConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(valuePair)
+                .computePrefixWith(cacheName -> cacheName + ":" + format + "::")
                 .disableCachingNullValues();
 
+        RedisCacheConfiguration defaultConfig = baseConfig
+                .entryTtl(Duration.ofMinutes(10)); // Default 10 minutes TTL
+
         // Why: Custom configurations cho specific caches
-        RedisCacheConfiguration templateConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(1)) // Templates cache longer
-                .disableCachingNullValues();
+        RedisCacheConfiguration templateConfig = baseConfig
+                .entryTtl(Duration.ofSeconds(applicationProperties.getTemplate().getCacheTtlSeconds()));
 
-        RedisCacheConfiguration rateLimitConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(1)) // Rate limits reset hourly
-                .disableCachingNullValues();
+        RedisCacheConfiguration rateLimitConfig = baseConfig
+                .entryTtl(Duration.ofHours(1)); // Rate limits reset hourly
 
         return RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
@@ -80,4 +96,28 @@ public class RedisConfig {
                 .withCacheConfiguration("user-preferences", defaultConfig)
                 .build();
     }
+
+    /**
+     * Why: Value serializer cho cache manager theo cấu hình
+     * Context: JSON serializer cũng là fallback của compact codec cho values không phải template
+     */
+    public static RedisSerializer<Object> cacheValueSerializer(ApplicationProperties.Cache cacheConfig) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                                          ObjectMapper.DefaultTyping.NON_FINAL,
+                                          JsonTypeInfo.As.PROPERTY);
+        RedisSerializer<Object> jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+
+        RedisSerializer<Object> serializer = switch (cacheConfig.getSerializer()) {
+            case "compact" -> new CompactCacheSerializer(jsonSerializer);
+            case "json" -> jsonSerializer;
+            default -> throw new RuntimeException("Unknown cache serializer: " + cacheConfig.getSerializer());
+        };
+        if (cacheConfig.getCompressionThresholdBytes() > 0) {
+            serializer = new CompressingRedisSerializer(serializer, cacheConfig.getCompressionThresholdBytes());
+        }
+        return serializer;
+    }
 }
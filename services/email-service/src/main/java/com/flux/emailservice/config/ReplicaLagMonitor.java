@@ -0,0 +1,84 @@
+package com.flux.emailservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Why: Quyết định replica có được dùng cho read-only transactions hay không
+ * Context: Probe định kỳ replication lag trên replica pool; replica không kết nối được hoặc
+ *          trễ quá max-lag-seconds thì ReadReplicaRoutingDataSource trả về primary.
+ *          Bắt đầu ở trạng thái unusable cho đến probe thành công đầu tiên
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Why: Replica đã replay hết WAL nhận được thì lag là 0 - replay timestamp đứng yên khi
+    //      primary không có writes, so với now() sẽ báo lag giả
+    private static final String LAG_QUERY =
+            "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final DataSource replicaDataSource;
+    private final long maxLagSeconds;
+
+    private volatile boolean usable;
+    private volatile double lagSeconds = -1;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, ApplicationProperties.Replica config,
+                             MeterRegistry meterRegistry) {
+        this.replicaDataSource = replicaDataSource;
+        this.maxLagSeconds = config.getMaxLagSeconds();
+
+        Gauge.builder("email.datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("email.datasource.replica.usable", this, monitor -> monitor.usable ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.replica.lag-check-interval-ms:5000}")
+    public void check() {
+        double lag;
+        try (Connection connection = replicaDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+            resultSet.next();
+            lag = resultSet.getDouble(1);
+        } catch (SQLException e) {
+            markDown(e);
+            return;
+        }
+
+        lagSeconds = lag;
+        boolean withinThreshold = lag <= maxLagSeconds;
+        if (withinThreshold != usable) {
+            logger.info("Read replica {} (lag {} s, threshold {} s)",
+                       withinThreshold ? "in use" : "bypassed", String.format("%.1f", lag), maxLagSeconds);
+        }
+        usable = withinThreshold;
+    }
+
+    /**
+     * Why: Connection tới replica lỗi - chuyển read-only traffic về primary đến probe tiếp theo
+     */
+    public void markDown(SQLException cause) {
+        if (usable) {
+            logger.warn("Read replica unavailable, routing reads to primary: {}", cause.getMessage());
+        }
+        usable = false;
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+}
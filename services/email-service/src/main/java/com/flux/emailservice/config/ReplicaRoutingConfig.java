@@ -0,0 +1,80 @@
+package com.flux.emailservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+
+/**
+ * Why: Primary + read replica pools khi app.email.replica.enabled=true
+ * Context: Thay DataSource auto-configuration; primary vẫn được build từ spring.datasource.*.
+ *          Replica có pool và size limits riêng nên dashboard / listing queries không làm cạn
+ *          connections của dispatcher. Tắt thì Spring Boot auto-configure một pool như cũ
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.email.replica", name = "enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              ApplicationProperties applicationProperties) {
+        ApplicationProperties.Replica config = applicationProperties.getReplica();
+        if (config.getUrl() == null || config.getUrl().isBlank()) {
+            throw new RuntimeException("app.email.replica.url is required when replica routing is enabled");
+        }
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setJdbcUrl(config.getUrl());
+        // Why: yml bind DB_REPLICA_USERNAME / DB_REPLICA_PASSWORD chưa set thành "", không phải null
+        dataSource.setUsername(StringUtils.hasText(config.getUsername())
+                ? config.getUsername() : properties.determineUsername());
+        dataSource.setPassword(StringUtils.hasText(config.getPassword())
+                ? config.getPassword() : properties.determinePassword());
+        dataSource.setMaximumPoolSize(config.getMaximumPoolSize());
+        dataSource.setMinimumIdle(config.getMinimumIdle());
+        dataSource.setConnectionTimeout(config.getConnectionTimeoutMs());
+        dataSource.setReadOnly(true);
+        // Why: Replica down lúc startup không chặn service, reads dùng primary đến khi probe thành công
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                               ApplicationProperties applicationProperties,
+                                               MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(replicaDataSource, applicationProperties.getReplica(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        ReadReplicaRoutingDataSource routing =
+                new ReadReplicaRoutingDataSource(primaryDataSource, replicaDataSource, replicaLagMonitor);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
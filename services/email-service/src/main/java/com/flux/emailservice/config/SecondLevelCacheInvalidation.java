@@ -0,0 +1,158 @@
+package com.flux.emailservice.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Why: Giữ Hibernate second-level cache đúng giữa các nodes
+ * Context: Ehcache regions là local heap; Hibernate chỉ invalidate cache của node commit.
+ *          Sau commit của một cached entity (EmailTemplate, EmailSettings) node publish
+ *          "nodeId|entityName|id" lên Redis channel, các nodes khác evict entity, natural-id
+ *          và query regions tương ứng. Redis lỗi thì nodes khác stale tối đa đến TTL trong ehcache.xml.
+ *          Cả hai phía đều publish CachedEntityChangedEvent cho snapshots in-memory
+ */
+@Configuration
+public class SecondLevelCacheInvalidation implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecondLevelCacheInvalidation.class);
+
+    // Why: Bỏ qua messages của chính node này, cache local đã được Hibernate cập nhật lúc commit
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String channel;
+
+    @Autowired
+    public SecondLevelCacheInvalidation(EntityManagerFactory entityManagerFactory,
+                                        StringRedisTemplate stringRedisTemplate,
+                                        ApplicationEventPublisher eventPublisher,
+                                        ApplicationProperties applicationProperties) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.eventPublisher = eventPublisher;
+        this.channel = applicationProperties.getCache().getInvalidationChannel();
+    }
+
+    /**
+     * Why: Đăng ký post-commit listeners vào SessionFactory mà Spring Boot đã build
+     */
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer secondLevelCacheInvalidationContainer(
+            RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(this, new ChannelTopic(channel));
+        return container;
+    }
+
+    // Why: Insert cũng publish vì query cache của nodes khác (active templates)
+    //      không biết có row mới
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.canWriteToCache();
+    }
+
+    // Why: Rollback thì không có gì để invalidate
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    /**
+     * Why: Evict entries bị thay đổi trên node khác
+     * Context: Natural-id region evict cả entity type vì name cũ không suy ra được từ id
+     *          (template có thể đã đổi tên); query regions evict hết vì timestamps region cũng local
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Cache cache = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache();
+            cache.evictEntityData(parts[1], Long.valueOf(parts[2]));
+            cache.evictNaturalIdData(parts[1]);
+            cache.evictQueryRegions();
+            logger.debug("Evicted second-level cache for {}#{} from node {}", parts[1], parts[2], parts[0]);
+            eventPublisher.publishEvent(new CachedEntityChangedEvent(parts[1], Long.valueOf(parts[2])));
+        } catch (Exception e) {
+            logger.warn("Could not apply cache invalidation {}: {}", parts[1], e.getMessage());
+        }
+    }
+
+    private void publish(EntityPersister persister, Object id) {
+        if (!persister.canWriteToCache()) {
+            return;
+        }
+        eventPublisher.publishEvent(new CachedEntityChangedEvent(persister.getEntityName(), id));
+        try {
+            stringRedisTemplate.convertAndSend(channel, nodeId + "|" + persister.getEntityName() + "|" + id);
+        } catch (Exception e) {
+            // Why: Commit đã xong, không fail request vì Redis; nodes khác hết stale theo TTL
+            logger.warn("Could not publish cache invalidation for {}#{}: {}",
+                       persister.getEntityName(), id, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.flux.emailservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+/**
+ * Why: Cấu hình Thymeleaf cho database-stored templates
+ * Context: EmailTemplateService truyền chính nội dung template (subject/html/text) vào
+ *          TemplateEngine.process, nên cần resolver coi template name là template content
+ */
+@Configuration
+public class ThymeleafConfig {
+
+    /**
+     * Why: String template resolver được Spring Boot tự add vào SpringTemplateEngine
+     * Context: Order thấp nhất để classpath:/templates/ resolver (nếu có file) vẫn được ưu tiên.
+     *          Parsed templates được cache theo chính content nên template sửa đổi là entry mới,
+     *          không bao giờ stale; StandardCacheManager giới hạn số entries (LRU)
+     */
+    @Bean
+    public StringTemplateResolver stringTemplateResolver() {
+        StringTemplateResolver resolver = new StringTemplateResolver();
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setOrder(Ordered.LOWEST_PRECEDENCE);
+        resolver.setCacheable(true);
+        return resolver;
+    }
+}
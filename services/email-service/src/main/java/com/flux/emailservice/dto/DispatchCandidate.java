@@ -0,0 +1,122 @@
+package com.flux.emailservice.dto;
+
+import com.flux.emailservice.entity.EmailQueue;
+import com.flux.emailservice.entity.EmailTemplate;
+
+import java.util.Map;
+
+/**
+ * Why: Email PENDING đã claim, đủ field để dispatch mà không load entities
+ * Context: Claim query tạo trực tiếp bằng JPQL constructor expression, template chỉ đóng góp
+ *          id / name / type / active / current version qua join trong cùng query. Content được
+ *          resolve từ TemplateVersionRegistry theo version id, nên một batch là một query
+ */
+public class DispatchCandidate {
+
+    private final Long id;
+    private final String recipientEmail;
+    private final String serverId;
+    private final Integer priority;
+    private final Integer retryCount;
+    private final Map<String, Object> templateVariables;
+    private final Long templateVersionId;
+    private final Long templateId;
+    private final String templateName;
+    private final String templateType;
+    private final Boolean templateActive;
+    private final Long templateCurrentVersionId;
+
+    public DispatchCandidate(Long id, String recipientEmail, String serverId, Integer priority,
+                             Integer retryCount, Map<String, Object> templateVariables, Long templateVersionId,
+                             Long templateId, String templateName, String templateType, Boolean templateActive,
+                             Long templateCurrentVersionId) {
+        this.id = id;
+        this.recipientEmail = recipientEmail;
+        this.serverId = serverId;
+        this.priority = priority;
+        this.retryCount = retryCount;
+        this.templateVariables = templateVariables;
+        this.templateVersionId = templateVersionId;
+        this.templateId = templateId;
+        this.templateName = templateName;
+        this.templateType = templateType;
+        this.templateActive = templateActive;
+        this.templateCurrentVersionId = templateCurrentVersionId;
+    }
+
+    /**
+     * Why: Candidate từ entity cho callers đã có EmailQueue (API / async sends)
+     * Context: Đọc template association - initialize proxy nếu chưa được fetch
+     */
+    public static DispatchCandidate from(EmailQueue emailQueue) {
+        EmailTemplate template = emailQueue.getTemplate();
+        return new DispatchCandidate(emailQueue.getId(), emailQueue.getRecipientEmail(), emailQueue.getServerId(),
+                emailQueue.getPriority(), emailQueue.getRetryCount(), emailQueue.getTemplateVariables(),
+                emailQueue.getTemplateVersionId(), template.getId(), template.getTemplateName(),
+                template.getTemplateType(), template.getIsActive(), template.getCurrentVersionId());
+    }
+
+    // Business methods
+    public boolean isHighPriority() {
+        return this.priority <= 2;
+    }
+
+    public boolean isTemplateActive() {
+        return Boolean.TRUE.equals(templateActive);
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getRecipientEmail() {
+        return recipientEmail;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public Integer getRetryCount() {
+        return retryCount;
+    }
+
+    public Map<String, Object> getTemplateVariables() {
+        return templateVariables;
+    }
+
+    public Long getTemplateVersionId() {
+        return templateVersionId;
+    }
+
+    public Long getTemplateId() {
+        return templateId;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public String getTemplateType() {
+        return templateType;
+    }
+
+    public Long getTemplateCurrentVersionId() {
+        return templateCurrentVersionId;
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchCandidate{" +
+                "id=" + id +
+                ", recipientEmail='" + recipientEmail + '\'' +
+                ", templateName='" + templateName + '\'' +
+                ", priority=" + priority +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.flux.emailservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Why: Projection của EmailLog cho listing
+ * Context: Bỏ delivery_status (jsonb provider payload) - chỉ cần khi xem chi tiết một log.
+ *          Được tạo trực tiếp bằng JPQL constructor expression nên không load entity
+ */
+public class EmailLogSummary {
+
+    private final Long id;
+    private final Long emailQueueId;
+    private final String recipientEmail;
+    private final String subject;
+    private final String status;
+    private final String providerMessageId;
+    private final LocalDateTime sentAt;
+    private final LocalDateTime deliveredAt;
+    private final LocalDateTime openedAt;
+    private final LocalDateTime clickedAt;
+    private final LocalDateTime createdAt;
+
+    public EmailLogSummary(Long id, Long emailQueueId, String recipientEmail, String subject, String status,
+                           String providerMessageId, LocalDateTime sentAt, LocalDateTime deliveredAt,
+                           LocalDateTime openedAt, LocalDateTime clickedAt, LocalDateTime createdAt) {
+        this.id = id;
+        this.emailQueueId = emailQueueId;
+        this.recipientEmail = recipientEmail;
+        this.subject = subject;
+        this.status = status;
+        this.providerMessageId = providerMessageId;
+        this.sentAt = sentAt;
+        this.deliveredAt = deliveredAt;
+        this.openedAt = openedAt;
+        this.clickedAt = clickedAt;
+        this.createdAt = createdAt;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getEmailQueueId() {
+        return emailQueueId;
+    }
+
+    public String getRecipientEmail() {
+        return recipientEmail;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getProviderMessageId() {
+        return providerMessageId;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public LocalDateTime getDeliveredAt() {
+        return deliveredAt;
+    }
+
+    public LocalDateTime getOpenedAt() {
+        return openedAt;
+    }
+
+    public LocalDateTime getClickedAt() {
+        return clickedAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public KeysetCursor toCursor() {
+        return new KeysetCursor(createdAt, id);
+    }
+}
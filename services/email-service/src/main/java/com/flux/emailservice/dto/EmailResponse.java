@@ -146,6 +146,13 @@ public class EmailResponse {
         this.createdAt = createdAt;
     }
 
+    /**
+     * Why: Keyset position khi EmailResponse là row của queue listing
+     */
+    public KeysetCursor toCursor() {
+        return new KeysetCursor(createdAt, id);
+    }
+
     @Override
     public String toString() {
         return "EmailResponse{" +
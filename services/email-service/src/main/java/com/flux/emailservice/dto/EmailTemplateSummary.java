@@ -0,0 +1,76 @@
+package com.flux.emailservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Why: Projection của EmailTemplate cho listing
+ * Context: Bỏ html_content / text_content (TEXT, có thể hàng chục KB mỗi template); admin
+ *          load nội dung đầy đủ theo id khi mở một template
+ */
+public class EmailTemplateSummary {
+
+    private final Long id;
+    private final String templateName;
+    private final String templateType;
+    private final String subjectTemplate;
+    private final Boolean isActive;
+    private final Long currentVersionId;
+    private final String createdBy;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    public EmailTemplateSummary(Long id, String templateName, String templateType, String subjectTemplate,
+                                Boolean isActive, Long currentVersionId, String createdBy,
+                                LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.templateName = templateName;
+        this.templateType = templateType;
+        this.subjectTemplate = subjectTemplate;
+        this.isActive = isActive;
+        this.currentVersionId = currentVersionId;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getTemplateName() {
+        return templateName;
+    }
+
+    public String getTemplateType() {
+        return templateType;
+    }
+
+    public String getSubjectTemplate() {
+        return subjectTemplate;
+    }
+
+    public Boolean getIsActive() {
+        return isActive;
+    }
+
+    public Long getCurrentVersionId() {
+        return currentVersionId;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public KeysetCursor toCursor() {
+        return new KeysetCursor(createdAt, id);
+    }
+}
@@ -0,0 +1,65 @@
+package com.flux.emailservice.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Why: Vị trí (created_at, id) của row cuối trang trước cho keyset pagination
+ * Context: Listing queries seek thẳng tới vị trí này qua index (..., created_at, id) thay vì
+ *          OFFSET, nên trang sâu tốn như trang đầu. id phân định rows cùng created_at.
+ *          Client chỉ thấy opaque token
+ */
+public final class KeysetCursor {
+
+    // Why: Trang đầu dùng sentinel lớn hơn mọi row để mỗi listing chỉ cần một query.
+    //      Không dùng LocalDateTime.MAX vì vượt range timestamp của Postgres
+    public static final KeysetCursor START =
+            new KeysetCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    public KeysetCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * Why: Decode token từ client, null / blank nghĩa là trang đầu
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid page cursor: " + token, e);
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{" +
+                "createdAt=" + createdAt +
+                ", id=" + id +
+                '}';
+    }
+}
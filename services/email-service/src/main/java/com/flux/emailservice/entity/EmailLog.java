@@ -21,8 +21,10 @@ import java.util.Map;
 @Table(name = "email_logs",
        indexes = {
            @Index(name = "idx_email_log_queue", columnList = "email_queue_id"),
-           @Index(name = "idx_email_log_recipient", columnList = "recipient_email"),
-           @Index(name = "idx_email_log_status", columnList = "status"),
+           // Why: Keyset listing (created_at, id) theo recipient / status hoặc toàn bộ logs
+           @Index(name = "idx_email_log_recipient", columnList = "recipient_email, created_at, id"),
+           @Index(name = "idx_email_log_status", columnList = "status, created_at, id"),
+           @Index(name = "idx_email_log_created", columnList = "created_at, id"),
            @Index(name = "idx_email_log_sent_at", columnList = "sent_at")
        })
 @EntityListeners(AuditingEntityListener.class)
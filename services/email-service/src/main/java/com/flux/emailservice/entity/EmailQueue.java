@@ -23,7 +23,15 @@ import java.util.Map;
        indexes = {
            @Index(name = "idx_email_queue_status", columnList = "status"),
            @Index(name = "idx_email_queue_scheduled", columnList = "scheduled_at"),
-           @Index(name = "idx_email_queue_recipient", columnList = "recipient_email")
+           @Index(name = "idx_email_queue_recipient", columnList = "recipient_email, created_at, id"),
+           // Why: Per-lane claim query lọc theo status + priority range rồi sort theo scheduled_at
+           @Index(name = "idx_email_queue_dispatch", columnList = "status, priority, scheduled_at"),
+           @Index(name = "idx_email_queue_server", columnList = "server_id"),
+           // Why: Tenant-fair candidate query - loose index scan theo server và LATERAL seek per server
+           @Index(name = "idx_email_queue_tenant_dispatch", columnList = "status, server_id, priority, scheduled_at"),
+           // Why: Keyset listing (created_at, id) - toàn bộ queue và theo status
+           @Index(name = "idx_email_queue_created", columnList = "created_at, id"),
+           @Index(name = "idx_email_queue_status_created", columnList = "status, created_at, id")
        })
 @EntityListeners(AuditingEntityListener.class)
 public class EmailQueue {
@@ -47,11 +55,20 @@ public class EmailQueue {
     @JoinColumn(name = "template_id", nullable = false)
     private EmailTemplate template;
 
+    // Why: Template version được pin lúc enqueue, null với rows cũ (render current version)
+    @Column(name = "template_version_id")
+    private Long templateVersionId;
+
     // Why: JSON column để store template variables dynamically
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "template_variables", columnDefinition = "jsonb")
     private Map<String, Object> templateVariables;
 
+    // Why: Flux server (tenant) gây ra email, dùng cho fair scheduling giữa các servers
+    @Size(max = 100, message = "Server ID must not exceed 100 characters")
+    @Column(name = "server_id", length = 100)
+    private String serverId;
+
     @NotNull(message = "Priority is required")
     @Column(name = "priority", nullable = false)
     private Integer priority = 3; // Default priority: 3 (medium)
@@ -73,6 +90,11 @@ public class EmailQueue {
     @Column(name = "max_retries", nullable = false)
     private Integer maxRetries = 3;
 
+    // Why: Tăng mỗi lần dispatcher claim row; outcome của worker chỉ áp dụng cho đúng lần claim đó.
+    //      Nullable để thêm column không cần backfill rows cũ
+    @Column(name = "claim_attempt")
+    private Integer claimAttempt;
+
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
 
@@ -92,6 +114,7 @@ public class EmailQueue {
         this.recipientEmail = recipientEmail;
         this.recipientName = recipientName;
         this.template = template;
+        this.templateVersionId = template.getCurrentVersionId();
         this.templateVariables = templateVariables;
         this.priority = priority;
         this.scheduledAt = LocalDateTime.now();
@@ -108,6 +131,12 @@ public class EmailQueue {
         this.errorMessage = errorMessage;
     }
 
+    public void markAsSentUnknown(String errorMessage) {
+        this.status = EmailQueueStatus.SENT_UNKNOWN.name();
+        this.sentAt = LocalDateTime.now();
+        this.errorMessage = errorMessage;
+    }
+
     public void markAsProcessing() {
         this.status = EmailQueueStatus.PROCESSING.name();
     }
@@ -149,6 +178,14 @@ public class EmailQueue {
         this.recipientName = recipientName;
     }
 
+    public String getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(String serverId) {
+        this.serverId = serverId;
+    }
+
     public EmailTemplate getTemplate() {
         return template;
     }
@@ -157,6 +194,14 @@ public class EmailQueue {
         this.template = template;
     }
 
+    public Long getTemplateVersionId() {
+        return templateVersionId;
+    }
+
+    public void setTemplateVersionId(Long templateVersionId) {
+        this.templateVersionId = templateVersionId;
+    }
+
     public Map<String, Object> getTemplateVariables() {
         return templateVariables;
     }
@@ -205,6 +250,14 @@ public class EmailQueue {
         this.retryCount = retryCount;
     }
 
+    public Integer getClaimAttempt() {
+        return claimAttempt;
+    }
+
+    public void setClaimAttempt(Integer claimAttempt) {
+        this.claimAttempt = claimAttempt;
+    }
+
     public Integer getMaxRetries() {
         return maxRetries;
     }
@@ -257,6 +310,8 @@ public class EmailQueue {
         PENDING,
         PROCESSING,
         SENT,
+        // Why: Relay có thể đã accept (timeout sau DATA) - không retry để tránh gửi trùng
+        SENT_UNKNOWN,
         FAILED,
         CANCELLED
     }
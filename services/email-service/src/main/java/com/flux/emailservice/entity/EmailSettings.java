@@ -4,6 +4,10 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -12,9 +16,12 @@ import java.time.LocalDateTime;
 
 /**
  * Why: JPA entity cho email service settings
- * Context: Dynamic configuration cho email service
+ * Context: Dynamic configuration cho email service, đọc nhiều hơn ghi nên nằm trong
+ *          second-level cache; lookup theo settingKey đi qua natural-id cache
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "email-settings")
+@NaturalIdCache(region = "email-settings-natural-id")
 @Table(name = "email_settings",
        uniqueConstraints = @UniqueConstraint(columnNames = "setting_key"))
 @EntityListeners(AuditingEntityListener.class)
@@ -26,6 +33,7 @@ public class EmailSettings {
 
     @NotBlank(message = "Setting key is required")
     @Size(max = 100, message = "Setting key must not exceed 100 characters")
+    @NaturalId
     @Column(name = "setting_key", nullable = false, unique = true, length = 100)
     private String settingKey;
 
@@ -175,5 +183,14 @@ public class EmailSettings {
         public static final String ENABLE_TRACKING = "tracking.enabled";
         public static final String BLACKLIST_DOMAINS = "security.blacklist.domains";
         public static final String WHITELIST_ENABLED = "security.whitelist.enabled";
+
+        // Why: Throughput knobs đọc live qua EmailSettingsService, thiếu thì dùng ApplicationProperties
+        public static final String RETRY_DELAY_MS = "retry.delay.ms";
+        public static final String RETRY_BACKOFF_MULTIPLIER = "retry.backoff.multiplier";
+        public static final String SMTP_MAX_CONCURRENCY = "smtp.concurrency.max";
+        // Why: Per-lane overrides, key = prefix + lane name (vd. "dispatch.lane.bulk.workers")
+        public static final String LANE_PREFIX = "dispatch.lane.";
+        public static final String LANE_BATCH_SIZE_SUFFIX = ".batch.size";
+        public static final String LANE_WORKERS_SUFFIX = ".workers";
     }
 }
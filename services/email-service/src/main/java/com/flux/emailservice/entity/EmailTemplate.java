@@ -4,6 +4,10 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -12,11 +16,15 @@ import java.time.LocalDateTime;
 
 /**
  * Why: JPA entity cho email templates
- * Context: Lưu trữ các template email có thể tái sử dụng
+ * Context: Lưu trữ các template email có thể tái sử dụng. Read-mostly nên nằm trong
+ *          second-level cache, lookup theo templateName đi qua natural-id cache
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "email-template")
+@NaturalIdCache(region = "email-template-natural-id")
 @Table(name = "email_templates", 
-       uniqueConstraints = @UniqueConstraint(columnNames = "template_name"))
+       uniqueConstraints = @UniqueConstraint(columnNames = "template_name"),
+       indexes = @Index(name = "idx_email_templates_created", columnList = "created_at, id"))
 @EntityListeners(AuditingEntityListener.class)
 public class EmailTemplate {
 
@@ -26,6 +34,8 @@ public class EmailTemplate {
 
     @NotBlank(message = "Template name is required")
     @Size(max = 100, message = "Template name must not exceed 100 characters")
+    // Why: Mutable vì updateTemplate cho phép đổi tên
+    @NaturalId(mutable = true)
     @Column(name = "template_name", nullable = false, unique = true, length = 100)
     private String templateName;
 
@@ -62,6 +72,11 @@ public class EmailTemplate {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Why: Pointer tới EmailTemplateVersion đang dùng cho emails mới - state mutable duy nhất
+    //      của send path. Content columns ở trên là bản sao của version đó cho admin / preview
+    @Column(name = "current_version_id")
+    private Long currentVersionId;
+
     // Constructors
     public EmailTemplate() {}
 
@@ -157,6 +172,14 @@ public class EmailTemplate {
         this.updatedAt = updatedAt;
     }
 
+    public Long getCurrentVersionId() {
+        return currentVersionId;
+    }
+
+    public void setCurrentVersionId(Long currentVersionId) {
+        this.currentVersionId = currentVersionId;
+    }
+
     @Override
     public String toString() {
         return "EmailTemplate{" +
@@ -164,6 +187,7 @@ public class EmailTemplate {
                 ", templateName='" + templateName + '\'' +
                 ", templateType='" + templateType + '\'' +
                 ", isActive=" + isActive +
+                ", currentVersionId=" + currentVersionId +
                 ", createdAt=" + createdAt +
                 '}';
     }
@@ -0,0 +1,100 @@
+package com.flux.emailservice.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Why: Immutable snapshot nội dung của một email template
+ * Context: Mỗi lần edit tạo version mới; EmailTemplate.currentVersionId là pointer duy nhất
+ *          bị thay đổi. EmailQueue pin version id lúc enqueue nên email luôn render đúng
+ *          content tại thời điểm được queue, và version có thể cache vĩnh viễn theo id
+ */
+@Entity
+@Immutable
+@Table(name = "email_template_versions",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"template_id", "version"}))
+public class EmailTemplateVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "template_id", nullable = false, updatable = false)
+    private Long templateId;
+
+    @Column(name = "version", nullable = false, updatable = false)
+    private Integer version;
+
+    @Column(name = "subject_template", nullable = false, updatable = false, length = 500)
+    private String subjectTemplate;
+
+    @Column(name = "html_content", nullable = false, updatable = false, columnDefinition = "TEXT")
+    private String htmlContent;
+
+    @Column(name = "text_content", updatable = false, columnDefinition = "TEXT")
+    private String textContent;
+
+    @Column(name = "created_by", updatable = false, length = 100)
+    private String createdBy;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    protected EmailTemplateVersion() {}
+
+    public EmailTemplateVersion(Long templateId, Integer version, String subjectTemplate,
+                                String htmlContent, String textContent, String createdBy) {
+        this.templateId = templateId;
+        this.version = version;
+        this.subjectTemplate = subjectTemplate;
+        this.htmlContent = htmlContent;
+        this.textContent = textContent;
+        this.createdBy = createdBy;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getTemplateId() {
+        return templateId;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public String getSubjectTemplate() {
+        return subjectTemplate;
+    }
+
+    public String getHtmlContent() {
+        return htmlContent;
+    }
+
+    public String getTextContent() {
+        return textContent;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "EmailTemplateVersion{" +
+                "id=" + id +
+                ", templateId=" + templateId +
+                ", version=" + version +
+                '}';
+    }
+}
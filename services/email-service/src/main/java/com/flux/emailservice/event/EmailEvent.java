@@ -1,6 +1,7 @@
 package com.flux.emailservice.event;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -30,6 +31,10 @@ public class EmailEvent {
     @JsonProperty("data")
     private Map<String, Object> data;
 
+    // Why: Typed payload từ EmailEventDecoder; events từ generic converter được convert lazily
+    @JsonIgnore
+    private EventPayload payload;
+
     // Constructors
     public EmailEvent() {}
 
@@ -42,6 +47,15 @@ public class EmailEvent {
         this.data = data;
     }
 
+    public EmailEvent(String eventType, String eventId, LocalDateTime timestamp,
+                     String version, EventPayload payload) {
+        this.eventType = eventType;
+        this.eventId = eventId;
+        this.timestamp = timestamp;
+        this.version = version;
+        this.payload = payload;
+    }
+
     // Business methods
     public boolean isUserCreatedEvent() {
         return "user.created".equals(this.eventType);
@@ -65,45 +79,63 @@ public class EmailEvent {
 
     // Helper methods để extract common data
     public String getUserId() {
-        return data != null ? (String) data.get("userId") : null;
+        return payload != null ? payload.userId() : dataValue("userId");
     }
 
     public String getUserEmail() {
-        return data != null ? (String) data.get("userEmail") : null;
+        return payload != null ? payload.userEmail() : dataValue("userEmail");
     }
 
     public String getUserName() {
-        return data != null ? (String) data.get("userName") : null;
+        return payload != null ? payload.userName() : dataValue("userName");
     }
 
     public String getServerId() {
-        return data != null ? (String) data.get("serverId") : null;
+        return payload != null ? payload.serverId() : dataValue("serverId");
     }
 
     public String getServerName() {
-        return data != null ? (String) data.get("serverName") : null;
+        return payload != null ? payload.serverName() : dataValue("serverName");
     }
 
     public String getInviterName() {
-        return data != null ? (String) data.get("inviterName") : null;
+        return payload != null ? payload.inviterName() : dataValue("inviterName");
     }
 
     public String getInviteUrl() {
-        return data != null ? (String) data.get("inviteUrl") : null;
+        return payload != null ? payload.inviteUrl() : dataValue("inviteUrl");
     }
 
     public String getResetToken() {
-        return data != null ? (String) data.get("resetToken") : null;
+        return payload != null ? payload.resetToken() : dataValue("resetToken");
     }
 
     @SuppressWarnings("unchecked")
     public Map<String, Object> getAdditionalData() {
+        if (payload != null) {
+            return payload.additionalData();
+        }
         if (data != null && data.containsKey("additionalData")) {
             return (Map<String, Object>) data.get("additionalData");
         }
         return Map.of();
     }
 
+    /**
+     * Why: Typed payload của event, null nếu event type không có payload riêng
+     */
+    @JsonIgnore
+    public EventPayload getPayload() {
+        if (payload == null) {
+            payload = EventPayload.fromData(eventType, data);
+        }
+        return payload;
+    }
+
+    private String dataValue(String key) {
+        return data != null ? (String) data.get(key) : null;
+    }
+
     // Getters and Setters
     public String getEventType() {
         return eventType;
@@ -138,11 +170,16 @@ public class EmailEvent {
     }
 
     public Map<String, Object> getData() {
+        // Why: Events decode typed không giữ Map, chỉ build lại khi cần serialize
+        if (data == null && payload != null) {
+            data = payload.toData();
+        }
         return data;
     }
 
     public void setData(Map<String, Object> data) {
         this.data = data;
+        this.payload = null;
     }
 
     @Override
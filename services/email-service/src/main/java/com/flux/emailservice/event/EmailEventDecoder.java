@@ -0,0 +1,72 @@
+package com.flux.emailservice.event;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Why: Decode RabbitMQ messages thẳng thành typed payloads
+ * Context: ObjectReader được build sẵn cho mỗi routing key nên root deserializer không phải
+ *          resolve lại mỗi message, và "data" không đi qua LinkedHashMap trung gian.
+ *          Routing key không có payload riêng thì decode như EmailEvent generic. Envelope của
+ *          routing key có payload riêng mà thiếu "data" bị reject như message không convert được
+ */
+@Component
+public class EmailEventDecoder {
+
+    private final Map<String, ObjectReader> readers = new HashMap<>();
+    private final ObjectReader genericReader;
+
+    @Autowired
+    public EmailEventDecoder(ObjectMapper objectMapper) {
+        register(objectMapper, EmailEvent.EventTypes.USER_CREATED, UserCreatedPayload.class);
+        register(objectMapper, EmailEvent.EventTypes.PASSWORD_RESET_REQUESTED, PasswordResetPayload.class);
+        register(objectMapper, EmailEvent.EventTypes.SERVER_MEMBER_INVITED, ServerMemberInvitedPayload.class);
+        register(objectMapper, EmailEvent.EventTypes.SERVER_MEMBER_JOINED, ServerMemberJoinedPayload.class);
+        register(objectMapper, EmailEvent.EventTypes.SERVER_CREATED, ServerCreatedPayload.class);
+        this.genericReader = objectMapper.readerFor(EmailEvent.class);
+    }
+
+    private void register(ObjectMapper objectMapper, String routingKey, Class<? extends EventPayload> payloadType) {
+        JavaType envelopeType = objectMapper.getTypeFactory()
+                .constructParametricType(EventEnvelope.class, payloadType);
+        readers.put(routingKey, objectMapper.readerFor(envelopeType));
+    }
+
+    public EmailEvent decode(Message message) {
+        String routingKey = message.getMessageProperties().getReceivedRoutingKey();
+        return decode(routingKey, message.getBody());
+    }
+
+    public EmailEvent decode(String routingKey, byte[] body) {
+        ObjectReader reader = routingKey != null ? readers.get(routingKey) : null;
+        try {
+            if (reader == null) {
+                return genericReader.readValue(body);
+            }
+            EventEnvelope<? extends EventPayload> envelope = reader.readValue(body);
+            if (envelope.data() == null) {
+                // Why: Handlers đọc payload không null-check; thiếu "data" là lỗi message, không phải
+                //      lỗi hạ tầng nên phải reject ngay thay vì retry rồi mới dead-letter
+                throw new MessageConversionException(
+                        "Email event with routing key " + routingKey + " has no data: " + envelope.eventId());
+            }
+            String eventType = envelope.eventType() != null ? envelope.eventType() : routingKey;
+            return new EmailEvent(eventType, envelope.eventId(), envelope.timestamp(),
+                    envelope.version(), envelope.data());
+        } catch (IOException e) {
+            // Why: Payload hỏng không bao giờ decode được - dead-letter thay vì requeue vô hạn
+            throw new AmqpRejectAndDontRequeueException(
+                    "Failed to decode email event with routing key: " + routingKey, e);
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.flux.emailservice.event;
 
+import com.flux.emailservice.config.RabbitMQConfig;
+import com.flux.emailservice.service.AdmissionController;
 import com.flux.emailservice.service.EmailQueueService;
+import com.flux.emailservice.service.EventDeduplicator;
+import com.flux.emailservice.service.ExpressEmailSender;
+import com.flux.emailservice.service.NotificationCoalescer;
+import com.flux.emailservice.service.RateLimitService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -20,20 +26,77 @@ public class EmailEventListener {
     private static final Logger logger = LoggerFactory.getLogger(EmailEventListener.class);
 
     private final EmailQueueService emailQueueService;
+    private final NotificationCoalescer notificationCoalescer;
+    private final EventDeduplicator eventDeduplicator;
+    private final ExpressEmailSender expressEmailSender;
+    private final AdmissionController admissionController;
+    private final EmailEventDecoder emailEventDecoder;
 
     @Autowired
-    public EmailEventListener(EmailQueueService emailQueueService) {
+    public EmailEventListener(EmailQueueService emailQueueService,
+                              NotificationCoalescer notificationCoalescer,
+                              EventDeduplicator eventDeduplicator,
+                              ExpressEmailSender expressEmailSender,
+                              AdmissionController admissionController,
+                              EmailEventDecoder emailEventDecoder) {
         this.emailQueueService = emailQueueService;
+        this.notificationCoalescer = notificationCoalescer;
+        this.eventDeduplicator = eventDeduplicator;
+        this.expressEmailSender = expressEmailSender;
+        this.admissionController = admissionController;
+        this.emailEventDecoder = emailEventDecoder;
+    }
+
+    /**
+     * Why: Consumers riêng cho mỗi event class
+     * Context: Mỗi class có container, prefetch và concurrency riêng; processing vẫn centralized.
+     *          Raw message được decode bằng typed reader theo routing key
+     */
+    @RabbitListener(id = RabbitMQConfig.TRANSACTIONAL_CLASS, queues = RabbitMQConfig.TRANSACTIONAL_QUEUE,
+                    containerFactory = "transactionalListenerContainerFactory")
+    public void handleTransactionalEvent(Message message) {
+        handleEmailEvent(emailEventDecoder.decode(message));
+    }
+
+    @RabbitListener(id = RabbitMQConfig.STANDARD_CLASS, queues = RabbitMQConfig.STANDARD_QUEUE,
+                    containerFactory = "standardListenerContainerFactory")
+    public void handleStandardEvent(Message message) {
+        handleEmailEvent(emailEventDecoder.decode(message));
+    }
+
+    @RabbitListener(id = RabbitMQConfig.BULK_CLASS, queues = RabbitMQConfig.BULK_QUEUE,
+                    containerFactory = "bulkListenerContainerFactory")
+    public void handleBulkEvent(Message message) {
+        handleEmailEvent(emailEventDecoder.decode(message));
     }
 
     /**
      * Why: Lắng nghe tất cả email events từ single queue
-     * Context: Single listener để centralized event processing
+     * Context: Legacy queue không còn bindings, listener chỉ drain messages còn lại sau deploy
      */
     @RabbitListener(queues = "#{@rabbitMQConfig.EMAIL_QUEUE}")
     public void handleEmailEvent(EmailEvent event) {
         logger.info("Received email event: {}", event);
 
+        // Why: Dưới backlog pressure, events ít quan trọng được defer/downsample/reject trước khi chạm DB
+        if (!admissionController.admit(event)) {
+            return;
+        }
+
+        processEvent(event);
+    }
+
+    /**
+     * Why: Xử lý event đã được admit
+     * Context: Cũng là entry point cho deferred events được re-admit, nên không qua admission lần nữa
+     */
+    public void processEvent(EmailEvent event) {
+        // Why: Upstream retry publishes - drop trước khi chạm database
+        if (eventDeduplicator.isDuplicateEvent(event)) {
+            logger.info("Dropping duplicate email event: {}", event.getEventId());
+            return;
+        }
+
         try {
             switch (event.getEventType()) {
                 case EmailEvent.EventTypes.USER_CREATED:
@@ -61,6 +124,8 @@ public class EmailEventListener {
             }
         } catch (Exception e) {
             logger.error("Error processing email event: {}", event, e);
+            // Why: Release claim để redelivery không bị coi là duplicate
+            eventDeduplicator.releaseEvent(event);
             // Why: Rethrow để trigger retry mechanism
             throw new RuntimeException("Failed to process email event", e);
         }
@@ -78,23 +143,10 @@ public class EmailEventListener {
             return;
         }
 
-        Map<String, Object> templateVariables = new HashMap<>();
-        templateVariables.put("userName", event.getUserName());
-        templateVariables.put("userEmail", event.getUserEmail());
-        templateVariables.put("loginUrl", "https://flux.com/login");
-        templateVariables.put("supportEmail", "support@flux.com");
-        templateVariables.put("currentYear", String.valueOf(java.time.Year.now().getValue()));
-
-        // Why: Merge additional data từ event
-        templateVariables.putAll(event.getAdditionalData());
+        // Why: Chỉ persist per-recipient values; loginUrl, supportEmail... merge lúc render
+        Map<String, Object> templateVariables = event.getPayload().templateVariables();
 
-        emailQueueService.queueEmail(
-            event.getUserEmail(),
-            event.getUserName(),
-            "WELCOME_EMAIL",
-            templateVariables,
-            3 // Medium priority
-        );
+        enqueue(event, "WELCOME_EMAIL", templateVariables, 3); // Medium priority
 
         logger.info("Queued welcome email for user: {}", event.getUserEmail());
     }
@@ -111,24 +163,9 @@ public class EmailEventListener {
             return;
         }
 
-        Map<String, Object> templateVariables = new HashMap<>();
-        templateVariables.put("userName", event.getUserName());
-        templateVariables.put("userEmail", event.getUserEmail());
-        templateVariables.put("serverName", event.getServerName());
-        templateVariables.put("inviterName", event.getInviterName());
-        templateVariables.put("inviteUrl", event.getInviteUrl());
-        templateVariables.put("supportEmail", "support@flux.com");
-        templateVariables.put("currentYear", String.valueOf(java.time.Year.now().getValue()));
-
-        templateVariables.putAll(event.getAdditionalData());
-
-        emailQueueService.queueEmail(
-            event.getUserEmail(),
-            event.getUserName(),
-            "SERVER_INVITATION",
-            templateVariables,
-            2 // High priority
-        );
+        Map<String, Object> templateVariables = event.getPayload().templateVariables();
+
+        enqueue(event, "SERVER_INVITATION", templateVariables, 2); // High priority
 
         logger.info("Queued invitation email for user: {} to server: {}", 
                    event.getUserEmail(), event.getServerName());
@@ -146,23 +183,9 @@ public class EmailEventListener {
             return;
         }
 
-        Map<String, Object> templateVariables = new HashMap<>();
-        templateVariables.put("userName", event.getUserName());
-        templateVariables.put("userEmail", event.getUserEmail());
-        templateVariables.put("serverName", event.getServerName());
-        templateVariables.put("serverUrl", "https://flux.com/servers/" + event.getServerId());
-        templateVariables.put("supportEmail", "support@flux.com");
-        templateVariables.put("currentYear", String.valueOf(java.time.Year.now().getValue()));
-
-        templateVariables.putAll(event.getAdditionalData());
+        Map<String, Object> templateVariables = event.getPayload().templateVariables();
 
-        emailQueueService.queueEmail(
-            event.getUserEmail(),
-            event.getUserName(),
-            "SERVER_JOIN_CONFIRMATION",
-            templateVariables,
-            3 // Medium priority
-        );
+        enqueue(event, "SERVER_JOIN_CONFIRMATION", templateVariables, 3); // Medium priority
 
         logger.info("Queued join confirmation email for user: {} in server: {}", 
                    event.getUserEmail(), event.getServerName());
@@ -180,24 +203,9 @@ public class EmailEventListener {
             return;
         }
 
-        Map<String, Object> templateVariables = new HashMap<>();
-        templateVariables.put("userName", event.getUserName());
-        templateVariables.put("userEmail", event.getUserEmail());
-        templateVariables.put("resetUrl", "https://flux.com/reset-password?token=" + event.getResetToken());
-        templateVariables.put("resetToken", event.getResetToken());
-        templateVariables.put("expiryMinutes", "30");
-        templateVariables.put("supportEmail", "support@flux.com");
-        templateVariables.put("currentYear", String.valueOf(java.time.Year.now().getValue()));
-
-        templateVariables.putAll(event.getAdditionalData());
-
-        emailQueueService.queueEmail(
-            event.getUserEmail(),
-            event.getUserName(),
-            "PASSWORD_RESET",
-            templateVariables,
-            1 // Highest priority
-        );
+        Map<String, Object> templateVariables = event.getPayload().templateVariables();
+
+        enqueue(event, "PASSWORD_RESET", templateVariables, 1); // Highest priority
 
         logger.info("Queued password reset email for user: {}", event.getUserEmail());
     }
@@ -214,26 +222,57 @@ public class EmailEventListener {
             return;
         }
 
-        Map<String, Object> templateVariables = new HashMap<>();
-        templateVariables.put("userName", event.getUserName());
-        templateVariables.put("userEmail", event.getUserEmail());
-        templateVariables.put("serverName", event.getServerName());
-        templateVariables.put("serverUrl", "https://flux.com/servers/" + event.getServerId());
-        templateVariables.put("manageUrl", "https://flux.com/servers/" + event.getServerId() + "/settings");
-        templateVariables.put("supportEmail", "support@flux.com");
-        templateVariables.put("currentYear", String.valueOf(java.time.Year.now().getValue()));
-
-        templateVariables.putAll(event.getAdditionalData());
-
-        emailQueueService.queueEmail(
-            event.getUserEmail(),
-            event.getUserName(),
-            "SERVER_CREATED",
-            templateVariables,
-            3 // Medium priority
-        );
+        Map<String, Object> templateVariables = event.getPayload().templateVariables();
+
+        enqueue(event, "SERVER_CREATED", templateVariables, 3); // Medium priority
 
         logger.info("Queued server creation email for user: {} for server: {}", 
                    event.getUserEmail(), event.getServerName());
     }
+
+    /**
+     * Why: Single entry point từ handlers vào queue
+     * Context: Duplicate content bị drop, transactional events đi express lane,
+     *          noisy event types được buffer vào digest thay vì queue từng email
+     */
+    private void enqueue(EmailEvent event, String templateName, Map<String, Object> templateVariables,
+                         int priority) {
+        if (eventDeduplicator.isDuplicateContent(event.getUserEmail(), templateName, templateVariables)) {
+            logger.info("Dropping duplicate {} email for {}", templateName, event.getUserEmail());
+            return;
+        }
+
+        try {
+            // Why: Transactional events gửi ngay, chỉ fallback về queue khi gửi không được
+            if (expressEmailSender.handles(event.getEventType())
+                    && expressEmailSender.trySend(event.getUserEmail(), event.getUserName(), templateName,
+                                                  templateVariables, priority, event.getServerId())) {
+                return;
+            }
+
+            if (notificationCoalescer.offer(event, templateName, templateVariables, priority)) {
+                return;
+            }
+
+            emailQueueService.queueEmail(
+                event.getUserEmail(),
+                event.getUserName(),
+                templateName,
+                templateVariables,
+                priority,
+                event.getServerId()
+            );
+        } catch (RateLimitService.RateLimitExceededException e) {
+            eventDeduplicator.releaseContent(event.getUserEmail(), templateName, templateVariables);
+            // Why: Park event đến khi rate limit window trôi qua thay vì dead-letter message
+            if (!admissionController.deferRateLimited(event)) {
+                throw e;
+            }
+            eventDeduplicator.releaseEvent(event);
+            logger.info("Deferred {} email for rate limited recipient {}", templateName, event.getUserEmail());
+        } catch (RuntimeException e) {
+            eventDeduplicator.releaseContent(event.getUserEmail(), templateName, templateVariables);
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,19 @@
+package com.flux.emailservice.event;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.time.LocalDateTime;
+
+/**
+ * Why: Wire format của event với "data" là typed payload
+ * Context: Chỉ dùng trong EmailEventDecoder, listener vẫn làm việc với EmailEvent
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+record EventEnvelope<P extends EventPayload>(String eventType,
+                                             String eventId,
+                                             @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+                                             LocalDateTime timestamp,
+                                             String version,
+                                             P data) {
+}
@@ -0,0 +1,97 @@
+package com.flux.emailservice.event;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Why: Typed payload cho "data" của mỗi event type
+ * Context: Được decode thẳng từ JSON bởi EmailEventDecoder, nên getters không còn hash lookup
+ *          + cast trên Map<String, Object> và template variables được build trực tiếp từ fields
+ */
+public sealed interface EventPayload
+        permits UserCreatedPayload, PasswordResetPayload, ServerMemberInvitedPayload,
+                ServerMemberJoinedPayload, ServerCreatedPayload {
+
+    String SERVER_URL_BASE = "https://flux.com/servers/";
+
+    String userId();
+
+    String userEmail();
+
+    String userName();
+
+    Map<String, Object> additionalData();
+
+    default String serverId() {
+        return null;
+    }
+
+    default String serverName() {
+        return null;
+    }
+
+    default String inviterName() {
+        return null;
+    }
+
+    default String inviteUrl() {
+        return null;
+    }
+
+    default String resetToken() {
+        return null;
+    }
+
+    /**
+     * Why: Template variables lấy từ event, additionalData override fields như trước
+     */
+    Map<String, Object> templateVariables();
+
+    /**
+     * Why: Dạng Map của payload, dùng khi event cần serialize lại (vd. deferred events)
+     */
+    Map<String, Object> toData();
+
+    /**
+     * Why: HashMap đủ capacity cho fields + additionalData, không resize
+     */
+    static Map<String, Object> newVariables(int fields, Map<String, Object> additionalData) {
+        int expected = fields + additionalData.size();
+        return new HashMap<>((int) (expected / 0.75f) + 1);
+    }
+
+    /**
+     * Why: Chuyển legacy Map data sang typed payload
+     * Context: Events decode bằng generic converter (legacy queue, deferred events); null nếu
+     *          event type không có payload riêng
+     */
+    @SuppressWarnings("unchecked")
+    static EventPayload fromData(String eventType, Map<String, Object> data) {
+        if (eventType == null || data == null) {
+            return null;
+        }
+        String userId = (String) data.get("userId");
+        String userEmail = (String) data.get("userEmail");
+        String userName = (String) data.get("userName");
+        Map<String, Object> additionalData = (Map<String, Object>) data.get("additionalData");
+
+        return switch (eventType) {
+            case EmailEvent.EventTypes.USER_CREATED ->
+                    new UserCreatedPayload(userId, userEmail, userName, additionalData);
+            case EmailEvent.EventTypes.PASSWORD_RESET_REQUESTED ->
+                    new PasswordResetPayload(userId, userEmail, userName, (String) data.get("resetToken"),
+                            additionalData);
+            case EmailEvent.EventTypes.SERVER_MEMBER_INVITED ->
+                    new ServerMemberInvitedPayload(userId, userEmail, userName, (String) data.get("serverId"),
+                            (String) data.get("serverName"), (String) data.get("inviterName"),
+                            (String) data.get("inviteUrl"), additionalData);
+            case EmailEvent.EventTypes.SERVER_MEMBER_JOINED ->
+                    new ServerMemberJoinedPayload(userId, userEmail, userName, (String) data.get("serverId"),
+                            (String) data.get("serverName"), additionalData);
+            case EmailEvent.EventTypes.SERVER_CREATED ->
+                    new ServerCreatedPayload(userId, userEmail, userName, (String) data.get("serverId"),
+                            (String) data.get("serverName"), additionalData);
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.flux.emailservice.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Why: Payload của user.password.reset.requested
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record PasswordResetPayload(String userId,
+                                   String userEmail,
+                                   String userName,
+                                   String resetToken,
+                                   Map<String, Object> additionalData) implements EventPayload {
+
+    private static final String RESET_URL_BASE = "https://flux.com/reset-password?token=";
+
+    public PasswordResetPayload {
+        additionalData = additionalData != null ? additionalData : Map.of();
+    }
+
+    @Override
+    public Map<String, Object> templateVariables() {
+        Map<String, Object> variables = EventPayload.newVariables(4, additionalData);
+        variables.put("userName", userName);
+        variables.put("userEmail", userEmail);
+        variables.put("resetUrl", RESET_URL_BASE + resetToken);
+        variables.put("resetToken", resetToken);
+        variables.putAll(additionalData);
+        return variables;
+    }
+
+    @Override
+    public Map<String, Object> toData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("userEmail", userEmail);
+        data.put("userName", userName);
+        data.put("resetToken", resetToken);
+        data.put("additionalData", additionalData);
+        return data;
+    }
+}
@@ -0,0 +1,46 @@
+package com.flux.emailservice.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Why: Payload của server.created
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ServerCreatedPayload(String userId,
+                                   String userEmail,
+                                   String userName,
+                                   String serverId,
+                                   String serverName,
+                                   Map<String, Object> additionalData) implements EventPayload {
+
+    public ServerCreatedPayload {
+        additionalData = additionalData != null ? additionalData : Map.of();
+    }
+
+    @Override
+    public Map<String, Object> templateVariables() {
+        Map<String, Object> variables = EventPayload.newVariables(5, additionalData);
+        variables.put("userName", userName);
+        variables.put("userEmail", userEmail);
+        variables.put("serverName", serverName);
+        variables.put("serverUrl", SERVER_URL_BASE + serverId);
+        variables.put("manageUrl", SERVER_URL_BASE + serverId + "/settings");
+        variables.putAll(additionalData);
+        return variables;
+    }
+
+    @Override
+    public Map<String, Object> toData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("userEmail", userEmail);
+        data.put("userName", userName);
+        data.put("serverId", serverId);
+        data.put("serverName", serverName);
+        data.put("additionalData", additionalData);
+        return data;
+    }
+}
@@ -0,0 +1,39 @@
+package com.flux.emailservice.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Why: Payload của user.created
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record UserCreatedPayload(String userId,
+                                 String userEmail,
+                                 String userName,
+                                 Map<String, Object> additionalData) implements EventPayload {
+
+    public UserCreatedPayload {
+        additionalData = additionalData != null ? additionalData : Map.of();
+    }
+
+    @Override
+    public Map<String, Object> templateVariables() {
+        Map<String, Object> variables = EventPayload.newVariables(2, additionalData);
+        variables.put("userName", userName);
+        variables.put("userEmail", userEmail);
+        variables.putAll(additionalData);
+        return variables;
+    }
+
+    @Override
+    public Map<String, Object> toData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("userEmail", userEmail);
+        data.put("userName", userName);
+        data.put("additionalData", additionalData);
+        return data;
+    }
+}
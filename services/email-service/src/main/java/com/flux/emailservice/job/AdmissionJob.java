@@ -0,0 +1,63 @@
+package com.flux.emailservice.job;
+
+import com.flux.emailservice.event.EmailEvent;
+import com.flux.emailservice.event.EmailEventListener;
+import com.flux.emailservice.service.AdmissionController;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Why: Background job cho admission control
+ * Context: Sample pressure định kỳ và re-admit deferred events khi pressure về NORMAL
+ */
+@Component
+public class AdmissionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionJob.class);
+
+    private final AdmissionController admissionController;
+    private final EmailEventListener emailEventListener;
+
+    @Autowired
+    public AdmissionJob(AdmissionController admissionController, EmailEventListener emailEventListener) {
+        this.admissionController = admissionController;
+        this.emailEventListener = emailEventListener;
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.admission.sample-interval-ms:2000}")
+    public void samplePressure() {
+        try {
+            admissionController.samplePressure();
+        } catch (Exception e) {
+            logger.error("Failed to sample admission pressure", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.admission.readmit-interval-ms:5000}")
+    public void readmitDeferred() {
+        try {
+            List<EmailEvent> events = admissionController.claimReadmittable();
+            for (EmailEvent event : events) {
+                try {
+                    emailEventListener.processEvent(event);
+                } catch (Exception e) {
+                    logger.warn("Failed to re-admit {} event {}, deferring again: {}",
+                               event.getEventType(), event.getEventId(), e.getMessage());
+                    if (!admissionController.deferForRetry(event)) {
+                        logger.error("Lost deferred {} event {}", event.getEventType(), event.getEventId());
+                    }
+                }
+            }
+            if (!events.isEmpty()) {
+                logger.info("Re-admitted {} deferred events", events.size());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to re-admit deferred events", e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.flux.emailservice.job;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.dto.DispatchCandidate;
+import com.flux.emailservice.entity.EmailSettings;
+import com.flux.emailservice.service.DomainSendShaper;
+import com.flux.emailservice.service.EmailQueueService;
+import com.flux.emailservice.service.EmailSendingService;
+import com.flux.emailservice.service.EmailSettingsService;
+import com.flux.emailservice.service.RateLimitService;
+import com.flux.emailservice.service.SmtpFailureClassifier;
+import com.flux.emailservice.service.TenantFairScheduler;
+import com.flux.emailservice.service.WarmupService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Why: Background job gửi emails PENDING trong queue
+ * Context: Mỗi priority lane có poll loop, claim query và worker pool riêng, nên latency của
+ *          priority 1 không phụ thuộc vào kích thước bulk backlog. Trong mỗi lane, emails được
+ *          chia đều giữa Flux servers (DRR) và shape theo recipient domain trước khi dispatch.
+ *          Batch size và số workers của lane tunable lúc runtime qua email_settings
+ */
+@Component
+public class EmailProcessingJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailProcessingJob.class);
+
+    // Why: Trần của runtime workers override so với app.email.dispatch.lanes[].workers, executor
+    //      queue được size theo trần này vì queue capacity không đổi được sau initialize()
+    private static final int MAX_WORKERS_FACTOR = 4;
+
+    private final EmailQueueService emailQueueService;
+    private final EmailSendingService emailSendingService;
+    private final DomainSendShaper domainSendShaper;
+    private final TenantFairScheduler tenantFairScheduler;
+    private final WarmupService warmupService;
+    private final ApplicationProperties applicationProperties;
+    private final EmailSettingsService emailSettingsService;
+    private final MeterRegistry meterRegistry;
+
+    private final List<LaneDispatcher> dispatchers = new ArrayList<>();
+    private ThreadPoolTaskScheduler pollScheduler;
+
+    @Autowired
+    public EmailProcessingJob(EmailQueueService emailQueueService,
+                              EmailSendingService emailSendingService,
+                              DomainSendShaper domainSendShaper,
+                              TenantFairScheduler tenantFairScheduler,
+                              WarmupService warmupService,
+                              ApplicationProperties applicationProperties,
+                              EmailSettingsService emailSettingsService,
+                              MeterRegistry meterRegistry) {
+        this.emailQueueService = emailQueueService;
+        this.emailSendingService = emailSendingService;
+        this.domainSendShaper = domainSendShaper;
+        this.tenantFairScheduler = tenantFairScheduler;
+        this.warmupService = warmupService;
+        this.applicationProperties = applicationProperties;
+        this.emailSettingsService = emailSettingsService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Why: Start một poll loop cho mỗi lane
+     */
+    @PostConstruct
+    public void start() {
+        List<ApplicationProperties.Dispatch.Lane> lanes = applicationProperties.getDispatch().getLanes();
+
+        pollScheduler = new ThreadPoolTaskScheduler();
+        pollScheduler.setPoolSize(lanes.size());
+        pollScheduler.setThreadNamePrefix("EmailDispatch-");
+        pollScheduler.initialize();
+
+        for (ApplicationProperties.Dispatch.Lane lane : lanes) {
+            LaneDispatcher dispatcher = new LaneDispatcher(lane);
+            dispatchers.add(dispatcher);
+
+            long pollIntervalMs = lane.getPollIntervalMs() != null
+                    ? lane.getPollIntervalMs()
+                    : applicationProperties.getProcessingIntervalMs();
+            pollScheduler.scheduleWithFixedDelay(dispatcher::poll, Duration.ofMillis(pollIntervalMs));
+
+            logger.info("Started dispatch lane {} (priority {}-{}, {} workers, poll every {}ms)",
+                       lane.getName(), lane.getMinPriority(), lane.getMaxPriority(),
+                       lane.getWorkers(), pollIntervalMs);
+        }
+    }
+
+    /**
+     * Why: Reaper cho rows kẹt ở PROCESSING
+     */
+    @Scheduled(fixedDelayString = "${app.email.dispatch.stale-check-interval-ms:60000}")
+    public void reclaimStaleProcessing() {
+        try {
+            int reclaimed = emailQueueService.reclaimStaleProcessing();
+            if (reclaimed > 0) {
+                meterRegistry.counter("email.dispatch.reclaimed").increment(reclaimed);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to reclaim stale PROCESSING emails", e);
+        }
+    }
+
+    /**
+     * Why: Apply workers override của snapshot mới cho mọi lane
+     */
+    @EventListener
+    public void onSettingsReloaded(EmailSettingsService.Snapshot settings) {
+        dispatchers.forEach(dispatcher -> dispatcher.applyWorkers(settings));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pollScheduler != null) {
+            pollScheduler.shutdown();
+        }
+        dispatchers.forEach(dispatcher -> dispatcher.workers.shutdown());
+    }
+
+    /**
+     * Why: Dispatch state của một priority lane
+     * Context: Chỉ claim thêm khi workers còn chỗ, để emails không nằm chờ trong executor
+     *          queue ở trạng thái PROCESSING
+     */
+    private class LaneDispatcher {
+
+        private final ApplicationProperties.Dispatch.Lane lane;
+        private final ThreadPoolTaskExecutor workers;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final String settingsPrefix;
+        private volatile int workerCount;
+
+        private LaneDispatcher(ApplicationProperties.Dispatch.Lane lane) {
+            this.lane = lane;
+            this.settingsPrefix = EmailSettings.SettingKeys.LANE_PREFIX + lane.getName();
+            this.workerCount = lane.getWorkers();
+
+            this.workers = new ThreadPoolTaskExecutor();
+            workers.setCorePoolSize(lane.getWorkers());
+            workers.setMaxPoolSize(lane.getWorkers());
+            workers.setQueueCapacity(lane.getWorkers() * MAX_WORKERS_FACTOR);
+            workers.setThreadNamePrefix("EmailLane-" + lane.getName() + "-");
+            workers.setWaitForTasksToCompleteOnShutdown(true);
+            workers.initialize();
+            applyWorkers(emailSettingsService.current());
+
+            Gauge.builder("email.dispatch.lane.inflight", inFlight, AtomicInteger::get)
+                    .tag("lane", lane.getName())
+                    .register(meterRegistry);
+            Gauge.builder("email.dispatch.lane.workers", this, dispatcher -> dispatcher.workerCount)
+                    .tag("lane", lane.getName())
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Why: Resize worker pool theo "dispatch.lane.<name>.workers"
+         * Context: Tăng thì set max trước core, giảm thì ngược lại để core không vượt max;
+         *          threads thừa thoát khi xong task đang chạy
+         */
+        private synchronized void applyWorkers(EmailSettingsService.Snapshot settings) {
+            int target = Math.max(1, Math.min(lane.getWorkers() * MAX_WORKERS_FACTOR,
+                    settings.getInt(settingsPrefix + EmailSettings.SettingKeys.LANE_WORKERS_SUFFIX,
+                            lane.getWorkers())));
+            if (target == workerCount) {
+                return;
+            }
+            if (target > workerCount) {
+                workers.setMaxPoolSize(target);
+                workers.setCorePoolSize(target);
+            } else {
+                workers.setCorePoolSize(target);
+                workers.setMaxPoolSize(target);
+            }
+            logger.info("Dispatch lane {} workers {} -> {}", lane.getName(), workerCount, target);
+            workerCount = target;
+        }
+
+        /**
+         * Why: Batch size theo thứ tự lane setting > lane config > global setting > global config
+         */
+        private int batchSize() {
+            EmailSettingsService.Snapshot settings = emailSettingsService.current();
+            int configured = lane.getBatchSize() != null
+                    ? lane.getBatchSize()
+                    : settings.getInt(EmailSettings.SettingKeys.BATCH_SIZE, applicationProperties.getBatchSize());
+            return settings.getInt(settingsPrefix + EmailSettings.SettingKeys.LANE_BATCH_SIZE_SUFFIX, configured);
+        }
+
+        /**
+         * Why: Process một batch emails đến hạn gửi trong lane
+         * Context: Domains hết tokens bị skip để batch được lấp bằng domains khác
+         */
+        private void poll() {
+            // Why: Emails đầu tiên không trả chi phí cold start
+            if (!warmupService.isComplete()) {
+                return;
+            }
+            try {
+                int capacity = workerCount * 2 - inFlight.get();
+                int batchSize = Math.min(capacity, batchSize());
+                if (batchSize <= 0) {
+                    return;
+                }
+
+                int lookahead = batchSize * Math.max(1, applicationProperties.getDomainShaping().getLookaheadFactor());
+                ApplicationProperties.Tenancy tenancy = applicationProperties.getTenancy();
+                List<DispatchCandidate> candidates = tenancy.isEnabled()
+                        ? emailQueueService.getTenantFairEmailsToSend(lane.getMinPriority(), lane.getMaxPriority(),
+                                tenancy.getCandidatesPerTenant(), lookahead)
+                        : emailQueueService.getEmailsToSend(lane.getMinPriority(), lane.getMaxPriority(), lookahead);
+                if (candidates.isEmpty()) {
+                    return;
+                }
+
+                TenantFairScheduler.Selection selection = select(candidates, batchSize, tenancy.isEnabled());
+                List<DispatchCandidate> selected = selection.getSelected();
+                int skipped = selection.getSkipped();
+
+                if (selected.isEmpty()) {
+                    logger.debug("Lane {}: all {} candidate emails are over their domain budgets",
+                                lane.getName(), candidates.size());
+                    return;
+                }
+
+                List<Long> ids = selected.stream().map(DispatchCandidate::getId).toList();
+                Map<Long, Integer> claimed;
+                try {
+                    claimed = emailQueueService.markEmailsAsProcessing(ids);
+                } catch (RuntimeException e) {
+                    selected.forEach(this::releaseDomain);
+                    throw e;
+                }
+                logger.info("Lane {}: dispatching {} emails ({} skipped by domain shaping, {} claimed elsewhere)",
+                           lane.getName(), claimed.size(), skipped, selected.size() - claimed.size());
+
+                // Why: Chỉ gửi rows claim được; rows instance khác đã claim trả lại domain slot
+                for (DispatchCandidate email : selected) {
+                    Integer claimAttempt = claimed.get(email.getId());
+                    if (claimAttempt != null) {
+                        dispatch(email, claimAttempt);
+                    } else {
+                        releaseDomain(email);
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Dispatch lane {} poll failed", lane.getName(), e);
+            }
+        }
+
+        /**
+         * Why: Chọn emails từ candidates, domain shaping là gate cho từng email
+         * Context: Tenancy bật thì DRR giữa Flux servers, tắt thì giữ thứ tự priority
+         */
+        private TenantFairScheduler.Selection select(List<DispatchCandidate> candidates, int batchSize,
+                                                     boolean tenantFair) {
+            Predicate<DispatchCandidate> admit = email ->
+                    domainSendShaper.tryAcquire(RateLimitService.extractDomain(email.getRecipientEmail()));
+            if (tenantFair) {
+                return tenantFairScheduler.select(lane.getName(), candidates, batchSize, admit);
+            }
+
+            List<DispatchCandidate> selected = new ArrayList<>(batchSize);
+            int skipped = 0;
+            for (DispatchCandidate email : candidates) {
+                if (selected.size() >= batchSize) {
+                    break;
+                }
+                if (admit.test(email)) {
+                    selected.add(email);
+                } else {
+                    skipped++;
+                }
+            }
+            return new TenantFairScheduler.Selection(selected, skipped);
+        }
+
+        private void releaseDomain(DispatchCandidate email) {
+            domainSendShaper.release(RateLimitService.extractDomain(email.getRecipientEmail()));
+        }
+
+        /**
+         * Why: Gửi trên worker pool của lane và cập nhật trạng thái khi xong
+         * Context: Concurrency slot của domain được trả lại dù gửi thành công hay thất bại.
+         *          Pool từ chối task (shutdown, workers vừa bị giảm) thì undo in-flight / domain
+         *          slot và trả row về PENDING ngay. Null result nghĩa là reaper đã lấy lại claim
+         *          trước khi worker kịp gửi
+         */
+        private void dispatch(DispatchCandidate email, int claimAttempt) {
+            String domain = RateLimitService.extractDomain(email.getRecipientEmail());
+            inFlight.incrementAndGet();
+
+            CompletableFuture<EmailSendingService.EmailSendResult> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> {
+                    // Why: Refresh updated_at ngay trước send để reaper không reset row đang được gửi
+                    if (!emailQueueService.startSending(email.getId(), claimAttempt)) {
+                        return null;
+                    }
+                    return emailSendingService.sendEmail(email);
+                }, workers);
+            } catch (RejectedExecutionException e) {
+                inFlight.decrementAndGet();
+                domainSendShaper.release(domain);
+                logger.warn("Lane {} rejected email {}: {}", lane.getName(), email.getId(), e.getMessage());
+                try {
+                    emailQueueService.releaseClaim(email.getId(), claimAttempt);
+                } catch (Exception releaseError) {
+                    // Why: Reaper trả row về PENDING sau processing-timeout-seconds
+                    logger.error("Failed to release claim for email {}", email.getId(), releaseError);
+                }
+                return;
+            }
+
+            future
+                    .exceptionally(e -> EmailSendingService.EmailSendResult.failure(e.getMessage(),
+                            SmtpFailureClassifier.Classification.unknown(e.getMessage())))
+                    .whenComplete((result, throwable) -> {
+                        inFlight.decrementAndGet();
+                        domainSendShaper.release(domain);
+                        try {
+                            if (result == null) {
+                                logger.warn("Email {} claim {} was reclaimed before sending, skipped",
+                                           email.getId(), claimAttempt);
+                            } else if (result.isSuccess()) {
+                                emailQueueService.markEmailAsSent(email.getId(), claimAttempt);
+                            } else {
+                                emailQueueService.markEmailAsFailed(email.getId(), claimAttempt,
+                                        result.getErrorDetails(), result.isPermanentFailure());
+                            }
+                        } catch (Exception e) {
+                            logger.error("Failed to update status for email {}", email.getId(), e);
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.flux.emailservice.job;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.config.RabbitMQConfig;
+import com.flux.emailservice.service.ListenerLoadTracker;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Why: Điều chỉnh listener concurrency và prefetch theo load thực tế
+ * Context: Spring chỉ ramp consumers dựa trên việc nhận được message, không biết queue sâu
+ *          bao nhiêu hay DB/SMTP phía sau đã bão hoà. Job sample queue depth từ broker,
+ *          utilisation và handler latency của consumers, rồi scale mỗi class giữa
+ *          concurrency và max-concurrency. Kết quả cluster-wide được expose thành
+ *          email.listener.desired.replicas cho Kubernetes autoscaler
+ */
+@Component
+public class ListenerAutoscalingJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerAutoscalingJob.class);
+
+    private final RabbitListenerEndpointRegistry listenerEndpointRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final ListenerLoadTracker listenerLoadTracker;
+    private final ApplicationProperties applicationProperties;
+    private final HikariDataSource hikariDataSource;
+
+    private final List<ClassState> states = new ArrayList<>();
+    private final AtomicInteger desiredReplicas = new AtomicInteger(1);
+
+    @Autowired
+    public ListenerAutoscalingJob(RabbitListenerEndpointRegistry listenerEndpointRegistry,
+                                  AmqpAdmin amqpAdmin,
+                                  ListenerLoadTracker listenerLoadTracker,
+                                  ApplicationProperties applicationProperties,
+                                  DataSource dataSource,
+                                  MeterRegistry meterRegistry) {
+        this.listenerEndpointRegistry = listenerEndpointRegistry;
+        this.amqpAdmin = amqpAdmin;
+        this.listenerLoadTracker = listenerLoadTracker;
+        this.applicationProperties = applicationProperties;
+        this.hikariDataSource = hikariDataSourceOf(dataSource);
+
+        ApplicationProperties.Consumers consumers = applicationProperties.getConsumers();
+        states.add(new ClassState(RabbitMQConfig.TRANSACTIONAL_CLASS, RabbitMQConfig.TRANSACTIONAL_QUEUE,
+                consumers::getTransactional));
+        states.add(new ClassState(RabbitMQConfig.STANDARD_CLASS, RabbitMQConfig.STANDARD_QUEUE,
+                consumers::getStandard));
+        states.add(new ClassState(RabbitMQConfig.BULK_CLASS, RabbitMQConfig.BULK_QUEUE,
+                consumers::getBulk));
+
+        for (ClassState state : states) {
+            Gauge.builder("email.listener.queue.depth", state, s -> s.depth)
+                    .tag("class", state.name)
+                    .register(meterRegistry);
+            Gauge.builder("email.listener.concurrency", state, s -> s.concurrency)
+                    .tag("class", state.name)
+                    .register(meterRegistry);
+            Gauge.builder("email.listener.utilization", state, s -> s.utilization)
+                    .tag("class", state.name)
+                    .register(meterRegistry);
+            Gauge.builder("email.listener.handler.latency", state, s -> s.latencyMs)
+                    .tag("class", state.name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        Gauge.builder("email.listener.desired.replicas", desiredReplicas, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.consumers.autoscaling.interval-ms:5000}")
+    public void autoscale() {
+        ApplicationProperties.Consumers.Autoscaling config = applicationProperties.getConsumers().getAutoscaling();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        // Why: Threads chờ connection nghĩa là thêm consumers chỉ làm DB tệ hơn
+        HikariPoolMXBean connectionPool = hikariDataSource != null ? hikariDataSource.getHikariPoolMXBean() : null;
+        boolean databaseSaturated = connectionPool != null && connectionPool.getThreadsAwaitingConnection() > 0;
+
+        int replicas = 1;
+        for (ClassState state : states) {
+            try {
+                replicas = Math.max(replicas, evaluate(state, config, databaseSaturated));
+            } catch (Exception e) {
+                logger.warn("Failed to autoscale {} listener: {}", state.name, e.getMessage());
+            }
+        }
+        desiredReplicas.set(Math.min(config.getMaxReplicas(), replicas));
+    }
+
+    /**
+     * Why: Sample một class, áp dụng concurrency / prefetch mới cho instance này
+     * Context: Trả về số replicas class này cần; queue depth và broker consumer count là
+     *          cluster-wide nên cùng một kết quả trên mọi instance
+     */
+    private int evaluate(ClassState state, ApplicationProperties.Consumers.Autoscaling config,
+                         boolean databaseSaturated) {
+        long now = System.nanoTime();
+        long elapsedNanos = Math.max(1, now - state.lastSampleNanos);
+        state.lastSampleNanos = now;
+        ListenerLoadTracker.Snapshot snapshot = listenerLoadTracker.snapshot(state.name);
+
+        MessageListenerContainer listenerContainer = listenerEndpointRegistry.getListenerContainer(state.name);
+        if (!(listenerContainer instanceof SimpleMessageListenerContainer container) || !container.isRunning()) {
+            return 1;
+        }
+        QueueInformation queueInfo = amqpAdmin.getQueueInfo(state.queue);
+        if (queueInfo == null) {
+            return 1;
+        }
+
+        ApplicationProperties.Consumers.ConsumerClass consumerClass = state.config.get();
+        int minConsumers = consumerClass.getConcurrency();
+        int maxConsumers = Math.max(minConsumers, consumerClass.getMaxConcurrency());
+        int current = Math.max(1, container.getActiveConsumerCount());
+        int depth = queueInfo.getMessageCount();
+        int replicas = Math.max(1, Math.round(queueInfo.getConsumerCount() / (float) current));
+
+        if (snapshot.getMessages() > 0) {
+            state.latencyMs = snapshot.getAverageLatencyMs();
+        }
+        state.depth = depth;
+        state.utilization = Math.min(1.0, snapshot.getBusyNanos() / (double) (elapsedNanos * current));
+
+        // Why: Consumers cần cho arrival rate hiện tại (ở high utilization) cộng với drain backlog
+        //      trong target-drain-seconds, tính trên toàn cluster
+        double busyConsumers = state.utilization * current * replicas;
+        double drainConsumers = state.latencyMs > 0
+                ? depth * state.latencyMs / 1000.0 / config.getTargetDrainSeconds()
+                : (depth > 0 ? current * replicas + 1 : 0);
+        int neededTotal = (int) Math.ceil(busyConsumers / config.getHighUtilization() + drainConsumers);
+        int neededLocal = (int) Math.ceil(neededTotal / (double) replicas);
+
+        boolean saturated = databaseSaturated || state.latencyMs > config.getLatencyThresholdMs();
+        int target = current;
+        if (saturated) {
+            target = current - 1;
+        } else if (neededLocal > current) {
+            target = neededLocal;
+        } else if (depth == 0 && state.utilization < config.getLowUtilization()) {
+            target = current - 1;
+        }
+        target = Math.max(minConsumers, Math.min(maxConsumers, target));
+        applyConcurrency(state, container, current, target);
+        applyPrefetch(container, consumerClass, config, state.latencyMs, saturated);
+
+        int desired = (int) Math.ceil(neededTotal / (double) maxConsumers);
+        if (saturated) {
+            // Why: Downstream đã bão hoà, thêm replicas không tăng throughput
+            desired = Math.min(desired, replicas);
+        }
+        return Math.max(1, desired);
+    }
+
+    /**
+     * Why: Autoscaler quản lý concurrency nên max được pin bằng target
+     * Context: Thứ tự set để concurrentConsumers không bao giờ vượt maxConcurrentConsumers
+     */
+    private void applyConcurrency(ClassState state, SimpleMessageListenerContainer container,
+                                  int current, int target) {
+        if (target > current) {
+            container.setMaxConcurrentConsumers(target);
+            container.setConcurrentConsumers(target);
+        } else if (target < current) {
+            container.setConcurrentConsumers(target);
+            container.setMaxConcurrentConsumers(target);
+        }
+        if (target != current) {
+            logger.info("Scaled {} listener consumers {} -> {} (depth {}, utilization {}, latency {}ms)",
+                       state.name, current, target, state.depth,
+                       String.format("%.2f", state.utilization), Math.round(state.latencyMs));
+        }
+        state.concurrency = target;
+    }
+
+    /**
+     * Why: Prefetch đủ cho khoảng prefetch-buffer-ms work mỗi consumer
+     * Context: Handler chậm thì prefetch nhỏ để messages không kẹt sau một consumer;
+     *          giá trị mới áp dụng cho consumers được start sau đó
+     */
+    private void applyPrefetch(SimpleMessageListenerContainer container,
+                               ApplicationProperties.Consumers.ConsumerClass consumerClass,
+                               ApplicationProperties.Consumers.Autoscaling config,
+                               double latencyMs, boolean saturated) {
+        int prefetch;
+        if (saturated) {
+            prefetch = config.getMinPrefetch();
+        } else if (latencyMs > 0) {
+            prefetch = (int) Math.round(config.getPrefetchBufferMs() / Math.max(1.0, latencyMs));
+        } else {
+            prefetch = consumerClass.getPrefetch();
+        }
+        container.setPrefetchCount(Math.max(config.getMinPrefetch(), Math.min(config.getMaxPrefetch(), prefetch)));
+    }
+
+    private static HikariDataSource hikariDataSourceOf(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class);
+            }
+        } catch (SQLException e) {
+            logger.debug("DataSource is not a Hikari pool: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Why: Sample state của một consumer class, expose qua gauges
+     */
+    private static class ClassState {
+        private final String name;
+        private final String queue;
+        private final Supplier<ApplicationProperties.Consumers.ConsumerClass> config;
+        private long lastSampleNanos = System.nanoTime();
+        private volatile int depth;
+        private volatile int concurrency;
+        private volatile double utilization;
+        private volatile double latencyMs;
+
+        private ClassState(String name, String queue,
+                           Supplier<ApplicationProperties.Consumers.ConsumerClass> config) {
+            this.name = name;
+            this.queue = queue;
+            this.config = config;
+        }
+    }
+}
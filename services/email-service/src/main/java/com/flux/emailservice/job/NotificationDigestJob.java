@@ -0,0 +1,37 @@
+package com.flux.emailservice.job;
+
+import com.flux.emailservice.service.NotificationCoalescer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Why: Background job flush các coalesced notifications thành digest emails
+ * Context: Chạy trên mọi instance, NotificationCoalescer đảm bảo mỗi recipient chỉ flush một lần
+ */
+@Component
+public class NotificationDigestJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDigestJob.class);
+
+    private final NotificationCoalescer notificationCoalescer;
+
+    @Autowired
+    public NotificationDigestJob(NotificationCoalescer notificationCoalescer) {
+        this.notificationCoalescer = notificationCoalescer;
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.coalescing.flush-interval-ms:5000}")
+    public void flushDigests() {
+        try {
+            int flushed = notificationCoalescer.flushDue();
+            if (flushed > 0) {
+                logger.debug("Flushed coalesced notifications for {} recipients", flushed);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to flush coalesced notifications", e);
+        }
+    }
+}
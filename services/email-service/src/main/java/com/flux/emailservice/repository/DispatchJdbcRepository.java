@@ -0,0 +1,180 @@
+package com.flux.emailservice.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Why: Persistence path của dispatcher bằng plain JDBC
+ * Context: Mỗi email chỉ được claim, complete và log một lần - không cần persistence context,
+ *          entity snapshots, dirty checking hay AuditingEntityListener cho những rows đó.
+ *          Timestamps (updated_at / created_at) được set tường minh thay cho auditing.
+ *          Mỗi transition guard theo status hiện tại nên nhiều replicas đọc trùng candidates
+ *          chỉ có một bên claim được row. Admin / CRUD side vẫn dùng JPA repositories
+ */
+@Repository
+public class DispatchJdbcRepository {
+
+    private static final String MARK_PROCESSING =
+            "UPDATE email_queue SET status = 'PROCESSING', claim_attempt = COALESCE(claim_attempt, 0) + 1, " +
+            "updated_at = ? WHERE id = ANY(?) AND status = 'PENDING' RETURNING id, claim_attempt";
+
+    private static final String START_SEND =
+            "UPDATE email_queue SET updated_at = ? WHERE id = ? AND status = 'PROCESSING' AND claim_attempt = ?";
+
+    // Why: Send đã xong thắng reaper - cùng claim mà row đã bị reset về PENDING / FAILED vẫn thành SENT
+    private static final String MARK_SENT =
+            "UPDATE email_queue SET status = 'SENT', sent_at = ?, error_message = NULL, updated_at = ? " +
+            "WHERE id = ? AND claim_attempt = ? AND status IN ('PROCESSING', 'PENDING', 'FAILED')";
+
+    private static final String FIND_RETRY_STATE =
+            "SELECT retry_count, max_retries FROM email_queue WHERE id = ?";
+
+    private static final String RESCHEDULE =
+            "UPDATE email_queue SET status = 'PENDING', retry_count = ?, scheduled_at = ?, updated_at = ? " +
+            "WHERE id = ? AND status = 'PROCESSING' AND claim_attempt = ?";
+
+    private static final String MARK_FAILED =
+            "UPDATE email_queue SET status = 'FAILED', retry_count = ?, error_message = ?, updated_at = ? " +
+            "WHERE id = ? AND status = 'PROCESSING' AND claim_attempt = ?";
+
+    private static final String RELEASE_CLAIM =
+            "UPDATE email_queue SET status = 'PENDING', updated_at = ? " +
+            "WHERE id = ? AND status = 'PROCESSING' AND claim_attempt = ?";
+
+    // Why: Mỗi lần bị reap tính là một retry để email làm crash worker không loop vô hạn.
+    //      claim_attempt giữ nguyên nên MARK_SENT muộn của chính claim đó vẫn match; updated_at
+    //      được refresh lúc bắt đầu send nên chỉ rows có worker không còn chạy mới bị reset
+    private static final String RESET_STALE_PROCESSING =
+            "UPDATE email_queue SET " +
+            "status = CASE WHEN retry_count + 1 >= max_retries THEN 'FAILED' ELSE 'PENDING' END, " +
+            "error_message = CASE WHEN retry_count + 1 >= max_retries " +
+            "THEN 'Timed out in PROCESSING' ELSE error_message END, " +
+            "retry_count = retry_count + 1, updated_at = ? " +
+            "WHERE status = 'PROCESSING' AND updated_at < ?";
+
+    private static final String INSERT_LOG =
+            "INSERT INTO email_logs (email_queue_id, recipient_email, subject, status, delivery_status, " +
+            "sent_at, created_at) VALUES (?, ?, ?, ?, CAST(? AS jsonb), ?, ?) RETURNING id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public DispatchJdbcRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Why: Claim cả batch bằng một statement, trả về ids thực sự claim được
+     * Context: ids truyền dạng bigint array nên statement shape không đổi theo batch size.
+     *          Rows đã bị replica khác claim (không còn PENDING) không có trong kết quả;
+     *          UPDATE lấy row lock nên hai claims đồng thời không cùng thắng một row.
+     *          Trả về id -> claim_attempt, các transitions sau đó phải mang theo attempt này
+     */
+    public Map<Long, Integer> markProcessing(List<Long> ids, LocalDateTime now) {
+        Map<Long, Integer> claimed = new HashMap<>();
+        jdbcTemplate.query(MARK_PROCESSING, ps -> {
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+        }, rs -> {
+            claimed.put(rs.getLong("id"), rs.getInt("claim_attempt"));
+        });
+        return claimed;
+    }
+
+    /**
+     * Why: Worker bắt đầu send - refresh updated_at để reaper không coi row là stale
+     * Context: 0 rows nghĩa là claim này đã bị reaper lấy lại, worker không được gửi
+     */
+    public boolean startSend(Long id, int claimAttempt, LocalDateTime now) {
+        return jdbcTemplate.update(START_SEND, Timestamp.valueOf(now), id, claimAttempt) > 0;
+    }
+
+    public int markSent(Long id, int claimAttempt, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return jdbcTemplate.update(MARK_SENT, timestamp, timestamp, id, claimAttempt);
+    }
+
+    /**
+     * Why: Retry counters để quyết định retry / fail sau lỗi gửi
+     */
+    public Optional<RetryState> findRetryState(Long id) {
+        List<RetryState> states = jdbcTemplate.query(FIND_RETRY_STATE,
+                (rs, rowNum) -> new RetryState(rs.getInt("retry_count"), rs.getInt("max_retries")), id);
+        return states.stream().findFirst();
+    }
+
+    /**
+     * Why: Đưa email về PENDING với scheduled time mới (retry hoặc retry budget cạn)
+     */
+    public int reschedule(Long id, int claimAttempt, int retryCount, LocalDateTime scheduledAt, LocalDateTime now) {
+        return jdbcTemplate.update(RESCHEDULE, retryCount, Timestamp.valueOf(scheduledAt), Timestamp.valueOf(now),
+                id, claimAttempt);
+    }
+
+    public int markFailed(Long id, int claimAttempt, int retryCount, String errorMessage, LocalDateTime now) {
+        return jdbcTemplate.update(MARK_FAILED, retryCount, errorMessage, Timestamp.valueOf(now), id, claimAttempt);
+    }
+
+    /**
+     * Why: Trả row đã claim về PENDING khi chưa kịp gửi (worker pool từ chối task)
+     */
+    public int releaseClaim(Long id, int claimAttempt, LocalDateTime now) {
+        return jdbcTemplate.update(RELEASE_CLAIM, Timestamp.valueOf(now), id, claimAttempt);
+    }
+
+    /**
+     * Why: Reclaim rows PROCESSING có updated_at cũ hơn cutoff
+     */
+    public int resetStaleProcessing(LocalDateTime cutoff, LocalDateTime now) {
+        return jdbcTemplate.update(RESET_STALE_PROCESSING, Timestamp.valueOf(now), Timestamp.valueOf(cutoff));
+    }
+
+    /**
+     * Why: Insert một EmailLog row, trả về generated id
+     */
+    public Long insertLog(Long emailQueueId, String recipientEmail, String subject, String status,
+                          Map<String, Object> deliveryStatus, LocalDateTime sentAt) {
+        String deliveryStatusJson;
+        try {
+            deliveryStatusJson = deliveryStatus != null ? objectMapper.writeValueAsString(deliveryStatus) : null;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize delivery status for email " + emailQueueId, e);
+        }
+        Timestamp timestamp = Timestamp.valueOf(sentAt);
+        return jdbcTemplate.queryForObject(INSERT_LOG, Long.class, emailQueueId, recipientEmail, subject, status,
+                deliveryStatusJson, timestamp, timestamp);
+    }
+
+    /**
+     * Why: Retry counters của một queue row
+     */
+    public static class RetryState {
+        private final int retryCount;
+        private final int maxRetries;
+
+        public RetryState(int retryCount, int maxRetries) {
+            this.retryCount = retryCount;
+            this.maxRetries = maxRetries;
+        }
+
+        public boolean canRetry() {
+            return retryCount < maxRetries;
+        }
+
+        // Getters
+        public int getRetryCount() { return retryCount; }
+        public int getMaxRetries() { return maxRetries; }
+    }
+}
@@ -1,7 +1,7 @@
 package com.flux.emailservice.repository;
 
+import com.flux.emailservice.dto.EmailLogSummary;
 import com.flux.emailservice.entity.EmailLog;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -25,16 +25,53 @@ public interface EmailLogRepository extends JpaRepository<EmailLog, Long> {
     List<EmailLog> findByEmailQueueIdOrderByCreatedAtDesc(Long emailQueueId);
 
     /**
-     * Why: Tìm logs theo recipient email
-     * Context: User support để track email history
+     * Why: Log listing theo keyset (created_at, id), trang sâu tốn như trang đầu
+     * Context: Projection bỏ delivery_status (jsonb); el.emailQueue.id đọc FK column, không join
      */
-    Page<EmailLog> findByRecipientEmailOrderByCreatedAtDesc(String recipientEmail, Pageable pageable);
+    @Query("SELECT new com.flux.emailservice.dto.EmailLogSummary(el.id, el.emailQueue.id, el.recipientEmail, " +
+           "el.subject, el.status, el.providerMessageId, el.sentAt, el.deliveredAt, el.openedAt, el.clickedAt, " +
+           "el.createdAt) FROM EmailLog el WHERE " +
+           "(el.createdAt, el.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY el.createdAt DESC, el.id DESC")
+    List<EmailLogSummary> findLogPage(
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
 
     /**
-     * Why: Tìm logs theo status
-     * Context: Monitor delivery performance
+     * Why: Logs theo recipient email, keyset (created_at, id)
+     * Context: User support để track email history, dùng index (recipient_email, created_at, id)
      */
-    Page<EmailLog> findByStatusOrderByCreatedAtDesc(String status, Pageable pageable);
+    @Query("SELECT new com.flux.emailservice.dto.EmailLogSummary(el.id, el.emailQueue.id, el.recipientEmail, " +
+           "el.subject, el.status, el.providerMessageId, el.sentAt, el.deliveredAt, el.openedAt, el.clickedAt, " +
+           "el.createdAt) FROM EmailLog el WHERE " +
+           "el.recipientEmail = :recipientEmail AND " +
+           "(el.createdAt, el.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY el.createdAt DESC, el.id DESC")
+    List<EmailLogSummary> findLogPageByRecipient(
+            @Param("recipientEmail") String recipientEmail,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
+
+    /**
+     * Why: Logs theo status, keyset (created_at, id)
+     * Context: Monitor delivery performance, dùng index (status, created_at, id)
+     */
+    @Query("SELECT new com.flux.emailservice.dto.EmailLogSummary(el.id, el.emailQueue.id, el.recipientEmail, " +
+           "el.subject, el.status, el.providerMessageId, el.sentAt, el.deliveredAt, el.openedAt, el.clickedAt, " +
+           "el.createdAt) FROM EmailLog el WHERE " +
+           "el.status = :status AND " +
+           "(el.createdAt, el.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY el.createdAt DESC, el.id DESC")
+    List<EmailLogSummary> findLogPageByStatus(
+            @Param("status") String status,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
 
     /**
      * Why: Count delivery statistics
@@ -1,10 +1,10 @@
 package com.flux.emailservice.repository;
 
+import com.flux.emailservice.dto.DispatchCandidate;
+import com.flux.emailservice.dto.EmailResponse;
 import com.flux.emailservice.entity.EmailQueue;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,9 +21,10 @@ public interface EmailQueueRepository extends JpaRepository<EmailQueue, Long> {
 
     /**
      * Why: Tìm emails cần gửi theo priority và scheduled time
-     * Context: Email processing job để lấy emails cần gửi
+     * Context: Email processing job để lấy emails cần gửi; template được fetch cùng
+     *          vì sendEmail chạy trên async threads ngoài persistence context này
      */
-    @Query("SELECT eq FROM EmailQueue eq WHERE " +
+    @Query("SELECT eq FROM EmailQueue eq JOIN FETCH eq.template WHERE " +
            "eq.status = 'PENDING' AND " +
            "eq.scheduledAt <= :currentTime " +
            "ORDER BY eq.priority ASC, eq.scheduledAt ASC")
@@ -32,6 +33,97 @@ public interface EmailQueueRepository extends JpaRepository<EmailQueue, Long> {
             Pageable pageable
     );
 
+    /**
+     * Why: Claim query cho một dispatch lane
+     * Context: Chỉ scan priority range của lane, nên bulk backlog không làm chậm lane priority 1.
+     *          Projection thay vì entities - không có template proxies hay html content trong batch
+     */
+    @Query("SELECT new com.flux.emailservice.dto.DispatchCandidate(eq.id, eq.recipientEmail, eq.serverId, " +
+           "eq.priority, eq.retryCount, eq.templateVariables, eq.templateVersionId, t.id, t.templateName, " +
+           "t.templateType, t.isActive, t.currentVersionId) FROM EmailQueue eq JOIN eq.template t WHERE " +
+           "eq.status = 'PENDING' AND " +
+           "eq.priority BETWEEN :minPriority AND :maxPriority AND " +
+           "eq.scheduledAt <= :currentTime " +
+           "ORDER BY eq.priority ASC, eq.scheduledAt ASC")
+    List<DispatchCandidate> findDispatchCandidatesInPriorityRange(
+            @Param("minPriority") int minPriority,
+            @Param("maxPriority") int maxPriority,
+            @Param("currentTime") LocalDateTime currentTime,
+            Pageable pageable
+    );
+
+    /**
+     * Why: scheduledAt của email PENDING đến hạn lâu nhất trong priority range
+     * Context: Backlog lag probe cho admission control, dùng index (status, priority, scheduled_at)
+     */
+    @Query("SELECT MIN(eq.scheduledAt) FROM EmailQueue eq WHERE " +
+           "eq.status = 'PENDING' AND " +
+           "eq.priority BETWEEN :minPriority AND :maxPriority AND " +
+           "eq.scheduledAt <= :currentTime")
+    LocalDateTime findOldestDueScheduledAt(
+            @Param("minPriority") int minPriority,
+            @Param("maxPriority") int maxPriority,
+            @Param("currentTime") LocalDateTime currentTime
+    );
+
+    /**
+     * Why: Claim candidates cho fair scheduling - tối đa perTenant emails mỗi server
+     * Context: Server có backlog lớn không đẩy servers nhỏ ra khỏi candidate window.
+     *          Servers có rows PENDING được liệt kê bằng loose index scan (recursive CTE, một index
+     *          seek mỗi server), rồi LATERAL + LIMIT lấy perTenant rows đến hạn của từng server -
+     *          chi phí theo số servers và batch, không theo kích thước backlog. System mail
+     *          (server_id NULL) là nhánh riêng, không bị giới hạn perTenant vì đi trước DRR.
+     *          Trả về ids, projections được load bằng findDispatchCandidatesByIdIn
+     */
+    @Query(value = "WITH RECURSIVE tenants(server_id) AS (" +
+                   "  (SELECT eq.server_id FROM email_queue eq " +
+                   "   WHERE eq.status = 'PENDING' AND eq.server_id IS NOT NULL " +
+                   "   ORDER BY eq.server_id LIMIT 1) " +
+                   "  UNION ALL " +
+                   "  SELECT (SELECT eq.server_id FROM email_queue eq " +
+                   "          WHERE eq.status = 'PENDING' AND eq.server_id > t.server_id " +
+                   "          ORDER BY eq.server_id LIMIT 1) " +
+                   "  FROM tenants t WHERE t.server_id IS NOT NULL" +
+                   ") " +
+                   "SELECT candidates.id FROM (" +
+                   "  SELECT due.id, due.priority, due.scheduled_at FROM tenants t " +
+                   "  CROSS JOIN LATERAL (" +
+                   "    SELECT eq.id, eq.priority, eq.scheduled_at FROM email_queue eq " +
+                   "    WHERE eq.status = 'PENDING' AND eq.server_id = t.server_id " +
+                   "      AND eq.priority BETWEEN :minPriority AND :maxPriority " +
+                   "      AND eq.scheduled_at <= :currentTime " +
+                   "    ORDER BY eq.priority ASC, eq.scheduled_at ASC " +
+                   "    LIMIT :perTenant" +
+                   "  ) due " +
+                   "  UNION ALL " +
+                   "  (SELECT eq.id, eq.priority, eq.scheduled_at FROM email_queue eq " +
+                   "   WHERE eq.status = 'PENDING' AND eq.server_id IS NULL " +
+                   "     AND eq.priority BETWEEN :minPriority AND :maxPriority " +
+                   "     AND eq.scheduled_at <= :currentTime " +
+                   "   ORDER BY eq.priority ASC, eq.scheduled_at ASC " +
+                   "   LIMIT :limit)" +
+                   ") candidates " +
+                   "ORDER BY candidates.priority ASC, candidates.scheduled_at ASC " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findTenantFairCandidateIds(
+            @Param("minPriority") int minPriority,
+            @Param("maxPriority") int maxPriority,
+            @Param("currentTime") LocalDateTime currentTime,
+            @Param("perTenant") int perTenant,
+            @Param("limit") int limit
+    );
+
+    /**
+     * Why: Dispatch projections theo ids từ tenant-fair candidate query
+     */
+    @Query("SELECT new com.flux.emailservice.dto.DispatchCandidate(eq.id, eq.recipientEmail, eq.serverId, " +
+           "eq.priority, eq.retryCount, eq.templateVariables, eq.templateVersionId, t.id, t.templateName, " +
+           "t.templateType, t.isActive, t.currentVersionId) FROM EmailQueue eq JOIN eq.template t WHERE " +
+           "eq.id IN :ids " +
+           "ORDER BY eq.priority ASC, eq.scheduledAt ASC")
+    List<DispatchCandidate> findDispatchCandidatesByIdIn(@Param("ids") List<Long> ids);
+
     /**
      * Why: Tìm failed emails có thể retry
      * Context: Retry mechanism cho failed emails
@@ -43,16 +135,54 @@ public interface EmailQueueRepository extends JpaRepository<EmailQueue, Long> {
     List<EmailQueue> findEmailsForRetry(Pageable pageable);
 
     /**
-     * Why: Tìm emails theo status với pagination
-     * Context: Admin interface để monitor email queue
+     * Why: Queue listing theo keyset (created_at, id), trang sâu tốn như trang đầu
+     * Context: Admin interface. Row-value comparison seek qua index (created_at, id) rồi dừng
+     *          sau LIMIT rows; projection bỏ template_variables (jsonb) và error_message (TEXT)
+     */
+    @Query("SELECT new com.flux.emailservice.dto.EmailResponse(eq.id, eq.recipientEmail, eq.recipientName, " +
+           "t.templateName, eq.status, eq.priority, eq.scheduledAt, eq.sentAt, eq.retryCount, eq.createdAt) " +
+           "FROM EmailQueue eq JOIN eq.template t WHERE " +
+           "(eq.createdAt, eq.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY eq.createdAt DESC, eq.id DESC")
+    List<EmailResponse> findQueuePage(
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
+
+    /**
+     * Why: Queue listing theo status, keyset (created_at, id)
+     * Context: Dùng index (status, created_at, id)
      */
-    Page<EmailQueue> findByStatusOrderByCreatedAtDesc(String status, Pageable pageable);
+    @Query("SELECT new com.flux.emailservice.dto.EmailResponse(eq.id, eq.recipientEmail, eq.recipientName, " +
+           "t.templateName, eq.status, eq.priority, eq.scheduledAt, eq.sentAt, eq.retryCount, eq.createdAt) " +
+           "FROM EmailQueue eq JOIN eq.template t WHERE " +
+           "eq.status = :status AND " +
+           "(eq.createdAt, eq.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY eq.createdAt DESC, eq.id DESC")
+    List<EmailResponse> findQueuePageByStatus(
+            @Param("status") String status,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
 
     /**
-     * Why: Tìm emails theo recipient với pagination
-     * Context: User support để track emails sent to specific user
+     * Why: Emails gửi tới một recipient, keyset (created_at, id)
+     * Context: User support để track emails sent to specific user, dùng index (recipient_email, created_at, id)
      */
-    Page<EmailQueue> findByRecipientEmailOrderByCreatedAtDesc(String recipientEmail, Pageable pageable);
+    @Query("SELECT new com.flux.emailservice.dto.EmailResponse(eq.id, eq.recipientEmail, eq.recipientName, " +
+           "t.templateName, eq.status, eq.priority, eq.scheduledAt, eq.sentAt, eq.retryCount, eq.createdAt) " +
+           "FROM EmailQueue eq JOIN eq.template t WHERE " +
+           "eq.recipientEmail = :recipientEmail AND " +
+           "(eq.createdAt, eq.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY eq.createdAt DESC, eq.id DESC")
+    List<EmailResponse> findQueuePageByRecipient(
+            @Param("recipientEmail") String recipientEmail,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
+    );
 
     /**
      * Why: Count emails by status cho dashboard
@@ -69,22 +199,12 @@ public interface EmailQueueRepository extends JpaRepository<EmailQueue, Long> {
            "WHERE eq.status = 'PENDING' GROUP BY eq.priority")
     List<Object[]> countPendingEmailsByPriority();
 
-    /**
-     * Why: Bulk update status cho processing
-     * Context: Mark emails as processing to prevent duplicate sending
-     */
-    @Modifying
-    @Query("UPDATE EmailQueue eq SET eq.status = 'PROCESSING', eq.updatedAt = :currentTime " +
-           "WHERE eq.id IN :ids")
-    int markEmailsAsProcessing(@Param("ids") List<Long> ids, 
-                               @Param("currentTime") LocalDateTime currentTime);
-
     /**
      * Why: Tìm old processed emails cho cleanup
      * Context: Data retention policy
      */
     @Query("SELECT eq FROM EmailQueue eq WHERE " +
-           "eq.status IN ('SENT', 'FAILED') AND " +
+           "eq.status IN ('SENT', 'SENT_UNKNOWN', 'FAILED') AND " +
            "eq.updatedAt < :cutoffDate")
     List<EmailQueue> findOldProcessedEmails(@Param("cutoffDate") LocalDateTime cutoffDate, 
                                            Pageable pageable);
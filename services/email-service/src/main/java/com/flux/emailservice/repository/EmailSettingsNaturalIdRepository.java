@@ -0,0 +1,14 @@
+package com.flux.emailservice.repository;
+
+import com.flux.emailservice.entity.EmailSettings;
+
+import java.util.Optional;
+
+/**
+ * Why: Fragment cho lookup EmailSettings theo natural id (settingKey)
+ * Context: Đọc qua natural-id cache và second-level cache thay vì SELECT mỗi lần
+ */
+public interface EmailSettingsNaturalIdRepository {
+
+    Optional<EmailSettings> findByNaturalSettingKey(String settingKey);
+}
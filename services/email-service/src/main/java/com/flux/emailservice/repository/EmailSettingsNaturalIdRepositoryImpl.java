@@ -0,0 +1,32 @@
+package com.flux.emailservice.repository;
+
+import com.flux.emailservice.entity.EmailSettings;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Why: Natural-id lookup qua Hibernate Session, Spring Data ghép vào EmailSettingsRepository
+ */
+public class EmailSettingsNaturalIdRepositoryImpl implements EmailSettingsNaturalIdRepository {
+
+    private final EntityManager entityManager;
+
+    @Autowired
+    public EmailSettingsNaturalIdRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // Why: Session phải sống qua lookup (shared EntityManager ngoài transaction đóng ngay sau unwrap);
+    //      không readOnly để cache fill luôn đọc primary, không đọc replica đang trễ
+    @Override
+    @Transactional
+    public Optional<EmailSettings> findByNaturalSettingKey(String settingKey) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(EmailSettings.class)
+                .loadOptional(settingKey);
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,24 +15,31 @@ import java.util.Optional;
  * Context: Database access layer cho dynamic configuration
  */
 @Repository
-public interface EmailSettingsRepository extends JpaRepository<EmailSettings, Long> {
+public interface EmailSettingsRepository extends JpaRepository<EmailSettings, Long>,
+                                                 EmailSettingsNaturalIdRepository {
 
     /**
      * Why: Tìm setting theo key
-     * Context: Load configuration values
+     * Context: Load configuration values qua natural-id cache
      */
-    Optional<EmailSettings> findBySettingKey(String settingKey);
+    default Optional<EmailSettings> findBySettingKey(String settingKey) {
+        return findByNaturalSettingKey(settingKey);
+    }
 
     /**
      * Why: Tìm active setting theo key
      * Context: Load only active configuration
      */
-    Optional<EmailSettings> findBySettingKeyAndIsActiveTrue(String settingKey);
+    default Optional<EmailSettings> findBySettingKeyAndIsActiveTrue(String settingKey) {
+        return findByNaturalSettingKey(settingKey).filter(EmailSettings::isEnabled);
+    }
 
     /**
      * Why: Tìm tất cả active settings
-     * Context: Load all configuration at startup
+     * Context: Source của EmailSettingsService snapshot. Không dùng query cache và không readOnly
+     *          (replica) - reload sau change notification phải thấy đúng commit vừa xảy ra
      */
+    @Transactional
     List<EmailSettings> findByIsActiveTrueOrderBySettingKey();
 
     /**
@@ -55,13 +63,4 @@ public interface EmailSettingsRepository extends JpaRepository<EmailSettings, Lo
      */
     @Query("SELECT COUNT(es) FROM EmailSettings es WHERE es.isActive = true")
     Long countActiveSettings();
-
-    /**
-     * Why: Tìm settings by category (prefix)
-     * Context: Group related settings together
-     */
-    @Query("SELECT es FROM EmailSettings es WHERE " +
-           "es.settingKey LIKE CONCAT(:prefix, '%') AND es.isActive = true " +
-           "ORDER BY es.settingKey")
-    List<EmailSettings> findByKeyPrefix(@Param("prefix") String prefix);
 }
@@ -0,0 +1,15 @@
+package com.flux.emailservice.repository;
+
+import com.flux.emailservice.entity.EmailTemplate;
+
+import java.util.Optional;
+
+/**
+ * Why: Fragment cho lookup EmailTemplate theo natural id (templateName)
+ * Context: Derived queries luôn chạy SELECT; natural-id load resolve name -> id qua
+ *          natural-id cache rồi đọc entity từ second-level cache
+ */
+public interface EmailTemplateNaturalIdRepository {
+
+    Optional<EmailTemplate> findByNaturalTemplateName(String templateName);
+}
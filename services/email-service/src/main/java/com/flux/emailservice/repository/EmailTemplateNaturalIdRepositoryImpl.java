@@ -0,0 +1,32 @@
+package com.flux.emailservice.repository;
+
+import com.flux.emailservice.entity.EmailTemplate;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Why: Natural-id lookup qua Hibernate Session, Spring Data ghép vào EmailTemplateRepository
+ */
+public class EmailTemplateNaturalIdRepositoryImpl implements EmailTemplateNaturalIdRepository {
+
+    private final EntityManager entityManager;
+
+    @Autowired
+    public EmailTemplateNaturalIdRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // Why: Session phải sống qua lookup (shared EntityManager ngoài transaction đóng ngay sau unwrap);
+    //      không readOnly để cache fill luôn đọc primary, không đọc replica đang trễ
+    @Override
+    @Transactional
+    public Optional<EmailTemplate> findByNaturalTemplateName(String templateName) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(EmailTemplate.class)
+                .loadOptional(templateName);
+    }
+}
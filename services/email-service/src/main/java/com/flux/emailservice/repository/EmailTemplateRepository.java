@@ -1,11 +1,19 @@
 package com.flux.emailservice.repository;
 
+import com.flux.emailservice.dto.EmailTemplateSummary;
 import com.flux.emailservice.entity.EmailTemplate;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,13 +22,18 @@ import java.util.Optional;
  * Context: Database access layer cho email templates
  */
 @Repository
-public interface EmailTemplateRepository extends JpaRepository<EmailTemplate, Long> {
+public interface EmailTemplateRepository extends JpaRepository<EmailTemplate, Long>,
+                                                 EmailTemplateNaturalIdRepository {
 
     /**
      * Why: Tìm template theo name và active status
-     * Context: Sử dụng trong email processing để load template
+     * Context: Sử dụng trong email processing để load template. Đi qua natural-id và
+     *          second-level cache nên mỗi event không còn một SELECT templates
      */
-    Optional<EmailTemplate> findByTemplateNameAndIsActiveTrue(String templateName);
+    default Optional<EmailTemplate> findByTemplateNameAndIsActiveTrue(String templateName) {
+        return findByNaturalTemplateName(templateName)
+                .filter(template -> Boolean.TRUE.equals(template.getIsActive()));
+    }
 
     /**
      * Why: Tìm template theo type và active status
@@ -30,8 +43,10 @@ public interface EmailTemplateRepository extends JpaRepository<EmailTemplate, Lo
 
     /**
      * Why: Tìm tất cả active templates
-     * Context: Admin interface để quản lý templates
+     * Context: Admin interface để quản lý templates và warm-up; query cache giữ ids,
+     *          entities đọc từ second-level cache
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<EmailTemplate> findByIsActiveTrueOrderByCreatedAtDesc();
 
     /**
@@ -47,16 +62,23 @@ public interface EmailTemplateRepository extends JpaRepository<EmailTemplate, Lo
     List<EmailTemplate> findByCreatedByOrderByCreatedAtDesc(String createdBy);
 
     /**
-     * Why: Tìm templates với pagination và sorting
-     * Context: Admin interface với large datasets
+     * Why: Template listing với filters, keyset (created_at, id) và LIMIT trong database
+     * Context: Admin interface. Projection bỏ html_content / text_content; bảng nhỏ nên
+     *          optional filters dùng IS NULL pattern thay vì một query cho mỗi tổ hợp
      */
-    @Query("SELECT et FROM EmailTemplate et WHERE " +
+    @Query("SELECT new com.flux.emailservice.dto.EmailTemplateSummary(et.id, et.templateName, " +
+           "et.templateType, et.subjectTemplate, et.isActive, et.currentVersionId, et.createdBy, " +
+           "et.createdAt, et.updatedAt) FROM EmailTemplate et WHERE " +
            "(:templateType IS NULL OR et.templateType = :templateType) AND " +
-           "(:isActive IS NULL OR et.isActive = :isActive) " +
-           "ORDER BY et.updatedAt DESC")
-    List<EmailTemplate> findTemplatesWithFilters(
+           "(:isActive IS NULL OR et.isActive = :isActive) AND " +
+           "(et.createdAt, et.id) < (:cursorCreatedAt, :cursorId) " +
+           "ORDER BY et.createdAt DESC, et.id DESC")
+    List<EmailTemplateSummary> findTemplatePage(
             @Param("templateType") String templateType,
-            @Param("isActive") Boolean isActive
+            @Param("isActive") Boolean isActive,
+            @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+            @Param("cursorId") Long cursorId,
+            Pageable pageable
     );
 
     /**
@@ -66,4 +88,12 @@ public interface EmailTemplateRepository extends JpaRepository<EmailTemplate, Lo
     @Query("SELECT et.templateType, COUNT(et) FROM EmailTemplate et " +
            "WHERE et.isActive = true GROUP BY et.templateType")
     List<Object[]> countTemplatesByType();
+
+    /**
+     * Why: Load template với row lock trước khi publish version mới
+     * Context: Serialize việc đánh số version và đổi current-version pointer giữa các instances
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT et FROM EmailTemplate et WHERE et.id = :id")
+    Optional<EmailTemplate> findByIdForUpdate(@Param("id") Long id);
 }
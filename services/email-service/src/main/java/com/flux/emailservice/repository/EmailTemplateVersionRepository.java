@@ -0,0 +1,41 @@
+package com.flux.emailservice.repository;
+
+import com.flux.emailservice.entity.EmailTemplateVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Why: JPA repository cho EmailTemplateVersion entity
+ * Context: Versions chỉ được insert, không bao giờ update hay delete
+ */
+@Repository
+public interface EmailTemplateVersionRepository extends JpaRepository<EmailTemplateVersion, Long> {
+
+    /**
+     * Why: Load version cho TemplateVersionRegistry từ primary
+     * Context: Caller chạy ngoài transaction (dispatch path là NOT_SUPPORTED) nên findById mặc định
+     *          mở readOnly transaction và bị route sang replica - version vừa publish chưa có ở đó
+     */
+    @Override
+    @Transactional
+    Optional<EmailTemplateVersion> findById(Long id);
+
+    /**
+     * Why: Version number lớn nhất của template, để đánh số version mới
+     * Context: Gọi khi đang giữ row lock của template nên không race
+     */
+    @Query("SELECT COALESCE(MAX(v.version), 0) FROM EmailTemplateVersion v WHERE v.templateId = :templateId")
+    int findLatestVersionNumber(@Param("templateId") Long templateId);
+
+    /**
+     * Why: Lịch sử versions của một template
+     * Context: Admin audit / rollback
+     */
+    List<EmailTemplateVersion> findByTemplateIdOrderByVersionDesc(Long templateId);
+}
@@ -0,0 +1,279 @@
+package com.flux.emailservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.event.EmailEvent;
+import com.flux.emailservice.repository.EmailQueueRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: Admission control cho incoming events khi hệ thống bị áp lực
+ * Context: Pressure được sample từ backlog lag của dispatch lanes và latency của chính
+ *          lag probe query (proxy cho DB latency). Theo rule của event type, event được
+ *          admit, defer (park trong Redis), downsample hoặc reject; events bị defer được
+ *          re-admit khi pressure về NORMAL
+ */
+@Service
+public class AdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    // Why: ZSET member = event JSON, score = thời điểm sớm nhất được re-admit
+    private static final String DEFERRED_KEY = "admission:deferred";
+
+    private final EmailQueueRepository emailQueueRepository;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+
+    private volatile Pressure pressure = Pressure.NORMAL;
+    private volatile double dbLatencyMs;
+    private volatile long deferredSize;
+    private final ConcurrentMap<String, Double> laneLagSeconds = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdmissionController(EmailQueueRepository emailQueueRepository,
+                               RedisTemplate<String, Object> redisTemplate,
+                               ObjectMapper objectMapper,
+                               ApplicationProperties applicationProperties,
+                               MeterRegistry meterRegistry) {
+        this.emailQueueRepository = emailQueueRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("email.admission.pressure", this, controller -> controller.pressure.ordinal())
+                .register(meterRegistry);
+        Gauge.builder("email.admission.db.latency", this, controller -> controller.dbLatencyMs)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("email.admission.deferred.size", this, controller -> controller.deferredSize)
+                .register(meterRegistry);
+        for (ApplicationProperties.Dispatch.Lane lane : applicationProperties.getDispatch().getLanes()) {
+            laneLagSeconds.put(lane.getName(), 0.0);
+            Gauge.builder("email.admission.lag", laneLagSeconds, lags -> lags.getOrDefault(lane.getName(), 0.0))
+                    .tag("lane", lane.getName())
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Why: Quyết định event có được xử lý ngay không
+     * Context: False nghĩa là event đã được defer hoặc drop, listener chỉ cần ack
+     */
+    public boolean admit(EmailEvent event) {
+        ApplicationProperties.Admission config = applicationProperties.getAdmission();
+        Pressure current = pressure;
+        if (!config.isEnabled() || current == Pressure.NORMAL) {
+            record(event, "admit", current);
+            return true;
+        }
+
+        ApplicationProperties.Admission.Rule rule = config.ruleFor(event.getEventType());
+        ApplicationProperties.Admission.Action action =
+                current == Pressure.CRITICAL ? rule.getOnCritical() : rule.getOnElevated();
+
+        switch (action) {
+            case DEFER -> {
+                if (deferredStoreFull()) {
+                    record(event, "reject_store_full", current);
+                    return false;
+                }
+                if (defer(event, 0)) {
+                    record(event, "defer", current);
+                    return false;
+                }
+                // Why: Holding store không nhận được thì xử lý luôn thay vì mất event
+                record(event, "admit", current);
+                return true;
+            }
+            case DOWNSAMPLE -> {
+                if (ThreadLocalRandom.current().nextDouble() < rule.getSampleRate()) {
+                    record(event, "admit", current);
+                    return true;
+                }
+                record(event, "downsample", current);
+                logger.info("Downsampled {} event {} under {} pressure",
+                           event.getEventType(), event.getEventId(), current);
+                return false;
+            }
+            case REJECT -> {
+                record(event, "reject", current);
+                logger.warn("Rejected {} event {} under {} pressure",
+                           event.getEventType(), event.getEventId(), current);
+                return false;
+            }
+            default -> {
+                record(event, "admit", current);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Why: Park event bị rate limit thay vì dead-letter message
+     * Context: False nghĩa là event không được park (store đầy hoặc Redis lỗi), listener
+     *          phải rethrow để message dead-letter như trước
+     */
+    public boolean deferRateLimited(EmailEvent event) {
+        if (deferredStoreFull()) {
+            record(event, "reject_store_full", pressure);
+            return false;
+        }
+        boolean deferred = defer(event, applicationProperties.getAdmission().getRateLimitDeferSeconds());
+        if (deferred) {
+            record(event, "defer_rate_limit", pressure);
+        }
+        return deferred;
+    }
+
+    /**
+     * Why: Park event lại sau khi re-admit thất bại
+     */
+    public boolean deferForRetry(EmailEvent event) {
+        return defer(event, applicationProperties.getAdmission().getReadmitRetrySeconds());
+    }
+
+    /**
+     * Why: Holding store đầy thì events bị reject để Redis không phình vô hạn
+     * Context: Size được cập nhật mỗi lần sample, không gọi ZCARD trên listener path
+     */
+    private boolean deferredStoreFull() {
+        return deferredSize >= applicationProperties.getAdmission().getMaxDeferred();
+    }
+
+    /**
+     * Why: Lưu event vào holding store
+     */
+    private boolean defer(EmailEvent event, long delaySeconds) {
+        try {
+            String payload = objectMapper.writeValueAsString(event);
+            long readmitAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delaySeconds);
+            redisTemplate.opsForZSet().add(DEFERRED_KEY, payload, readmitAt);
+            return true;
+        } catch (JsonProcessingException | RuntimeException e) {
+            logger.warn("Failed to defer {} event {}: {}", event.getEventType(), event.getEventId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Why: Lấy events đến hạn re-admit nếu pressure đã về NORMAL
+     * Context: ZREM thành công mới được xử lý để chỉ một instance re-admit mỗi event;
+     *          events quá max-defer-seconds bị drop
+     */
+    public List<EmailEvent> claimReadmittable() {
+        ApplicationProperties.Admission config = applicationProperties.getAdmission();
+        if (config.isEnabled() && pressure != Pressure.NORMAL) {
+            return List.of();
+        }
+
+        Set<Object> due = redisTemplate.opsForZSet()
+                .rangeByScore(DEFERRED_KEY, 0, System.currentTimeMillis(), 0, config.getReadmitBatchSize());
+        if (due == null || due.isEmpty()) {
+            return List.of();
+        }
+
+        LocalDateTime expiry = LocalDateTime.now().minusSeconds(config.getMaxDeferSeconds());
+        List<EmailEvent> events = new ArrayList<>(due.size());
+        for (Object member : due) {
+            Long claimed = redisTemplate.opsForZSet().remove(DEFERRED_KEY, member);
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            try {
+                EmailEvent event = objectMapper.readValue((String) member, EmailEvent.class);
+                if (event.getTimestamp() != null && event.getTimestamp().isBefore(expiry)) {
+                    record(event, "expired", pressure);
+                    continue;
+                }
+                record(event, "readmit", pressure);
+                events.add(event);
+            } catch (JsonProcessingException e) {
+                logger.error("Dropping unreadable deferred event: {}", e.getMessage());
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Why: Cập nhật pressure level từ backlog lag và DB latency
+     * Context: Chạy định kỳ từ AdmissionJob, không nằm trên listener path
+     */
+    public void samplePressure() {
+        ApplicationProperties.Admission config = applicationProperties.getAdmission();
+        LocalDateTime now = LocalDateTime.now();
+
+        double maxLagSeconds = 0;
+        long slowestProbeNanos = 0;
+        for (ApplicationProperties.Dispatch.Lane lane : applicationProperties.getDispatch().getLanes()) {
+            long start = System.nanoTime();
+            LocalDateTime oldest = emailQueueRepository.findOldestDueScheduledAt(
+                    lane.getMinPriority(), lane.getMaxPriority(), now);
+            slowestProbeNanos = Math.max(slowestProbeNanos, System.nanoTime() - start);
+
+            double lagSeconds = oldest != null ? Duration.between(oldest, now).toMillis() / 1000.0 : 0.0;
+            laneLagSeconds.put(lane.getName(), lagSeconds);
+            maxLagSeconds = Math.max(maxLagSeconds, lagSeconds);
+        }
+        dbLatencyMs = slowestProbeNanos / 1_000_000.0;
+
+        Long size = redisTemplate.opsForZSet().zCard(DEFERRED_KEY);
+        deferredSize = size != null ? size : 0;
+
+        Pressure next;
+        if (maxLagSeconds >= config.getCriticalLagSeconds() || dbLatencyMs >= config.getCriticalDbLatencyMs()) {
+            next = Pressure.CRITICAL;
+        } else if (maxLagSeconds >= config.getElevatedLagSeconds() || dbLatencyMs >= config.getElevatedDbLatencyMs()) {
+            next = Pressure.ELEVATED;
+        } else {
+            next = Pressure.NORMAL;
+        }
+
+        if (next != pressure) {
+            logger.warn("Admission pressure {} -> {} (max lag {}s, db latency {}ms, {} deferred)",
+                       pressure, next, Math.round(maxLagSeconds), Math.round(dbLatencyMs), deferredSize);
+            pressure = next;
+        }
+    }
+
+    public Pressure getPressure() {
+        return pressure;
+    }
+
+    private void record(EmailEvent event, String decision, Pressure current) {
+        meterRegistry.counter("email.admission.decisions",
+                "eventType", String.valueOf(event.getEventType()),
+                "decision", decision,
+                "pressure", current.name()).increment();
+    }
+
+    /**
+     * Why: Mức áp lực hiện tại của pipeline
+     */
+    public enum Pressure {
+        NORMAL,
+        ELEVATED,
+        CRITICAL
+    }
+}
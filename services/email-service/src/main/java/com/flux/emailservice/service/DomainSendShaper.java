@@ -0,0 +1,156 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: Per-recipient-domain token buckets và concurrency caps
+ * Context: Burst gmail.com recipients không được trigger deferrals của provider;
+ *          domain hết tokens sẽ bị skip thay vì block cả batch
+ */
+@Service
+public class DomainSendShaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(DomainSendShaper.class);
+
+    // Why: Domains không cấu hình riêng gom chung một tag để tránh metric cardinality explosion
+    private static final String OTHER_DOMAINS_TAG = "other";
+    private static final long IDLE_EVICTION_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, DomainBucket> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DomainSendShaper(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Why: Thử lấy một token và một concurrency slot cho domain
+     * Context: Non-blocking - dispatcher skip email nếu trả về false
+     */
+    public boolean tryAcquire(String domain) {
+        if (!applicationProperties.getDomainShaping().isEnabled()) {
+            return true;
+        }
+
+        DomainBucket bucket = buckets.computeIfAbsent(domain, this::createBucket);
+        boolean acquired = bucket.tryAcquire(System.nanoTime());
+
+        if (!acquired) {
+            meterRegistry.counter("email.domain.shaping.deferred", "domain", metricTag(domain)).increment();
+            logger.debug("Domain {} is over its send budget, skipping for this batch", domain);
+        }
+        return acquired;
+    }
+
+    /**
+     * Why: Trả concurrency slot sau khi SMTP call kết thúc
+     * Context: Called từ dispatcher completion callback
+     */
+    public void release(String domain) {
+        if (!applicationProperties.getDomainShaping().isEnabled()) {
+            return;
+        }
+
+        DomainBucket bucket = buckets.get(domain);
+        if (bucket != null) {
+            bucket.release();
+        }
+    }
+
+    /**
+     * Why: Dọn buckets của domains không còn traffic
+     * Context: Long tail domains không được giữ memory mãi mãi
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle domain buckets", evicted);
+        }
+    }
+
+    private DomainBucket createBucket(String domain) {
+        ApplicationProperties.DomainShaping shaping = applicationProperties.getDomainShaping();
+        ApplicationProperties.DomainShaping.DomainLimit limit =
+                shaping.getDomains().getOrDefault(domain, shaping.getDefaultLimit());
+        return new DomainBucket(limit.getRatePerSecond(), limit.getBurst(), limit.getMaxConcurrency());
+    }
+
+    private String metricTag(String domain) {
+        return applicationProperties.getDomainShaping().getDomains().containsKey(domain)
+                ? domain
+                : OTHER_DOMAINS_TAG;
+    }
+
+    /**
+     * Why: Token bucket + in-flight counter cho một domain
+     * Context: Refill lazily theo elapsed time, không cần background thread
+     */
+    private static class DomainBucket {
+        private final double ratePerNano;
+        private final double capacity;
+        private final int maxConcurrency;
+        private double tokens;
+        private int inFlight;
+        private long lastRefillNanos;
+        private long lastUsedNanos;
+
+        private DomainBucket(double ratePerSecond, int burst, int maxConcurrency) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, burst);
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+            this.tokens = this.capacity;
+            this.lastRefillNanos = System.nanoTime();
+            this.lastUsedNanos = this.lastRefillNanos;
+        }
+
+        private synchronized boolean tryAcquire(long now) {
+            refill(now);
+            lastUsedNanos = now;
+
+            if (inFlight >= maxConcurrency || tokens < 1.0) {
+                return false;
+            }
+
+            tokens -= 1.0;
+            inFlight++;
+            return true;
+        }
+
+        private synchronized void release() {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+        }
+
+        private synchronized boolean isIdle(long now) {
+            refill(now);
+            return inFlight == 0 && tokens >= capacity && now - lastUsedNanos > IDLE_EVICTION_NANOS;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefillNanos;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * ratePerNano);
+                lastRefillNanos = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.dto.EmailLogSummary;
+import com.flux.emailservice.dto.KeysetCursor;
+import com.flux.emailservice.dto.KeysetPage;
+import com.flux.emailservice.repository.EmailLogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Why: Read side cho email delivery logs
+ * Context: Admin / user support listing với keyset pagination trên (created_at, id) và
+ *          delivery analytics; logs được ghi bởi EmailSendingService
+ */
+@Service
+@Transactional(readOnly = true)
+public class EmailLogService {
+
+    private final EmailLogRepository emailLogRepository;
+
+    @Autowired
+    public EmailLogService(EmailLogRepository emailLogRepository) {
+        this.emailLogRepository = emailLogRepository;
+    }
+
+    /**
+     * Why: Logs mới nhất trước, lọc theo recipient hoặc status nếu có
+     * Context: Recipient ưu tiên hơn status vì là filter chọn lọc hơn; cursor null là trang đầu
+     */
+    public KeysetPage<EmailLogSummary> getLogs(String recipientEmail, String status, String cursor, int size) {
+        int pageSize = KeysetPage.clampSize(size);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<EmailLogSummary> rows;
+        if (recipientEmail != null && !recipientEmail.isEmpty()) {
+            rows = emailLogRepository.findLogPageByRecipient(
+                    recipientEmail, position.getCreatedAt(), position.getId(), KeysetPage.probe(pageSize));
+        } else if (status != null && !status.isEmpty()) {
+            rows = emailLogRepository.findLogPageByStatus(
+                    status, position.getCreatedAt(), position.getId(), KeysetPage.probe(pageSize));
+        } else {
+            rows = emailLogRepository.findLogPage(
+                    position.getCreatedAt(), position.getId(), KeysetPage.probe(pageSize));
+        }
+        return KeysetPage.of(rows, pageSize, EmailLogSummary::toCursor);
+    }
+
+    /**
+     * Why: Delivery statistics cho dashboard
+     * Context: Aggregates trên email_logs - read-only nên chạy trên replica khi được bật
+     */
+    public Map<String, Object> getDeliveryStatistics() {
+        LocalDateTime fromDate = LocalDateTime.now().minusDays(30);
+
+        return Map.of(
+            "monthlyMetrics", emailLogRepository.getDeliveryMetricsSince(fromDate),
+            "statusCounts", emailLogRepository.countDeliveryStatusSince(fromDate)
+        );
+    }
+}
@@ -1,27 +1,37 @@
 package com.flux.emailservice.service;
 
 import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.dto.DispatchCandidate;
+import com.flux.emailservice.dto.EmailResponse;
+import com.flux.emailservice.dto.KeysetCursor;
+import com.flux.emailservice.dto.KeysetPage;
 import com.flux.emailservice.entity.EmailQueue;
+import com.flux.emailservice.entity.EmailSettings;
 import com.flux.emailservice.entity.EmailTemplate;
+import com.flux.emailservice.repository.DispatchJdbcRepository;
 import com.flux.emailservice.repository.EmailQueueRepository;
 import com.flux.emailservice.repository.EmailTemplateRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Why: Service layer cho email queue management
- * Context: Business logic cho email queuing, processing và tracking
+ * Context: Business logic cho email queuing, processing và tracking. Các claim reads
+ *          (getEmailsToSend, getTenantFairEmailsToSend, getHighPriorityEmails, getEmailsForRetry)
+ *          giữ @Transactional read-write để chạy trên primary - replica trễ sẽ trả emails đã
+ *          được claim; chỉ admin/stats reads dùng readOnly
  */
 @Service
 @Transactional
@@ -33,16 +43,28 @@ public class EmailQueueService {
     private final EmailTemplateRepository emailTemplateRepository;
     private final ApplicationProperties applicationProperties;
     private final RateLimitService rateLimitService;
+    private final RetryBudget retryBudget;
+    private final TemplateVersionRegistry templateVersionRegistry;
+    private final DispatchJdbcRepository dispatchJdbcRepository;
+    private final EmailSettingsService emailSettingsService;
 
     @Autowired
     public EmailQueueService(EmailQueueRepository emailQueueRepository,
                            EmailTemplateRepository emailTemplateRepository,
                            ApplicationProperties applicationProperties,
-                           RateLimitService rateLimitService) {
+                           RateLimitService rateLimitService,
+                           RetryBudget retryBudget,
+                           TemplateVersionRegistry templateVersionRegistry,
+                           DispatchJdbcRepository dispatchJdbcRepository,
+                           EmailSettingsService emailSettingsService) {
         this.emailQueueRepository = emailQueueRepository;
         this.emailTemplateRepository = emailTemplateRepository;
         this.applicationProperties = applicationProperties;
         this.rateLimitService = rateLimitService;
+        this.retryBudget = retryBudget;
+        this.templateVersionRegistry = templateVersionRegistry;
+        this.dispatchJdbcRepository = dispatchJdbcRepository;
+        this.emailSettingsService = emailSettingsService;
     }
 
     /**
@@ -52,13 +74,23 @@ public class EmailQueueService {
     public EmailQueue queueEmail(String recipientEmail, String recipientName, 
                                String templateName, Map<String, Object> templateVariables, 
                                Integer priority) {
+        return queueEmail(recipientEmail, recipientName, templateName, templateVariables, priority, null);
+    }
+
+    /**
+     * Why: Queue email gắn với Flux server (tenant) gây ra nó
+     * Context: serverId dùng cho fair scheduling giữa các servers, null nếu không thuộc server nào
+     */
+    public EmailQueue queueEmail(String recipientEmail, String recipientName,
+                               String templateName, Map<String, Object> templateVariables,
+                               Integer priority, String serverId) {
         
         logger.info("Queueing email to {} with template {}", recipientEmail, templateName);
 
         // Why: Validate rate limit trước khi queue
         if (!rateLimitService.isAllowed(recipientEmail)) {
             logger.warn("Rate limit exceeded for email: {}", recipientEmail);
-            throw new RuntimeException("Rate limit exceeded for recipient: " + recipientEmail);
+            throw new RateLimitService.RateLimitExceededException(recipientEmail);
         }
 
         // Why: Tìm template theo name
@@ -83,7 +115,12 @@ public class EmailQueueService {
 
         // Why: Set scheduled time (immediate by default)
         emailQueue.setScheduledAt(LocalDateTime.now());
-        emailQueue.setMaxRetries(applicationProperties.getRetry().getMaxAttempts());
+        emailQueue.setMaxRetries(maxRetries());
+        emailQueue.setServerId(serverId);
+        // Why: Template tạo trước khi có versioning chưa có pointer để constructor pin
+        if (emailQueue.getTemplateVersionId() == null) {
+            emailQueue.setTemplateVersionId(templateVersionRegistry.current(template).getId());
+        }
 
         EmailQueue savedQueue = emailQueueRepository.save(emailQueue);
         
@@ -112,7 +149,7 @@ public class EmailQueueService {
      * Why: Lấy emails cần gửi
      * Context: Email processing job
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public List<EmailQueue> getEmailsToSend(int batchSize) {
         LocalDateTime currentTime = LocalDateTime.now();
         Pageable pageable = PageRequest.of(0, batchSize);
@@ -123,11 +160,47 @@ public class EmailQueueService {
         return emails;
     }
 
+    /**
+     * Why: Lấy emails cần gửi của một dispatch lane
+     * Context: Lane-aware dispatch, mỗi lane claim trong priority range riêng. Một query cho
+     *          cả batch, trả về projections thay vì entities
+     */
+    @Transactional
+    public List<DispatchCandidate> getEmailsToSend(int minPriority, int maxPriority, int batchSize) {
+        LocalDateTime currentTime = LocalDateTime.now();
+        Pageable pageable = PageRequest.of(0, batchSize);
+
+        List<DispatchCandidate> emails = emailQueueRepository.findDispatchCandidatesInPriorityRange(
+                minPriority, maxPriority, currentTime, pageable);
+
+        logger.debug("Found {} emails to send with priority {}-{}", emails.size(), minPriority, maxPriority);
+        return emails;
+    }
+
+    /**
+     * Why: Lấy candidates của một lane với giới hạn per tenant
+     * Context: Input cho TenantFairScheduler; ranking chạy native (window function) nên
+     *          projections được load bằng query thứ hai theo ids
+     */
+    @Transactional
+    public List<DispatchCandidate> getTenantFairEmailsToSend(int minPriority, int maxPriority,
+                                                             int perTenant, int limit) {
+        List<Long> ids = emailQueueRepository.findTenantFairCandidateIds(
+                minPriority, maxPriority, LocalDateTime.now(), perTenant, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        List<DispatchCandidate> emails = emailQueueRepository.findDispatchCandidatesByIdIn(ids);
+        logger.debug("Found {} tenant-fair candidates with priority {}-{}", emails.size(), minPriority, maxPriority);
+        return emails;
+    }
+
     /**
      * Why: Lấy high priority emails
      * Context: Priority processing
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public List<EmailQueue> getHighPriorityEmails(int batchSize) {
         LocalDateTime currentTime = LocalDateTime.now();
         Pageable pageable = PageRequest.of(0, batchSize);
@@ -140,73 +213,165 @@ public class EmailQueueService {
 
     /**
      * Why: Mark emails as processing
-     * Context: Prevent duplicate processing
+     * Context: Prevent duplicate processing - chỉ ids trả về được dispatch, phần còn lại đã bị
+     *          instance khác claim. Value là claim attempt mà worker truyền lại cho mọi transition.
+     *          Dispatcher path chạy qua JDBC, không mở persistence context (xem DispatchJdbcRepository)
      */
-    public void markEmailsAsProcessing(List<Long> emailIds) {
-        if (!emailIds.isEmpty()) {
-            int updated = emailQueueRepository.markEmailsAsProcessing(emailIds, LocalDateTime.now());
-            logger.debug("Marked {} emails as processing", updated);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<Long, Integer> markEmailsAsProcessing(List<Long> emailIds) {
+        if (emailIds.isEmpty()) {
+            return Map.of();
         }
+        Map<Long, Integer> claimed = dispatchJdbcRepository.markProcessing(emailIds, LocalDateTime.now());
+        retryBudget.recordAttempts(claimed.size());
+        logger.debug("Marked {} of {} emails as processing", claimed.size(), emailIds.size());
+        return claimed;
+    }
+
+    /**
+     * Why: Worker bắt đầu gửi email đã claim
+     * Context: False nghĩa là reaper đã lấy lại claim (row không còn PROCESSING với attempt này),
+     *          worker bỏ qua email thay vì gửi song song với lần claim mới
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean startSending(Long emailId, int claimAttempt) {
+        return dispatchJdbcRepository.startSend(emailId, claimAttempt, LocalDateTime.now());
     }
 
     /**
      * Why: Mark email as sent
-     * Context: Update status after successful sending
+     * Context: Update status after successful sending, một UPDATE không load entity. Thắng cả
+     *          reset của reaper nếu row chưa bị claim lại
      */
-    public void markEmailAsSent(Long emailId) {
-        Optional<EmailQueue> emailOpt = emailQueueRepository.findById(emailId);
-        if (emailOpt.isPresent()) {
-            EmailQueue email = emailOpt.get();
-            email.markAsSent();
-            emailQueueRepository.save(email);
-            
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void markEmailAsSent(Long emailId, int claimAttempt) {
+        if (dispatchJdbcRepository.markSent(emailId, claimAttempt, LocalDateTime.now()) > 0) {
             logger.info("Email {} marked as sent", emailId);
+        } else {
+            logger.warn("Email {} was sent but claim attempt {} is no longer current, status left unchanged",
+                       emailId, claimAttempt);
         }
     }
 
+    /**
+     * Why: Trả email đã claim về PENDING khi dispatch không submit được
+     * Context: Không tính vào retry count vì email chưa được gửi
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void releaseClaim(Long emailId, int claimAttempt) {
+        if (dispatchJdbcRepository.releaseClaim(emailId, claimAttempt, LocalDateTime.now()) > 0) {
+            logger.info("Email {} released back to PENDING", emailId);
+        }
+    }
+
+    /**
+     * Why: Reclaim emails kẹt ở PROCESSING quá processing-timeout-seconds
+     * Context: Worker chết hoặc pod crash giữa claim và markSent / markFailed để row PROCESSING
+     *          mãi; EmailProcessingJob là dispatcher duy nhất nên reaper chạy cùng nó. Worker refresh
+     *          updated_at lúc bắt đầu send, nên timeout phải lớn hơn SMTP timeouts
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int reclaimStaleProcessing() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime cutoff = now.minusSeconds(applicationProperties.getDispatch().getProcessingTimeoutSeconds());
+        int reclaimed = dispatchJdbcRepository.resetStaleProcessing(cutoff, now);
+        if (reclaimed > 0) {
+            logger.warn("Reclaimed {} emails stuck in PROCESSING since before {}", reclaimed, cutoff);
+        }
+        return reclaimed;
+    }
+
     /**
      * Why: Mark email as failed
      * Context: Update status after failed sending
      */
-    public void markEmailAsFailed(Long emailId, String errorMessage) {
-        Optional<EmailQueue> emailOpt = emailQueueRepository.findById(emailId);
-        if (emailOpt.isPresent()) {
-            EmailQueue email = emailOpt.get();
-            email.incrementRetryCount();
-            
-            if (email.canRetry()) {
-                // Why: Reset to PENDING cho retry
-                email.setStatus(EmailQueue.EmailQueueStatus.PENDING.name());
-                email.setScheduledAt(calculateNextRetryTime(email.getRetryCount()));
-                logger.info("Email {} scheduled for retry #{}", emailId, email.getRetryCount());
-            } else {
-                // Why: Max retries reached
-                email.markAsFailed(errorMessage);
-                logger.warn("Email {} failed permanently: {}", emailId, errorMessage);
-            }
-            
-            emailQueueRepository.save(email);
+    public void markEmailAsFailed(Long emailId, int claimAttempt, String errorMessage) {
+        markEmailAsFailed(emailId, claimAttempt, errorMessage, false);
+    }
+
+    /**
+     * Why: Mark email as failed với failure classification
+     * Context: Permanent failures fail fast, transient failures retry với jitter
+     *          trong giới hạn của global retry budget. Row đang PROCESSING thuộc về worker
+     *          gọi method này nên đọc counters rồi update bằng JDBC, không load entity
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void markEmailAsFailed(Long emailId, int claimAttempt, String errorMessage, boolean permanent) {
+        Optional<DispatchJdbcRepository.RetryState> stateOpt = dispatchJdbcRepository.findRetryState(emailId);
+        if (stateOpt.isEmpty()) {
+            return;
+        }
+        DispatchJdbcRepository.RetryState state = stateOpt.get();
+        LocalDateTime now = LocalDateTime.now();
+
+        if (permanent) {
+            dispatchJdbcRepository.markFailed(emailId, claimAttempt, state.getRetryCount(), errorMessage, now);
+            logger.warn("Email {} failed permanently without retry: {}", emailId, errorMessage);
+            return;
+        }
+
+        if (state.canRetry() && !retryBudget.tryAcquireRetry()) {
+            // Why: Budget cạn - dời retry xa hơn, không tính vào retry count
+            long deferMs = applicationProperties.getRetry().getBudgetExhaustedDelayMs();
+            dispatchJdbcRepository.reschedule(emailId, claimAttempt, state.getRetryCount(),
+                    now.plusNanos(withJitter(deferMs) * 1_000_000L), now);
+            logger.warn("Retry budget exhausted, email {} deferred by ~{}ms", emailId, deferMs);
+            return;
+        }
+
+        int retryCount = state.getRetryCount() + 1;
+        if (retryCount < state.getMaxRetries()) {
+            // Why: Reset to PENDING cho retry
+            dispatchJdbcRepository.reschedule(emailId, claimAttempt, retryCount, calculateNextRetryTime(retryCount), now);
+            logger.info("Email {} scheduled for retry #{}", emailId, retryCount);
+        } else {
+            // Why: Max retries reached
+            dispatchJdbcRepository.markFailed(emailId, claimAttempt, retryCount, errorMessage, now);
+            logger.warn("Email {} failed permanently: {}", emailId, errorMessage);
         }
     }
 
     /**
-     * Why: Calculate next retry time với exponential backoff
-     * Context: Retry mechanism
+     * Why: Calculate next retry time với exponential backoff và jitter
+     * Context: Retry mechanism - jitter tránh retries đồng loạt đập vào relay cùng lúc
      */
     private LocalDateTime calculateNextRetryTime(int retryCount) {
-        long delayMs = applicationProperties.getRetry().getDelayMs();
-        double multiplier = applicationProperties.getRetry().getBackoffMultiplier();
+        EmailSettingsService.Snapshot settings = emailSettingsService.current();
+        long delayMs = settings.getLong(EmailSettings.SettingKeys.RETRY_DELAY_MS,
+                applicationProperties.getRetry().getDelayMs());
+        double multiplier = settings.getDouble(EmailSettings.SettingKeys.RETRY_BACKOFF_MULTIPLIER,
+                applicationProperties.getRetry().getBackoffMultiplier());
         
         long nextDelayMs = (long) (delayMs * Math.pow(multiplier, retryCount - 1));
         
-        return LocalDateTime.now().plusSeconds(nextDelayMs / 1000);
+        return LocalDateTime.now().plusNanos(withJitter(nextDelayMs) * 1_000_000L);
+    }
+
+    /**
+     * Why: Max attempts cho emails mới, pin vào row lúc enqueue
+     * Context: Settings snapshot trước, thiếu key thì dùng app.email.retry.max-attempts
+     */
+    private int maxRetries() {
+        return emailSettingsService.getInt(EmailSettings.SettingKeys.RETRY_MAX_ATTEMPTS,
+                applicationProperties.getRetry().getMaxAttempts());
+    }
+
+    /**
+     * Why: Random hoá một phần delay
+     * Context: jitterRatio=0.5 cho delay trong khoảng [50%, 100%] của base delay
+     */
+    private long withJitter(long delayMs) {
+        double jitterRatio = Math.min(1.0, Math.max(0.0, applicationProperties.getRetry().getJitterRatio()));
+        long fixedPart = (long) (delayMs * (1.0 - jitterRatio));
+        long jitterPart = delayMs - fixedPart;
+        return fixedPart + (jitterPart > 0 ? ThreadLocalRandom.current().nextLong(jitterPart + 1) : 0);
     }
 
     /**
      * Why: Lấy emails for retry
      * Context: Retry processing job
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public List<EmailQueue> getEmailsForRetry(int batchSize) {
         Pageable pageable = PageRequest.of(0, batchSize);
         List<EmailQueue> emails = emailQueueRepository.findEmailsForRetry(pageable);
@@ -216,16 +381,33 @@ public class EmailQueueService {
     }
 
     /**
-     * Why: Get email queue với pagination
-     * Context: Admin interface
+     * Why: Get email queue với keyset pagination
+     * Context: Admin interface. Seek theo (created_at, id) thay vì OFFSET nên trang sâu
+     *          không scan lại các trang trước; cursor null là trang đầu
      */
     @Transactional(readOnly = true)
-    public Page<EmailQueue> getEmailQueue(String status, Pageable pageable) {
-        if (status != null && !status.isEmpty()) {
-            return emailQueueRepository.findByStatusOrderByCreatedAtDesc(status, pageable);
-        } else {
-            return emailQueueRepository.findAll(pageable);
-        }
+    public KeysetPage<EmailResponse> getEmailQueue(String status, String cursor, int size) {
+        int pageSize = KeysetPage.clampSize(size);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<EmailResponse> rows = status != null && !status.isEmpty()
+                ? emailQueueRepository.findQueuePageByStatus(
+                        status, position.getCreatedAt(), position.getId(), KeysetPage.probe(pageSize))
+                : emailQueueRepository.findQueuePage(
+                        position.getCreatedAt(), position.getId(), KeysetPage.probe(pageSize));
+        return KeysetPage.of(rows, pageSize, EmailResponse::toCursor);
+    }
+
+    /**
+     * Why: Emails đã queue cho một recipient, keyset pagination
+     * Context: User support
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<EmailResponse> getEmailsForRecipient(String recipientEmail, String cursor, int size) {
+        int pageSize = KeysetPage.clampSize(size);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<EmailResponse> rows = emailQueueRepository.findQueuePageByRecipient(
+                recipientEmail, position.getCreatedAt(), position.getId(), KeysetPage.probe(pageSize));
+        return KeysetPage.of(rows, pageSize, EmailResponse::toCursor);
     }
 
     /**
@@ -1,23 +1,34 @@
 package com.flux.emailservice.service;
 
 import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.dto.DispatchCandidate;
 import com.flux.emailservice.entity.EmailLog;
 import com.flux.emailservice.entity.EmailQueue;
+import com.flux.emailservice.entity.EmailTemplateVersion;
+import com.flux.emailservice.repository.DispatchJdbcRepository;
 import com.flux.emailservice.repository.EmailLogRepository;
+import com.flux.emailservice.repository.EmailQueueRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Why: Service layer cho actual email sending
@@ -32,20 +43,38 @@ public class EmailSendingService {
     private final JavaMailSender mailSender;
     private final EmailTemplateService emailTemplateService;
     private final EmailLogRepository emailLogRepository;
+    private final EmailQueueRepository emailQueueRepository;
     private final ApplicationProperties applicationProperties;
     private final RateLimitService rateLimitService;
+    private final SmtpConcurrencyLimiter smtpConcurrencyLimiter;
+    private final SmtpFailureClassifier smtpFailureClassifier;
+    private final TemplateVersionRegistry templateVersionRegistry;
+    private final DispatchJdbcRepository dispatchJdbcRepository;
+    private final String relayKey;
+    private final AtomicBoolean firstEmailSent = new AtomicBoolean();
 
     @Autowired
     public EmailSendingService(JavaMailSender mailSender,
                               EmailTemplateService emailTemplateService,
                               EmailLogRepository emailLogRepository,
+                              EmailQueueRepository emailQueueRepository,
                               ApplicationProperties applicationProperties,
-                              RateLimitService rateLimitService) {
+                              RateLimitService rateLimitService,
+                              SmtpConcurrencyLimiter smtpConcurrencyLimiter,
+                              SmtpFailureClassifier smtpFailureClassifier,
+                              TemplateVersionRegistry templateVersionRegistry,
+                              DispatchJdbcRepository dispatchJdbcRepository) {
         this.mailSender = mailSender;
         this.emailTemplateService = emailTemplateService;
         this.emailLogRepository = emailLogRepository;
+        this.emailQueueRepository = emailQueueRepository;
         this.applicationProperties = applicationProperties;
         this.rateLimitService = rateLimitService;
+        this.smtpConcurrencyLimiter = smtpConcurrencyLimiter;
+        this.smtpFailureClassifier = smtpFailureClassifier;
+        this.templateVersionRegistry = templateVersionRegistry;
+        this.dispatchJdbcRepository = dispatchJdbcRepository;
+        this.relayKey = resolveRelayKey(mailSender);
     }
 
     /**
@@ -62,7 +91,8 @@ public class EmailSendingService {
             return CompletableFuture.completedFuture(result);
         } catch (Exception e) {
             logger.error("Async email sending failed for ID: {}", emailQueue.getId(), e);
-            EmailSendResult result = EmailSendResult.failure(e.getMessage());
+            EmailSendResult result = EmailSendResult.failure(e.getMessage(),
+                    smtpFailureClassifier.classify(e));
             return CompletableFuture.completedFuture(result);
         }
     }
@@ -72,65 +102,213 @@ public class EmailSendingService {
      * Context: API calls cần immediate response
      */
     public EmailSendResult sendEmail(EmailQueue emailQueue) {
+        return sendEmail(DispatchCandidate.from(emailQueue));
+    }
+
+    /**
+     * Why: Gửi một email đã claim từ dispatch projection
+     * Context: Không load EmailQueue / EmailTemplate entities: content từ TemplateVersionRegistry
+     *          theo version id, active flag từ claim query. Không mở persistence context,
+     *          EmailLog được insert qua DispatchJdbcRepository
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public EmailSendResult sendEmail(DispatchCandidate email) {
         logger.info("Sending email: ID={}, recipient={}", 
-                   emailQueue.getId(), emailQueue.getRecipientEmail());
+                   email.getId(), email.getRecipientEmail());
 
         try {
             // Why: Validate recipient trước khi gửi
-            if (!isValidRecipient(emailQueue.getRecipientEmail())) {
-                String error = "Invalid or blacklisted recipient: " + emailQueue.getRecipientEmail();
+            if (!isValidRecipient(email.getRecipientEmail())) {
+                String error = "Invalid, blacklisted or suppressed recipient: " + email.getRecipientEmail();
                 logger.warn(error);
-                logEmailFailure(emailQueue, error);
-                return EmailSendResult.failure(error);
+                SmtpFailureClassifier.Classification classification =
+                        SmtpFailureClassifier.Classification.permanent(null, null, error);
+                logEmailFailure(email, error, classification);
+                return EmailSendResult.failure(error, classification);
             }
 
-            // Why: Process template với variables
-            EmailTemplateService.ProcessedTemplate processedTemplate = 
-                emailTemplateService.processTemplate(
-                    emailQueue.getTemplate().getTemplateName(), 
-                    emailQueue.getTemplateVariables()
-                );
+            // Why: Content từ version đã pin lúc enqueue nên edit sau đó không ảnh hưởng email này
+            if (!email.isTemplateActive()) {
+                throw new RuntimeException("Template not found or inactive: " + email.getTemplateName());
+            }
+            EmailTemplateVersion version = templateVersionRegistry.forCandidate(email);
+            EmailTemplateService.ProcessedTemplate processedTemplate = emailTemplateService.processTemplate(
+                    email.getTemplateName(), email.getTemplateType(), version, email.getTemplateVariables());
 
             // Why: Create và send MIME message
-            MimeMessage mimeMessage = createMimeMessage(emailQueue, processedTemplate);
-            mailSender.send(mimeMessage);
+            MimeMessage mimeMessage = createMimeMessage(email.getId(), email.getRecipientEmail(),
+                    email.isHighPriority(), processedTemplate);
+            sendThroughLimiter(mimeMessage, email.getPriority());
 
             // Why: Log successful sending
-            EmailLog emailLog = logEmailSuccess(emailQueue, processedTemplate.getSubject());
+            Long emailLogId = dispatchJdbcRepository.insertLog(email.getId(), email.getRecipientEmail(),
+                    processedTemplate.getSubject(), EmailLog.EmailLogStatus.SENT.name(), null, LocalDateTime.now());
             
             // Why: Update rate limit counter
-            rateLimitService.incrementEmailCount(emailQueue.getRecipientEmail());
+            rateLimitService.incrementEmailCount(email.getRecipientEmail());
 
-            logger.info("Email sent successfully: ID={}", emailQueue.getId());
-            return EmailSendResult.success(emailLog.getId(), "Email sent successfully");
+            logger.info("Email sent successfully: ID={}", email.getId());
+            return EmailSendResult.success(emailLogId, "Email sent successfully");
 
         } catch (MessagingException e) {
             String error = "Message creation failed: " + e.getMessage();
-            logger.error("Email sending failed for ID: {}", emailQueue.getId(), e);
-            logEmailFailure(emailQueue, error);
-            return EmailSendResult.failure(error);
+            logger.error("Email sending failed for ID: {}", email.getId(), e);
+            return handleFailure(email, error, smtpFailureClassifier.classify(e));
 
         } catch (MailException e) {
             String error = "SMTP sending failed: " + e.getMessage();
-            logger.error("Email sending failed for ID: {}", emailQueue.getId(), e);
-            logEmailFailure(emailQueue, error);
-            return EmailSendResult.failure(error);
+            logger.error("Email sending failed for ID: {}", email.getId(), e);
+            return handleFailure(email, error, smtpFailureClassifier.classify(e));
 
         } catch (Exception e) {
             String error = "Unexpected error: " + e.getMessage();
-            logger.error("Email sending failed for ID: {}", emailQueue.getId(), e);
-            logEmailFailure(emailQueue, error);
-            return EmailSendResult.failure(error);
+            logger.error("Email sending failed for ID: {}", email.getId(), e);
+            return handleFailure(email, error, SmtpFailureClassifier.Classification.unknown(error));
+        }
+    }
+
+    /**
+     * Why: Render và gửi email chưa được persist (express lane)
+     * Context: Không mở transaction và không ghi database - outcome được persist write-behind
+     *          qua recordExpressDelivery. Throw nếu relay chắc chắn chưa nhận message để caller
+     *          fallback về queue; outcome không rõ throw DeliveryOutcomeUnknownException
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String deliverExpress(EmailQueue emailQueue) throws MessagingException, UnsupportedEncodingException {
+        if (!isValidRecipient(emailQueue.getRecipientEmail())) {
+            throw new IllegalArgumentException(
+                    "Invalid, blacklisted or suppressed recipient: " + emailQueue.getRecipientEmail());
+        }
+
+        EmailTemplateVersion version = templateVersionRegistry.forEmail(emailQueue, emailQueue.getTemplate());
+        EmailTemplateService.ProcessedTemplate processedTemplate =
+                emailTemplateService.processTemplate(emailQueue.getTemplate(), version,
+                        emailQueue.getTemplateVariables());
+
+        MimeMessage mimeMessage = createMimeMessage(emailQueue, processedTemplate);
+        // Why: Limiter đầy thì chưa có gì được gửi, acquire tách khỏi send để lỗi này vẫn fallback
+        SmtpConcurrencyLimiter.Permit permit = acquirePermit(emailQueue.getPriority());
+        try {
+            sendWithPermit(mimeMessage, permit);
+        } catch (MailException e) {
+            if (!smtpFailureClassifier.isDefinitelyNotAccepted(e)) {
+                throw new DeliveryOutcomeUnknownException(processedTemplate.getSubject(), e);
+            }
+            throw e;
+        }
+
+        try {
+            rateLimitService.incrementEmailCount(emailQueue.getRecipientEmail());
+        } catch (RuntimeException e) {
+            // Why: Relay đã accept, throw ở đây sẽ làm caller fallback và gửi email lần hai
+            logger.warn("Failed to increment rate limit for {} after express send: {}",
+                       emailQueue.getRecipientEmail(), e.getMessage());
+        }
+        return processedTemplate.getSubject();
+    }
+
+    /**
+     * Why: Persist outcome của express send
+     * Context: Queue row được lưu thẳng ở trạng thái SENT cùng EmailLog trong một transaction
+     */
+    public EmailLog recordExpressDelivery(EmailQueue emailQueue, String subject) {
+        emailQueue.markAsSent();
+        emailQueueRepository.save(emailQueue);
+        return logEmailSuccess(emailQueue, subject);
+    }
+
+    /**
+     * Why: Persist express send mà relay có thể đã accept
+     * Context: Row SENT_UNKNOWN không bị dispatch hay retry, chỉ để audit; không ghi EmailLog
+     *          vì không biết email có được gửi hay không
+     */
+    public EmailQueue recordExpressOutcomeUnknown(EmailQueue emailQueue, String detail) {
+        emailQueue.markAsSentUnknown(detail);
+        return emailQueueRepository.save(emailQueue);
+    }
+
+    /**
+     * Why: Log failure và feed suppression list cho hard bounces
+     * Context: Recipient failures (5.1.x) không bao giờ thành công khi retry
+     */
+    private EmailSendResult handleFailure(DispatchCandidate email, String error,
+                                          SmtpFailureClassifier.Classification classification) {
+        logger.info("Email {} failure classified as {}", email.getId(), classification);
+
+        if (classification.isRecipientFailure()) {
+            rateLimitService.suppressRecipient(email.getRecipientEmail(), classification.getDetail());
         }
+
+        logEmailFailure(email, error, classification);
+        return EmailSendResult.failure(error, classification);
+    }
+
+    /**
+     * Why: Send qua adaptive concurrency limiter của relay
+     * Context: Limiter học capacity thật của relay từ latency và 4xx responses;
+     *          dispatch lane của priority quyết định phần capacity được reserved
+     */
+    private void sendThroughLimiter(MimeMessage mimeMessage, int priority) {
+        sendWithPermit(mimeMessage, acquirePermit(priority));
+    }
+
+    private SmtpConcurrencyLimiter.Permit acquirePermit(int priority) {
+        return smtpConcurrencyLimiter.acquire(relayKey, applicationProperties.getDispatch().laneFor(priority));
+    }
+
+    private void sendWithPermit(MimeMessage mimeMessage, SmtpConcurrencyLimiter.Permit permit) {
+        SmtpConcurrencyLimiter.Outcome outcome = SmtpConcurrencyLimiter.Outcome.IGNORED;
+        try {
+            mailSender.send(mimeMessage);
+            outcome = SmtpConcurrencyLimiter.Outcome.SUCCESS;
+            recordFirstEmail();
+        } catch (MailException e) {
+            if (smtpFailureClassifier.classify(e).isTransient()) {
+                outcome = SmtpConcurrencyLimiter.Outcome.DROPPED;
+            }
+            throw e;
+        } finally {
+            permit.release(outcome);
+        }
+    }
+
+    /**
+     * Why: Log time-to-first-email một lần mỗi process
+     * Context: Tính từ JVM start nên gồm cả class loading / AOT / CDS, dùng để so sánh
+     *          các startup modes (xem README "Startup")
+     */
+    private void recordFirstEmail() {
+        if (firstEmailSent.compareAndSet(false, true)) {
+            logger.info("First email accepted by SMTP {} ms after JVM start",
+                       ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    /**
+     * Why: Relay key cho per-relay limits và metrics
+     */
+    private static String resolveRelayKey(JavaMailSender mailSender) {
+        if (mailSender instanceof JavaMailSenderImpl senderImpl && senderImpl.getHost() != null) {
+            return senderImpl.getHost() + ":" + senderImpl.getPort();
+        }
+        return "default";
     }
 
     /**
      * Why: Create MIME message từ processed template
-     * Context: Setup email headers, content và attachments
+     * Context: Setup email headers, content và attachments.
+     *          Package-private để JMH benchmark (src/jmh) đo được MIME-build hot path
      */
-    private MimeMessage createMimeMessage(EmailQueue emailQueue, 
-                                         EmailTemplateService.ProcessedTemplate processedTemplate) 
-            throws MessagingException {
+    MimeMessage createMimeMessage(EmailQueue emailQueue,
+                                  EmailTemplateService.ProcessedTemplate processedTemplate)
+            throws MessagingException, UnsupportedEncodingException {
+        return createMimeMessage(emailQueue.getId(), emailQueue.getRecipientEmail(),
+                emailQueue.isHighPriority(), processedTemplate);
+    }
+
+    private MimeMessage createMimeMessage(Long emailQueueId, String recipientEmail, boolean highPriority,
+                                          EmailTemplateService.ProcessedTemplate processedTemplate)
+            throws MessagingException, UnsupportedEncodingException {
         
         MimeMessage message = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
@@ -140,7 +318,7 @@ public class EmailSendingService {
                       applicationProperties.getFromName());
 
         // Why: Set recipient
-        helper.setTo(emailQueue.getRecipientEmail());
+        helper.setTo(recipientEmail);
 
         // Why: Set subject
         helper.setSubject(processedTemplate.getSubject());
@@ -152,13 +330,15 @@ public class EmailSendingService {
             helper.setText(processedTemplate.getHtmlContent(), true);
         }
 
-        // Why: Set headers cho tracking và identification
-        message.setHeader("X-Email-Queue-ID", emailQueue.getId().toString());
+        // Why: Set headers cho tracking và identification; express sends chưa có queue ID
+        if (emailQueueId != null) {
+            message.setHeader("X-Email-Queue-ID", emailQueueId.toString());
+        }
         message.setHeader("X-Template-Name", processedTemplate.getTemplateName());
         message.setHeader("X-Template-Type", processedTemplate.getTemplateType());
         
         // Why: Set priority header
-        if (emailQueue.isHighPriority()) {
+        if (highPriority) {
             message.setHeader("X-Priority", "1");
             message.setHeader("Importance", "high");
         }
@@ -181,6 +361,12 @@ public class EmailSendingService {
             return false;
         }
 
+        // Why: Check suppression list (previous hard bounces)
+        if (rateLimitService.isSuppressed(recipientEmail)) {
+            logger.warn("Recipient is suppressed: {}", recipientEmail);
+            return false;
+        }
+
         // Why: Basic email format validation (additional to @Email annotation)
         if (!recipientEmail.matches("^[A-Za-z0-9+_.-]+@([A-Za-z0-9.-]+\\.[A-Za-z]{2,})$")) {
             logger.warn("Invalid email format: {}", recipientEmail);
@@ -209,22 +395,23 @@ public class EmailSendingService {
      * Why: Log failed email sending
      * Context: Error tracking và debugging
      */
-    private EmailLog logEmailFailure(EmailQueue emailQueue, String errorMessage) {
-        EmailLog emailLog = new EmailLog(
-            emailQueue,
-            emailQueue.getRecipientEmail(),
-            "Failed to send",
-            EmailLog.EmailLogStatus.FAILED.name()
-        );
-
+    private Long logEmailFailure(DispatchCandidate email, String errorMessage,
+                                 SmtpFailureClassifier.Classification classification) {
         // Why: Store error details in delivery status
-        emailLog.setDeliveryStatus(java.util.Map.of(
-            "error", errorMessage,
-            "timestamp", LocalDateTime.now().toString(),
-            "retryCount", emailQueue.getRetryCount()
-        ));
+        Map<String, Object> deliveryStatus = new HashMap<>();
+        deliveryStatus.put("error", errorMessage);
+        deliveryStatus.put("timestamp", LocalDateTime.now().toString());
+        deliveryStatus.put("retryCount", email.getRetryCount());
+        deliveryStatus.put("failureType", classification.getType().name());
+        if (classification.getReplyCode() != null) {
+            deliveryStatus.put("smtpReplyCode", classification.getReplyCode());
+        }
+        if (classification.getEnhancedStatus() != null) {
+            deliveryStatus.put("enhancedStatus", classification.getEnhancedStatus());
+        }
 
-        return emailLogRepository.save(emailLog);
+        return dispatchJdbcRepository.insertLog(email.getId(), email.getRecipientEmail(), "Failed to send",
+                EmailLog.EmailLogStatus.FAILED.name(), deliveryStatus, LocalDateTime.now());
     }
 
     /**
@@ -282,7 +469,7 @@ public class EmailSendingService {
         } catch (Exception e) {
             String error = "Test email failed: " + e.getMessage();
             logger.error(error, e);
-            return EmailSendResult.failure(error);
+            return EmailSendResult.failure(error, smtpFailureClassifier.classify(e));
         }
     }
 
@@ -295,20 +482,28 @@ public class EmailSendingService {
         private final String message;
         private final Long emailLogId;
         private final String errorDetails;
+        private final SmtpFailureClassifier.Classification classification;
 
-        private EmailSendResult(boolean success, String message, Long emailLogId, String errorDetails) {
+        private EmailSendResult(boolean success, String message, Long emailLogId, String errorDetails,
+                                SmtpFailureClassifier.Classification classification) {
             this.success = success;
             this.message = message;
             this.emailLogId = emailLogId;
             this.errorDetails = errorDetails;
+            this.classification = classification;
         }
 
         public static EmailSendResult success(Long emailLogId, String message) {
-            return new EmailSendResult(true, message, emailLogId, null);
+            return new EmailSendResult(true, message, emailLogId, null, null);
         }
 
         public static EmailSendResult failure(String errorMessage) {
-            return new EmailSendResult(false, "Email sending failed", null, errorMessage);
+            return failure(errorMessage, SmtpFailureClassifier.Classification.unknown(errorMessage));
+        }
+
+        public static EmailSendResult failure(String errorMessage,
+                                              SmtpFailureClassifier.Classification classification) {
+            return new EmailSendResult(false, "Email sending failed", null, errorMessage, classification);
         }
 
         // Getters
@@ -316,6 +511,11 @@ public class EmailSendingService {
         public String getMessage() { return message; }
         public Long getEmailLogId() { return emailLogId; }
         public String getErrorDetails() { return errorDetails; }
+        public SmtpFailureClassifier.Classification getClassification() { return classification; }
+
+        public boolean isPermanentFailure() {
+            return !success && classification != null && classification.isPermanent();
+        }
 
         @Override
         public String toString() {
@@ -323,4 +523,21 @@ public class EmailSendingService {
                                success, message, emailLogId);
         }
     }
+
+    /**
+     * Why: Send lỗi sau khi relay có thể đã accept message (timeout chờ final reply, lỗi QUIT)
+     * Context: Tách khỏi MailException để express caller không fallback về queue và gửi lần hai
+     */
+    public static class DeliveryOutcomeUnknownException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final String subject;
+
+        public DeliveryOutcomeUnknownException(String subject, Throwable cause) {
+            super("Delivery outcome unknown: " + cause.getMessage(), cause);
+            this.subject = subject;
+        }
+
+        public String getSubject() { return subject; }
+    }
 }
@@ -0,0 +1,194 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.CachedEntityChangedEvent;
+import com.flux.emailservice.entity.EmailSettings;
+import com.flux.emailservice.repository.EmailSettingsRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Why: Runtime-tunable settings từ email_settings mà không cần redeploy
+ * Context: Active rows được giữ trong immutable snapshot; lookups chỉ đọc volatile reference,
+ *          không có DB access per call. Snapshot được rebuild khi có CachedEntityChangedEvent
+ *          cho EmailSettings (commit trên node này hoặc invalidation từ node khác), các rows
+ *          sửa bằng SQL trực tiếp được bắt bởi reconcile định kỳ. Snapshot mới chỉ được tạo và
+ *          publish như application event khi values thay đổi, cho components cần apply lại
+ *          (executors, template defaults)
+ */
+@Service
+public class EmailSettingsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailSettingsService.class);
+
+    private final EmailSettingsRepository emailSettingsRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicBoolean stale = new AtomicBoolean();
+    private volatile Snapshot snapshot = new Snapshot(new TreeMap<>(), 0, null);
+
+    @Autowired
+    public EmailSettingsService(EmailSettingsRepository emailSettingsRepository,
+                                ApplicationEventPublisher eventPublisher) {
+        this.emailSettingsRepository = emailSettingsRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void load() {
+        reload();
+    }
+
+    /**
+     * Why: Đánh dấu snapshot cũ, reload chạy trên scheduler thay vì thread đang commit
+     * Context: Một transaction sửa nhiều settings chỉ gây một lần reload
+     */
+    @EventListener
+    public void onCachedEntityChanged(CachedEntityChangedEvent event) {
+        if (event.isOf(EmailSettings.class)) {
+            stale.set(true);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.settings.refresh-check-ms:1000}")
+    public void refreshIfStale() {
+        if (stale.getAndSet(false)) {
+            reload();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.settings.reconcile-interval-ms:300000}",
+               initialDelayString = "${app.email.settings.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        reload();
+    }
+
+    /**
+     * Why: Snapshot hiện tại, dùng khi cần đọc nhiều keys nhất quán với nhau
+     */
+    public Snapshot current() {
+        return snapshot;
+    }
+
+    public int getInt(String key, int fallback) {
+        return snapshot.getInt(key, fallback);
+    }
+
+    public long getLong(String key, long fallback) {
+        return snapshot.getLong(key, fallback);
+    }
+
+    public double getDouble(String key, double fallback) {
+        return snapshot.getDouble(key, fallback);
+    }
+
+    private void reload() {
+        try {
+            List<EmailSettings> settings = emailSettingsRepository.findByIsActiveTrueOrderBySettingKey();
+            NavigableMap<String, String> values = new TreeMap<>();
+            for (EmailSettings setting : settings) {
+                if (setting.getSettingValue() != null) {
+                    values.put(setting.getSettingKey(), setting.getSettingValue());
+                }
+            }
+            Snapshot previous = snapshot;
+            // Why: Reconcile định kỳ thường không thấy thay đổi - không bump version, không bắt
+            //      listeners apply lại executors / template defaults
+            if (previous.loadedAt != null && values.equals(previous.values)) {
+                return;
+            }
+            Snapshot next = new Snapshot(values, previous.version + 1, LocalDateTime.now());
+            snapshot = next;
+            logger.info("Loaded email settings snapshot v{} ({} keys)", next.version, values.size());
+            eventPublisher.publishEvent(next);
+        } catch (Exception e) {
+            // Why: Giữ snapshot cũ, consumers vẫn chạy với giá trị đã biết; thử lại ở lần sau
+            stale.set(true);
+            logger.warn("Failed to reload email settings: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Why: Immutable view của active email_settings tại một thời điểm
+     * Context: Values sai format thì trả fallback (giá trị từ ApplicationProperties) thay vì fail
+     *          dispatch; keys sort để đọc theo prefix
+     */
+    public static final class Snapshot {
+        private final NavigableMap<String, String> values;
+        private final long version;
+        private final LocalDateTime loadedAt;
+
+        private Snapshot(NavigableMap<String, String> values, long version, LocalDateTime loadedAt) {
+            this.values = Collections.unmodifiableNavigableMap(values);
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        public int getInt(String key, int fallback) {
+            String value = values.get(key);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+
+        public long getLong(String key, long fallback) {
+            String value = values.get(key);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+
+        public double getDouble(String key, double fallback) {
+            String value = values.get(key);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+
+        /**
+         * Why: Các settings có key bắt đầu bằng prefix, theo thứ tự key
+         */
+        public NavigableMap<String, String> withPrefix(String prefix) {
+            return values.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public LocalDateTime getLoadedAt() {
+            return loadedAt;
+        }
+    }
+}
@@ -1,15 +1,17 @@
 package com.flux.emailservice.service;
 
+import com.flux.emailservice.dto.EmailTemplateSummary;
+import com.flux.emailservice.dto.KeysetCursor;
+import com.flux.emailservice.dto.KeysetPage;
 import com.flux.emailservice.entity.EmailTemplate;
+import com.flux.emailservice.entity.EmailTemplateVersion;
 import com.flux.emailservice.repository.EmailTemplateRepository;
+import com.flux.emailservice.repository.EmailTemplateVersionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.thymeleaf.TemplateEngine;
@@ -17,6 +19,7 @@ import org.thymeleaf.context.Context;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -30,13 +33,19 @@ public class EmailTemplateService {
     private static final Logger logger = LoggerFactory.getLogger(EmailTemplateService.class);
 
     private final EmailTemplateRepository emailTemplateRepository;
+    private final EmailTemplateVersionRepository emailTemplateVersionRepository;
     private final TemplateEngine templateEngine;
+    private final TemplateVariableResolver templateVariableResolver;
 
     @Autowired
     public EmailTemplateService(EmailTemplateRepository emailTemplateRepository,
-                               TemplateEngine templateEngine) {
+                               EmailTemplateVersionRepository emailTemplateVersionRepository,
+                               TemplateEngine templateEngine,
+                               TemplateVariableResolver templateVariableResolver) {
         this.emailTemplateRepository = emailTemplateRepository;
+        this.emailTemplateVersionRepository = emailTemplateVersionRepository;
         this.templateEngine = templateEngine;
+        this.templateVariableResolver = templateVariableResolver;
     }
 
     /**
@@ -56,6 +65,7 @@ public class EmailTemplateService {
         validateTemplateContent(template);
 
         EmailTemplate savedTemplate = emailTemplateRepository.save(template);
+        publishVersion(savedTemplate);
         logger.info("Email template created with ID: {}", savedTemplate.getId());
         
         return savedTemplate;
@@ -63,13 +73,15 @@ public class EmailTemplateService {
 
     /**
      * Why: Update existing template
-     * Context: Admin interface để modify templates
+     * Context: Admin interface để modify templates. Content thay đổi thì tạo version mới và
+     *          chuyển pointer; emails đã queue vẫn render version đã pin. Evict mọi entries
+     *          vì tên template có thể đổi
      */
-    @CacheEvict(value = "email-templates", key = "#template.templateName")
+    @CacheEvict(value = "email-templates", allEntries = true)
     public EmailTemplate updateTemplate(Long templateId, EmailTemplate template) {
         logger.info("Updating email template ID: {}", templateId);
 
-        Optional<EmailTemplate> existingOpt = emailTemplateRepository.findById(templateId);
+        Optional<EmailTemplate> existingOpt = emailTemplateRepository.findByIdForUpdate(templateId);
         if (existingOpt.isEmpty()) {
             throw new RuntimeException("Template not found with ID: " + templateId);
         }
@@ -85,6 +97,11 @@ public class EmailTemplateService {
         // Why: Validate new template content
         validateTemplateContent(template);
 
+        boolean contentChanged = existing.getCurrentVersionId() == null
+                || !Objects.equals(existing.getSubjectTemplate(), template.getSubjectTemplate())
+                || !Objects.equals(existing.getHtmlContent(), template.getHtmlContent())
+                || !Objects.equals(existing.getTextContent(), template.getTextContent());
+
         // Why: Update fields
         existing.setTemplateName(template.getTemplateName());
         existing.setTemplateType(template.getTemplateType());
@@ -92,6 +109,9 @@ public class EmailTemplateService {
         existing.setHtmlContent(template.getHtmlContent());
         existing.setTextContent(template.getTextContent());
         existing.setIsActive(template.getIsActive());
+        if (contentChanged) {
+            publishVersion(existing);
+        }
 
         EmailTemplate updatedTemplate = emailTemplateRepository.save(existing);
         logger.info("Email template updated: {}", updatedTemplate.getTemplateName());
@@ -99,6 +119,45 @@ public class EmailTemplateService {
         return updatedTemplate;
     }
 
+    /**
+     * Why: Tạo version đầu tiên cho template có sẵn trước khi có versioning
+     * Context: Templates insert thẳng vào DB (seed scripts, load test) chưa có pointer; gọi qua
+     *          proxy để evict cached entries còn pointer null. Row lock để các instances không
+     *          cùng tạo version
+     */
+    @CacheEvict(value = "email-templates", allEntries = true)
+    public Long publishInitialVersion(Long templateId) {
+        EmailTemplate template = emailTemplateRepository.findByIdForUpdate(templateId)
+                .orElseThrow(() -> new RuntimeException("Template not found with ID: " + templateId));
+        if (template.getCurrentVersionId() == null) {
+            publishVersion(template);
+            emailTemplateRepository.save(template);
+        }
+        return template.getCurrentVersionId();
+    }
+
+    /**
+     * Why: Snapshot content hiện tại thành version mới và chuyển pointer
+     * Context: Caller phải giữ row lock của template (hoặc vừa tạo nó)
+     */
+    private void publishVersion(EmailTemplate template) {
+        int nextVersion = emailTemplateVersionRepository.findLatestVersionNumber(template.getId()) + 1;
+        EmailTemplateVersion version = emailTemplateVersionRepository.save(new EmailTemplateVersion(
+                template.getId(), nextVersion, template.getSubjectTemplate(),
+                template.getHtmlContent(), template.getTextContent(), template.getCreatedBy()));
+        template.setCurrentVersionId(version.getId());
+        logger.info("Published version {} of template {}", nextVersion, template.getTemplateName());
+    }
+
+    /**
+     * Why: Lịch sử versions của template
+     * Context: Admin audit
+     */
+    @Transactional(readOnly = true)
+    public List<EmailTemplateVersion> getTemplateVersions(Long templateId) {
+        return emailTemplateVersionRepository.findByTemplateIdOrderByVersionDesc(templateId);
+    }
+
     /**
      * Why: Get template by ID
      * Context: Admin interface và API endpoints
@@ -112,8 +171,10 @@ public class EmailTemplateService {
      * Why: Get active template by name với caching
      * Context: Email processing performance optimization
      */
-    @Cacheable(value = "email-templates", key = "#templateName")
-    @Transactional(readOnly = true)
+    // Why: Optional được unwrap trước khi cache, template không tồn tại thì không cache null
+    @Cacheable(value = "email-templates", key = "#templateName", unless = "#result == null")
+    // Why: Đọc primary - replica trễ sau update sẽ fill cache bằng content và version pointer cũ
+    @Transactional
     public Optional<EmailTemplate> getActiveTemplateByName(String templateName) {
         logger.debug("Loading template: {}", templateName);
         return emailTemplateRepository.findByTemplateNameAndIsActiveTrue(templateName);
@@ -121,18 +182,17 @@ public class EmailTemplateService {
 
     /**
      * Why: Get all templates với filtering
-     * Context: Admin interface với search functionality
+     * Context: Admin interface với search functionality. Filter, sort và LIMIT chạy trong
+     *          database, chỉ trả về summary columns; cursor null là trang đầu
      */
     @Transactional(readOnly = true)
-    public Page<EmailTemplate> getTemplates(String templateType, Boolean isActive, Pageable pageable) {
-        List<EmailTemplate> templates = emailTemplateRepository.findTemplatesWithFilters(templateType, isActive);
-        
-        // Why: Manual pagination vì custom query
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), templates.size());
-        
-        List<EmailTemplate> pageContent = templates.subList(start, end);
-        return new PageImpl<>(pageContent, pageable, templates.size());
+    public KeysetPage<EmailTemplateSummary> getTemplates(String templateType, Boolean isActive,
+                                                         String cursor, int size) {
+        int pageSize = KeysetPage.clampSize(size);
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        List<EmailTemplateSummary> rows = emailTemplateRepository.findTemplatePage(
+                templateType, isActive, position.getCreatedAt(), position.getId(), KeysetPage.probe(pageSize));
+        return KeysetPage.of(rows, pageSize, EmailTemplateSummary::toCursor);
     }
 
     /**
@@ -148,7 +208,8 @@ public class EmailTemplateService {
      * Why: Delete template (soft delete by deactivating)
      * Context: Admin action - prefer deactivation over deletion
      */
-    @CacheEvict(value = "email-templates", key = "#templateId")
+    // Why: Cache key là template name, không phải ID
+    @CacheEvict(value = "email-templates", allEntries = true)
     public boolean deactivateTemplate(Long templateId) {
         Optional<EmailTemplate> templateOpt = emailTemplateRepository.findById(templateId);
         if (templateOpt.isPresent()) {
@@ -167,7 +228,8 @@ public class EmailTemplateService {
      * Why: Activate template
      * Context: Admin action để re-enable template
      */
-    @CacheEvict(value = "email-templates", key = "#templateId")
+    // Why: Cache key là template name, không phải ID
+    @CacheEvict(value = "email-templates", allEntries = true)
     public boolean activateTemplate(Long templateId) {
         Optional<EmailTemplate> templateOpt = emailTemplateRepository.findById(templateId);
         if (templateOpt.isPresent()) {
@@ -194,31 +256,61 @@ public class EmailTemplateService {
             throw new RuntimeException("Template not found or inactive: " + templateName);
         }
 
-        EmailTemplate template = templateOpt.get();
+        return processTemplate(templateOpt.get(), variables);
+    }
+
+    /**
+     * Why: Process template entity đã có sẵn
+     * Context: Caller đã load template (vd. express lane) không cần lookup lại theo name
+     */
+    public ProcessedTemplate processTemplate(EmailTemplate template, Map<String, Object> variables) {
+        return render(template.getTemplateName(), template.getTemplateType(), template.getSubjectTemplate(),
+                template.getHtmlContent(), template.getTextContent(), variables);
+    }
 
+    /**
+     * Why: Render một version cụ thể của template
+     * Context: Send path - name / type từ template row, content từ immutable version
+     */
+    public ProcessedTemplate processTemplate(EmailTemplate template, EmailTemplateVersion version,
+                                             Map<String, Object> variables) {
+        return processTemplate(template.getTemplateName(), template.getTemplateType(), version, variables);
+    }
+
+    /**
+     * Why: Render version khi chỉ có name / type từ dispatch projection, không cần template entity
+     */
+    public ProcessedTemplate processTemplate(String templateName, String templateType, EmailTemplateVersion version,
+                                             Map<String, Object> variables) {
+        return render(templateName, templateType, version.getSubjectTemplate(),
+                version.getHtmlContent(), version.getTextContent(), variables);
+    }
+
+    private ProcessedTemplate render(String templateName, String templateType, String subjectTemplate,
+                                     String htmlContent, String textContent, Map<String, Object> variables) {
         try {
-            // Why: Create Thymeleaf context với variables
+            // Why: Create Thymeleaf context với global/template defaults + per-recipient variables
             Context context = new Context();
-            context.setVariables(variables);
+            templateVariableResolver.populate(context, templateName, variables);
 
             // Why: Process subject template
-            String processedSubject = templateEngine.process(template.getSubjectTemplate(), context);
+            String processedSubject = templateEngine.process(subjectTemplate, context);
 
             // Why: Process HTML content
-            String processedHtml = templateEngine.process(template.getHtmlContent(), context);
+            String processedHtml = templateEngine.process(htmlContent, context);
 
             // Why: Process text content (fallback)
             String processedText = null;
-            if (template.getTextContent() != null && !template.getTextContent().isEmpty()) {
-                processedText = templateEngine.process(template.getTextContent(), context);
+            if (textContent != null && !textContent.isEmpty()) {
+                processedText = templateEngine.process(textContent, context);
             }
 
             ProcessedTemplate result = new ProcessedTemplate(
                 processedSubject,
                 processedHtml,
                 processedText,
-                template.getTemplateName(),
-                template.getTemplateType()
+                templateName,
+                templateType
             );
 
             logger.debug("Template processed successfully: {}", templateName);
@@ -0,0 +1,147 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.event.EmailEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: Drop duplicate events trước khi chạm Postgres
+ * Context: Key theo eventId, fallback content hash trên (recipient, template, variables).
+ *          Redis SETNX với TTL ngắn là nguồn xác nhận duy nhất giữa các instances - không có
+ *          cache local vì claims bị release khi xử lý lỗi và local state không thấy được release đó
+ */
+@Service
+public class EventDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventDeduplicator.class);
+
+    private static final String EVENT_KEY_PREFIX = "dedup:event:";
+    private static final String CONTENT_KEY_PREFIX = "dedup:content:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public EventDeduplicator(RedisTemplate<String, Object> redisTemplate,
+                             ApplicationProperties applicationProperties,
+                             MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Why: Check và claim eventId trong một bước
+     * Context: Events không có eventId luôn được coi là mới
+     */
+    public boolean isDuplicateEvent(EmailEvent event) {
+        if (!applicationProperties.getDeduplication().isEnabled() || event.getEventId() == null) {
+            return false;
+        }
+
+        boolean duplicate = isDuplicate(EVENT_KEY_PREFIX, sha256(event.getEventId()),
+                applicationProperties.getDeduplication().getEventIdWindowSeconds());
+        if (duplicate) {
+            meterRegistry.counter("email.dedup.dropped", "kind", "event_id").increment();
+        }
+        return duplicate;
+    }
+
+    /**
+     * Why: Check và claim content hash của email sắp được queue
+     * Context: Bắt duplicates mà upstream publish lại với eventId mới
+     */
+    public boolean isDuplicateContent(String recipientEmail, String templateName,
+                                      Map<String, Object> templateVariables) {
+        if (!applicationProperties.getDeduplication().isEnabled()) {
+            return false;
+        }
+
+        boolean duplicate = isDuplicate(CONTENT_KEY_PREFIX,
+                contentHash(recipientEmail, templateName, templateVariables),
+                applicationProperties.getDeduplication().getContentWindowSeconds());
+        if (duplicate) {
+            meterRegistry.counter("email.dedup.dropped", "kind", "content").increment();
+        }
+        return duplicate;
+    }
+
+    /**
+     * Why: Release claim khi xử lý event thất bại
+     * Context: Message được redeliver phải được xử lý lại, không bị coi là duplicate
+     */
+    public void releaseEvent(EmailEvent event) {
+        if (event.getEventId() != null) {
+            release(EVENT_KEY_PREFIX + sha256(event.getEventId()));
+        }
+    }
+
+    public void releaseContent(String recipientEmail, String templateName, Map<String, Object> templateVariables) {
+        release(CONTENT_KEY_PREFIX + contentHash(recipientEmail, templateName, templateVariables));
+    }
+
+    /**
+     * Why: Một SETNX vừa check vừa claim key
+     * Context: Redis lỗi thì coi là event mới - gửi trùng hiếm còn hơn drop một redelivery hợp lệ
+     */
+    private boolean isDuplicate(String keyPrefix, String hash, long windowSeconds) {
+        try {
+            Boolean claimed = redisTemplate.opsForValue()
+                    .setIfAbsent(keyPrefix + hash, 1, windowSeconds, TimeUnit.SECONDS);
+            return Boolean.FALSE.equals(claimed);
+        } catch (RuntimeException e) {
+            logger.warn("Redis unavailable for deduplication, treating event as new: {}", e.getMessage());
+            meterRegistry.counter("email.dedup.unavailable").increment();
+            return false;
+        }
+    }
+
+    private void release(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to release deduplication key {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Why: Hash ổn định không phụ thuộc thứ tự variables
+     */
+    static String contentHash(String recipientEmail, String templateName, Map<String, Object> templateVariables) {
+        StringBuilder content = new StringBuilder()
+                .append(recipientEmail == null ? "" : recipientEmail.toLowerCase(Locale.ROOT))
+                .append('\u0000')
+                .append(templateName);
+
+        if (templateVariables != null) {
+            for (Map.Entry<String, Object> entry : new TreeMap<>(templateVariables).entrySet()) {
+                content.append('\u0000').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        return sha256(content.toString());
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
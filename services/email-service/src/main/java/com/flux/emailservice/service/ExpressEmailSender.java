@@ -0,0 +1,148 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.entity.EmailQueue;
+import com.flux.emailservice.entity.EmailSettings;
+import com.flux.emailservice.entity.EmailTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * Why: Express lane cho transactional events (password reset)
+ * Context: Bỏ qua INSERT → poll → claim → send → UPDATE; email được render và gửi ngay trên
+ *          listener thread, chỉ outcome được persist write-behind. Relay chắc chắn chưa nhận message
+ *          thì caller fallback về durable queue để retry như bình thường; outcome không rõ được ghi
+ *          SENT_UNKNOWN thay vì queue lại để không gửi password reset hai lần
+ */
+@Service
+public class ExpressEmailSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpressEmailSender.class);
+
+    private final EmailSendingService emailSendingService;
+    private final EmailTemplateService emailTemplateService;
+    private final TemplateVersionRegistry templateVersionRegistry;
+    private final RateLimitService rateLimitService;
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+    private final Executor writeBehindExecutor;
+    private final EmailSettingsService emailSettingsService;
+
+    @Autowired
+    public ExpressEmailSender(EmailSendingService emailSendingService,
+                              EmailTemplateService emailTemplateService,
+                              TemplateVersionRegistry templateVersionRegistry,
+                              RateLimitService rateLimitService,
+                              ApplicationProperties applicationProperties,
+                              MeterRegistry meterRegistry,
+                              @Qualifier("expressWriteBehindExecutor") Executor writeBehindExecutor,
+                              EmailSettingsService emailSettingsService) {
+        this.emailSendingService = emailSendingService;
+        this.emailTemplateService = emailTemplateService;
+        this.templateVersionRegistry = templateVersionRegistry;
+        this.rateLimitService = rateLimitService;
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+        this.writeBehindExecutor = writeBehindExecutor;
+        this.emailSettingsService = emailSettingsService;
+    }
+
+    /**
+     * Why: Event type có đi express lane không
+     */
+    public boolean handles(String eventType) {
+        ApplicationProperties.Express config = applicationProperties.getExpress();
+        return config.isEnabled() && config.getEventTypes().contains(eventType);
+    }
+
+    /**
+     * Why: Gửi email ngay lập tức
+     * Context: False nghĩa là chưa gửi được, caller phải queue email vào durable queue.
+     *          True gồm cả outcome không rõ - email có thể đã tới người nhận
+     */
+    public boolean trySend(String recipientEmail, String recipientName, String templateName,
+                           Map<String, Object> templateVariables, int priority, String serverId) {
+        // Why: Rate limit exceeded để queueEmail xử lý như cũ
+        if (!rateLimitService.isAllowed(recipientEmail)) {
+            meterRegistry.counter("email.express.fallback", "reason", "rate_limit").increment();
+            return false;
+        }
+
+        // Why: Template từ email-templates cache, không query DB trên listener thread
+        Optional<EmailTemplate> template = emailTemplateService.getActiveTemplateByName(templateName);
+        if (template.isEmpty()) {
+            meterRegistry.counter("email.express.fallback", "reason", "template").increment();
+            return false;
+        }
+
+        EmailQueue email = new EmailQueue(recipientEmail, recipientName, template.get(), templateVariables, priority);
+        if (email.getTemplateVersionId() == null) {
+            email.setTemplateVersionId(templateVersionRegistry.current(template.get()).getId());
+        }
+        email.setServerId(serverId);
+        // Why: Cùng nguồn với EmailQueueService để fallback về durable queue có cùng retry policy
+        email.setMaxRetries(emailSettingsService.getInt(EmailSettings.SettingKeys.RETRY_MAX_ATTEMPTS,
+                applicationProperties.getRetry().getMaxAttempts()));
+        email.setStatus(EmailQueue.EmailQueueStatus.PROCESSING.name());
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String subject;
+        try {
+            subject = emailSendingService.deliverExpress(email);
+        } catch (EmailSendingService.DeliveryOutcomeUnknownException e) {
+            sample.stop(meterRegistry.timer("email.express.send", "outcome", "unknown"));
+            logger.warn("Express send to {} has unknown outcome, not re-queuing: {}", recipientEmail, e.getMessage());
+            recordOutcomeUnknown(email, e.getMessage());
+            return true;
+        } catch (Exception e) {
+            sample.stop(meterRegistry.timer("email.express.send", "outcome", "failure"));
+            meterRegistry.counter("email.express.fallback", "reason", "send").increment();
+            logger.warn("Express send to {} failed, falling back to queue: {}", recipientEmail, e.getMessage());
+            return false;
+        }
+        sample.stop(meterRegistry.timer("email.express.send", "outcome", "success"));
+
+        recordWriteBehind(email, subject);
+        logger.info("Express email {} sent to {}", templateName, recipientEmail);
+        return true;
+    }
+
+    /**
+     * Why: Persist SENT queue row và EmailLog ngoài critical path
+     * Context: Email đã được relay accept, lỗi persist chỉ làm mất audit record chứ không gửi lại
+     */
+    private void recordWriteBehind(EmailQueue email, String subject) {
+        writeBehindExecutor.execute(() -> {
+            try {
+                emailSendingService.recordExpressDelivery(email, subject);
+            } catch (Exception e) {
+                meterRegistry.counter("email.express.writebehind.failed").increment();
+                logger.error("Failed to persist express delivery to {}", email.getRecipientEmail(), e);
+            }
+        });
+    }
+
+    /**
+     * Why: Giữ audit record cho send có outcome không rõ
+     * Context: Row SENT_UNKNOWN không được dispatch lại; support dựa vào đây khi user báo không nhận được
+     */
+    private void recordOutcomeUnknown(EmailQueue email, String detail) {
+        writeBehindExecutor.execute(() -> {
+            try {
+                emailSendingService.recordExpressOutcomeUnknown(email, detail);
+            } catch (Exception e) {
+                meterRegistry.counter("email.express.writebehind.failed").increment();
+                logger.error("Failed to persist unknown express outcome for {}", email.getRecipientEmail(), e);
+            }
+        });
+    }
+}
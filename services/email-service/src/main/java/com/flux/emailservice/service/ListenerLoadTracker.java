@@ -0,0 +1,81 @@
+package com.flux.emailservice.service;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Why: Đo busy time và handler latency của RabbitMQ listeners theo consumer class
+ * Context: Advice được gắn vào container factory nên đo đúng thời gian listener giữ message,
+ *          gồm cả DB, Redis và express SMTP phía sau
+ */
+@Component
+public class ListenerLoadTracker {
+
+    private final ConcurrentMap<String, ClassLoad> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Why: Advice cho container factory của một consumer class
+     */
+    public MethodInterceptor adviceFor(String consumerClass) {
+        ClassLoad load = loadOf(consumerClass);
+        return invocation -> {
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                load.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Why: Lấy busy time và số messages từ lần snapshot trước
+     * Context: Chỉ autoscaler gọi, mỗi interval một lần
+     */
+    public Snapshot snapshot(String consumerClass) {
+        ClassLoad load = loadOf(consumerClass);
+        return new Snapshot(load.busyNanos.sumThenReset(), load.messages.sumThenReset());
+    }
+
+    private ClassLoad loadOf(String consumerClass) {
+        return loads.computeIfAbsent(consumerClass, key -> new ClassLoad());
+    }
+
+    private static class ClassLoad {
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder messages = new LongAdder();
+
+        private void record(long nanos) {
+            busyNanos.add(nanos);
+            messages.increment();
+        }
+    }
+
+    /**
+     * Why: Load của một class trong một interval
+     */
+    public static class Snapshot {
+        private final long busyNanos;
+        private final long messages;
+
+        public Snapshot(long busyNanos, long messages) {
+            this.busyNanos = busyNanos;
+            this.messages = messages;
+        }
+
+        /**
+         * Why: Latency trung bình của handler, 0 nếu interval không có message
+         */
+        public double getAverageLatencyMs() {
+            return messages > 0 ? busyNanos / 1_000_000.0 / messages : 0.0;
+        }
+
+        // Getters
+        public long getBusyNanos() { return busyNanos; }
+        public long getMessages() { return messages; }
+    }
+}
@@ -0,0 +1,319 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.event.EmailEvent;
+import com.flux.emailservice.repository.EmailTemplateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: Gom notification events theo recipient thành một digest email
+ * Context: Viral server launch tạo hàng trăm joined/invited events cho một user mỗi giờ.
+ *          Events được giữ trong Redis một window rồi flush thành một email duy nhất,
+ *          nên mọi instance đều share cùng buffer
+ */
+@Service
+public class NotificationCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationCoalescer.class);
+
+    // Why: List items per recipient + ZSET due time để flusher tìm recipients đến hạn
+    private static final String ITEMS_KEY_PREFIX = "coalesce:items:";
+    private static final String FLUSHING_KEY_PREFIX = "coalesce:flushing:";
+    private static final String DUE_KEY = "coalesce:due";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final EmailQueueService emailQueueService;
+    private final EmailTemplateRepository emailTemplateRepository;
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public NotificationCoalescer(RedisTemplate<String, Object> redisTemplate,
+                                 EmailQueueService emailQueueService,
+                                 EmailTemplateRepository emailTemplateRepository,
+                                 ApplicationProperties applicationProperties,
+                                 MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.emailQueueService = emailQueueService;
+        this.emailTemplateRepository = emailTemplateRepository;
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Why: Buffer event nếu event type thuộc nhóm coalescible
+     * Context: False nghĩa là caller phải queue email ngay như bình thường
+     */
+    public boolean offer(EmailEvent event, String templateName, Map<String, Object> templateVariables,
+                         int priority) {
+        ApplicationProperties.Coalescing config = applicationProperties.getCoalescing();
+        if (!config.isEnabled() || !config.getEventTypes().contains(event.getEventType())) {
+            return false;
+        }
+
+        String recipient = event.getUserEmail().toLowerCase(Locale.ROOT);
+        String itemsKey = ITEMS_KEY_PREFIX + recipient;
+
+        Map<String, Object> item = new HashMap<>();
+        item.put("eventType", event.getEventType());
+        item.put("recipientEmail", event.getUserEmail());
+        item.put("recipientName", event.getUserName());
+        item.put("templateName", templateName);
+        item.put("priority", priority);
+        item.put("serverId", event.getServerId());
+        item.put("variables", new HashMap<>(templateVariables));
+
+        try {
+            redisTemplate.opsForList().rightPush(itemsKey, item);
+            // Why: Safety TTL - items không bị giữ mãi nếu due entry bị mất
+            redisTemplate.expire(itemsKey, config.getWindowSeconds() * 3, TimeUnit.SECONDS);
+            redisTemplate.opsForZSet().addIfAbsent(DUE_KEY, recipient,
+                    System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getWindowSeconds()));
+        } catch (RuntimeException e) {
+            // Why: Redis lỗi thì gửi ngay thay vì mất notification
+            logger.warn("Failed to buffer {} event for {}, sending immediately: {}",
+                       event.getEventType(), recipient, e.getMessage());
+            return false;
+        }
+
+        meterRegistry.counter("email.coalescing.buffered", "eventType", event.getEventType()).increment();
+        logger.debug("Buffered {} event for {} into digest", event.getEventType(), recipient);
+        return true;
+    }
+
+    /**
+     * Why: Flush các recipients đã hết coalescing window
+     * Context: ZREM thành công mới được flush để chỉ một instance xử lý mỗi recipient.
+     *          Flushing key chỉ bị xoá sau khi emit xong; items lỗi được trả lại buffer với
+     *          backoff thay vì mất
+     */
+    public int flushDue() {
+        ApplicationProperties.Coalescing config = applicationProperties.getCoalescing();
+        Set<Object> due = redisTemplate.opsForZSet()
+                .rangeByScore(DUE_KEY, 0, System.currentTimeMillis(), 0, config.getFlushBatchSize());
+        if (due == null || due.isEmpty()) {
+            return 0;
+        }
+
+        int flushed = 0;
+        for (Object member : due) {
+            String recipient = (String) member;
+            Long claimed = redisTemplate.opsForZSet().remove(DUE_KEY, recipient);
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+
+            // Why: Key riêng cho mỗi lần flush để flushing key còn sót (restore lỗi) không bị RENAME ghi đè
+            String flushingKey = FLUSHING_KEY_PREFIX + recipient + ":" + UUID.randomUUID();
+            List<Map<String, Object>> items = drainItems(recipient, flushingKey);
+            if (items.isEmpty()) {
+                continue;
+            }
+
+            Failures failures = new Failures();
+            try {
+                emit(items, config, failures);
+            } catch (RateLimitService.RateLimitExceededException e) {
+                failures.addAll(items, true);
+                logger.warn("Digest for {} is rate limited, re-buffering {} notifications", recipient, items.size());
+            } catch (Exception e) {
+                failures.addAll(items, false);
+                logger.error("Failed to flush {} coalesced notifications for {}, re-buffering",
+                            items.size(), recipient, e);
+            }
+
+            if (failures.items.isEmpty()) {
+                flushed++;
+            }
+            complete(recipient, flushingKey, failures, config);
+        }
+        return flushed;
+    }
+
+    /**
+     * Why: Tách buffer hiện tại của recipient ra flushing key một cách atomic
+     * Context: RENAME giữ TTL của items key, events đến sau sẽ mở window mới. Flushing key
+     *          được giữ đến khi emit xong để crash giữa chừng không làm mất items ngay
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> drainItems(String recipient, String flushingKey) {
+        try {
+            redisTemplate.rename(ITEMS_KEY_PREFIX + recipient, flushingKey);
+        } catch (RuntimeException e) {
+            // Why: Items đã expire hoặc đã được flush
+            return List.of();
+        }
+
+        List<Object> raw = redisTemplate.opsForList().range(flushingKey, 0, -1);
+        List<Map<String, Object>> items = new ArrayList<>();
+        if (raw != null) {
+            for (Object entry : raw) {
+                items.add((Map<String, Object>) entry);
+            }
+        }
+        if (items.isEmpty()) {
+            redisTemplate.delete(flushingKey);
+        }
+        return items;
+    }
+
+    /**
+     * Why: Trả items lỗi lại buffer rồi mới xoá flushing key
+     * Context: Items được đẩy lên đầu list theo thứ tự cũ và recipient được đưa lại vào DUE_KEY
+     *          với backoff (rate limit window nếu bị rate limit). Item lỗi quá max-flush-attempts
+     *          bị drop. Restore lỗi thì flushing key được giữ đến TTL để còn điều tra
+     */
+    private void complete(String recipient, String flushingKey, Failures failures,
+                          ApplicationProperties.Coalescing config) {
+        List<Object> retry = new ArrayList<>();
+        for (Map<String, Object> item : failures.items) {
+            int attempts = ((Number) item.getOrDefault("attempts", 0)).intValue() + 1;
+            if (attempts >= config.getMaxFlushAttempts()) {
+                meterRegistry.counter("email.coalescing.dropped", "eventType", String.valueOf(item.get("eventType")))
+                        .increment();
+                logger.error("Dropping {} notification for {} after {} failed flushes",
+                            item.get("eventType"), recipient, attempts);
+                continue;
+            }
+            Map<String, Object> copy = new HashMap<>(item);
+            copy.put("attempts", attempts);
+            retry.add(copy);
+        }
+
+        try {
+            if (!retry.isEmpty()) {
+                long delaySeconds = failures.rateLimited
+                        ? applicationProperties.getAdmission().getRateLimitDeferSeconds()
+                        : config.getFlushRetrySeconds();
+                String itemsKey = ITEMS_KEY_PREFIX + recipient;
+                Collections.reverse(retry);
+                redisTemplate.opsForList().leftPushAll(itemsKey, retry);
+                redisTemplate.expire(itemsKey, delaySeconds + config.getWindowSeconds() * 3, TimeUnit.SECONDS);
+                redisTemplate.opsForZSet().add(DUE_KEY, recipient,
+                        System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delaySeconds));
+                meterRegistry.counter("email.coalescing.rebuffered").increment(retry.size());
+            }
+            redisTemplate.delete(flushingKey);
+        } catch (RuntimeException e) {
+            logger.error("Failed to re-buffer {} notifications for {}, kept in {}",
+                        retry.size(), recipient, flushingKey, e);
+        }
+    }
+
+    /**
+     * Why: Một item thì gửi như bình thường, nhiều items thì gửi digest
+     * Context: Fallback về từng email riêng nếu digest template chưa được tạo
+     */
+    private void emit(List<Map<String, Object>> items, ApplicationProperties.Coalescing config,
+                      Failures failures) {
+        if (items.size() == 1) {
+            queueIndividually(items, failures);
+            return;
+        }
+
+        String digestTemplate = config.getDigestTemplate();
+        if (emailTemplateRepository.findByTemplateNameAndIsActiveTrue(digestTemplate).isEmpty()) {
+            logger.warn("Digest template {} not found, sending {} notifications individually",
+                       digestTemplate, items.size());
+            queueIndividually(items, failures);
+            return;
+        }
+
+        Map<String, Object> latest = items.get(items.size() - 1);
+        String recipientEmail = (String) latest.get("recipientEmail");
+        String recipientName = (String) latest.get("recipientName");
+
+        List<Map<String, Object>> digestItems = new ArrayList<>();
+        int priority = Integer.MAX_VALUE;
+        // Why: Digest chỉ thuộc về một tenant khi mọi notifications đến từ cùng một server
+        String serverId = (String) latest.get("serverId");
+        for (Map<String, Object> item : items) {
+            priority = Math.min(priority, ((Number) item.get("priority")).intValue());
+            if (serverId != null && !serverId.equals(item.get("serverId"))) {
+                serverId = null;
+            }
+            if (digestItems.size() < config.getMaxItemsPerDigest()) {
+                digestItems.add(digestItem(item));
+            }
+        }
+
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("userName", recipientName);
+        templateVariables.put("userEmail", recipientEmail);
+        templateVariables.put("items", digestItems);
+        templateVariables.put("itemCount", items.size());
+        templateVariables.put("moreCount", items.size() - digestItems.size());
+
+        emailQueueService.queueEmail(recipientEmail, recipientName, digestTemplate, templateVariables,
+                priority, serverId);
+
+        meterRegistry.counter("email.coalescing.digests").increment();
+        meterRegistry.counter("email.coalescing.items").increment(items.size());
+        logger.info("Queued digest of {} notifications for {}", items.size(), recipientEmail);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> digestItem(Map<String, Object> item) {
+        Map<String, Object> digestItem = new HashMap<>((Map<String, Object>) item.get("variables"));
+        digestItem.put("eventType", item.get("eventType"));
+        return digestItem;
+    }
+
+    /**
+     * Why: Queue từng item, item lỗi được gom vào failures để re-buffer thay vì drop
+     */
+    @SuppressWarnings("unchecked")
+    private void queueIndividually(List<Map<String, Object>> items, Failures failures) {
+        for (Map<String, Object> item : items) {
+            try {
+                emailQueueService.queueEmail(
+                    (String) item.get("recipientEmail"),
+                    (String) item.get("recipientName"),
+                    (String) item.get("templateName"),
+                    (Map<String, Object>) item.get("variables"),
+                    ((Number) item.get("priority")).intValue(),
+                    (String) item.get("serverId")
+                );
+            } catch (RateLimitService.RateLimitExceededException e) {
+                failures.add(item, true);
+            } catch (Exception e) {
+                logger.error("Failed to queue coalesced {} notification for {}",
+                           item.get("eventType"), item.get("recipientEmail"), e);
+                failures.add(item, false);
+            }
+        }
+    }
+
+    /**
+     * Why: Items chưa queue được trong một lần flush
+     */
+    private static class Failures {
+        private final List<Map<String, Object>> items = new ArrayList<>();
+        private boolean rateLimited;
+
+        private void add(Map<String, Object> item, boolean rateLimited) {
+            items.add(item);
+            this.rateLimited |= rateLimited;
+        }
+
+        private void addAll(List<Map<String, Object>> items, boolean rateLimited) {
+            this.items.addAll(items);
+            this.rateLimited |= rateLimited;
+        }
+    }
+}
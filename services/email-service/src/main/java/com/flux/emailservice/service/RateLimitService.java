@@ -1,6 +1,7 @@
 package com.flux.emailservice.service;
 
 import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.entity.EmailSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,19 +24,23 @@ public class RateLimitService {
     
     private final RedisTemplate<String, Object> redisTemplate;
     private final ApplicationProperties applicationProperties;
+    private final EmailSettingsService emailSettingsService;
 
     // Why: Key patterns cho different time windows
     private static final String HOURLY_KEY_PREFIX = "rate_limit:hourly:";
     private static final String DAILY_KEY_PREFIX = "rate_limit:daily:";
+    private static final String SUPPRESSION_KEY_PREFIX = "suppression:";
     
     private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH");
     private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     @Autowired
     public RateLimitService(RedisTemplate<String, Object> redisTemplate,
-                           ApplicationProperties applicationProperties) {
+                           ApplicationProperties applicationProperties,
+                           EmailSettingsService emailSettingsService) {
         this.redisTemplate = redisTemplate;
         this.applicationProperties = applicationProperties;
+        this.emailSettingsService = emailSettingsService;
     }
 
     /**
@@ -79,7 +84,7 @@ public class RateLimitService {
             currentCount = 0;
         }
         
-        int hourlyLimit = applicationProperties.getRateLimit().getPerHour();
+        int hourlyLimit = hourlyLimit();
         boolean allowed = currentCount < hourlyLimit;
         
         logger.debug("Hourly check for {}: {}/{} (allowed: {})", 
@@ -100,7 +105,7 @@ public class RateLimitService {
             currentCount = 0;
         }
         
-        int dailyLimit = applicationProperties.getRateLimit().getPerDay();
+        int dailyLimit = dailyLimit();
         boolean allowed = currentCount < dailyLimit;
         
         logger.debug("Daily check for {}: {}/{} (allowed: {})", 
@@ -109,6 +114,19 @@ public class RateLimitService {
         return allowed;
     }
 
+    /**
+     * Why: Limits đọc từ settings snapshot, thiếu key thì dùng app.email.rate-limit
+     */
+    private int hourlyLimit() {
+        return emailSettingsService.getInt(EmailSettings.SettingKeys.RATE_LIMIT_HOUR,
+                applicationProperties.getRateLimit().getPerHour());
+    }
+
+    private int dailyLimit() {
+        return emailSettingsService.getInt(EmailSettings.SettingKeys.RATE_LIMIT_DAY,
+                applicationProperties.getRateLimit().getPerDay());
+    }
+
     /**
      * Why: Increment hourly counter
      * Context: Track emails sent trong current hour
@@ -168,10 +186,10 @@ public class RateLimitService {
         return new RateLimitStatus(
             recipientEmail,
             hourlyCount != null ? hourlyCount : 0,
-            applicationProperties.getRateLimit().getPerHour(),
+            hourlyLimit(),
             hourlyTtl != null ? hourlyTtl : 0,
             dailyCount != null ? dailyCount : 0,
-            applicationProperties.getRateLimit().getPerDay(),
+            dailyLimit(),
             dailyTtl != null ? dailyTtl : 0
         );
     }
@@ -213,11 +231,32 @@ public class RateLimitService {
         return applicationProperties.getSecurity().getBlacklistDomains().contains(domain);
     }
 
+    /**
+     * Why: Suppress recipient sau permanent failure
+     * Context: Hard bounces (vd. 550 5.1.1) không được gửi lại trong suppression TTL
+     */
+    public void suppressRecipient(String recipientEmail, String reason) {
+        String key = SUPPRESSION_KEY_PREFIX + recipientEmail.toLowerCase();
+        int ttlDays = applicationProperties.getSecurity().getSuppressionTtlDays();
+
+        redisTemplate.opsForValue().set(key, reason, Duration.ofDays(ttlDays));
+        logger.warn("Recipient suppressed for {} days: {} ({})", ttlDays, recipientEmail, reason);
+    }
+
+    /**
+     * Why: Check if recipient is suppressed
+     * Context: Skip recipients đã hard bounce trước đó
+     */
+    public boolean isSuppressed(String recipientEmail) {
+        Boolean exists = redisTemplate.hasKey(SUPPRESSION_KEY_PREFIX + recipientEmail.toLowerCase());
+        return Boolean.TRUE.equals(exists);
+    }
+
     /**
      * Why: Extract domain from email
-     * Context: Domain-based filtering
+     * Context: Domain-based filtering và per-domain send shaping
      */
-    private String extractDomain(String email) {
+    public static String extractDomain(String email) {
         int atIndex = email.lastIndexOf('@');
         return atIndex > 0 ? email.substring(atIndex + 1).toLowerCase() : "";
     }
@@ -260,4 +299,16 @@ public class RateLimitService {
         public boolean isDailyLimitExceeded() { return dailyCount >= dailyLimit; }
         public boolean isAllowed() { return !isHourlyLimitExceeded() && !isDailyLimitExceeded(); }
     }
+
+    /**
+     * Why: Recipient vượt hourly/daily limit
+     * Context: Tách khỏi RuntimeException chung để listener park event thay vì dead-letter
+     */
+    public static class RateLimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public RateLimitExceededException(String recipientEmail) {
+            super("Rate limit exceeded for recipient: " + recipientEmail);
+        }
+    }
 }
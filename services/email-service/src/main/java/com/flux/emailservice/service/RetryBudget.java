@@ -0,0 +1,77 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: Global retry budget để chặn retry storms khi relay gặp sự cố
+ * Context: Mỗi send attempt nạp budgetRatio tokens, mỗi retry tiêu 1 token.
+ *          Khi hết budget, retries bị dời xa thay vì dồn thêm load lên relay
+ */
+@Component
+public class RetryBudget {
+
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    @Autowired
+    public RetryBudget(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+        this.tokens = maxTokens();
+
+        Gauge.builder("email.retry.budget.tokens", this, RetryBudget::availableTokens)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Why: Ghi nhận send attempts
+     * Context: Called khi dispatcher claim emails để gửi
+     */
+    public synchronized void recordAttempts(int attempts) {
+        refill();
+        tokens = Math.min(maxTokens(), tokens + attempts * applicationProperties.getRetry().getBudgetRatio());
+    }
+
+    /**
+     * Why: Xin phép retry một email
+     * Context: False nghĩa là budget đã cạn, retry phải được deferred
+     */
+    public synchronized boolean tryAcquireRetry() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+
+        meterRegistry.counter("email.retry.budget.exhausted").increment();
+        return false;
+    }
+
+    private synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    /**
+     * Why: Baseline refill để low-traffic periods vẫn retry được
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(maxTokens(), tokens + elapsedSeconds * applicationProperties.getRetry().getBudgetMinPerSecond());
+        lastRefillNanos = now;
+    }
+
+    private double maxTokens() {
+        return applicationProperties.getRetry().getBudgetMaxTokens();
+    }
+}
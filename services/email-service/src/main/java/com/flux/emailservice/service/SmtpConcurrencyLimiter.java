@@ -0,0 +1,285 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.entity.EmailSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Why: Adaptive (AIMD) concurrency limiter cho SMTP relay
+ * Context: Static pool size của emailTaskExecutor không phản ánh capacity thật của relay.
+ *          Limit tăng cộng dần khi latency và error rate ổn, giảm nhân khi relay
+ *          trả lỗi tạm thời (421/451) hoặc latency spike
+ */
+@Component
+public class SmtpConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmtpConcurrencyLimiter.class);
+
+    // Why: EWMA weight cho latency và error rate - đủ nhạy nhưng không giật theo từng outlier
+    private static final double SMOOTHING = 0.2;
+
+    // Why: Callers không thuộc lane nào chỉ dùng phần capacity không reserved
+    private static final String SHARED_LANE = "shared";
+
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+    private final EmailSettingsService emailSettingsService;
+    private final ConcurrentMap<String, RelayLimit> relayLimits = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SmtpConcurrencyLimiter(ApplicationProperties applicationProperties,
+                                  MeterRegistry meterRegistry,
+                                  EmailSettingsService emailSettingsService) {
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+        this.emailSettingsService = emailSettingsService;
+    }
+
+    /**
+     * Why: Lấy permit trước khi gọi relay
+     * Context: Block tối đa acquireTimeoutMs, sau đó fail như SMTP error để email được retry
+     */
+    public Permit acquire(String relay) {
+        return acquire(relay, null);
+    }
+
+    /**
+     * Why: Lấy permit cho một dispatch lane
+     * Context: Phần reserved share chưa dùng của các lanes khác không được lấn vào,
+     *          nên bulk lane không thể chiếm hết capacity của relay
+     */
+    public Permit acquire(String relay, ApplicationProperties.Dispatch.Lane lane) {
+        RelayLimit relayLimit = relayLimits.computeIfAbsent(relay, this::createRelayLimit);
+        String laneName = lane != null ? lane.getName() : SHARED_LANE;
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(config().getAcquireTimeoutMs());
+        int maxLimit = maxLimit();
+
+        synchronized (relayLimit) {
+            // Why: Max hạ xuống lúc runtime có hiệu lực ngay, không đợi AIMD giảm dần
+            if (relayLimit.limit > maxLimit) {
+                relayLimit.limit = maxLimit;
+            }
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (relayLimit.inFlight >= (int) relayLimit.limit - reservedByOtherLanes(relayLimit, laneName)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    relayLimit.rejections.increment();
+                    throw new MailSendException("SMTP concurrency limit reached for relay: " + relay);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(relayLimit, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MailSendException("Interrupted while waiting for SMTP permit: " + relay, e);
+                }
+            }
+            relayLimit.inFlight++;
+            relayLimit.laneInFlight.merge(laneName, 1, Integer::sum);
+        }
+
+        return new Permit(relayLimit, laneName, System.nanoTime());
+    }
+
+    /**
+     * Why: Số slots đang được giữ chỗ cho các lanes khác mà chúng chưa dùng tới
+     * Context: Floor của share * limit để limit nhỏ không bị reservations khoá cứng
+     */
+    private int reservedByOtherLanes(RelayLimit relayLimit, String laneName) {
+        int reserved = 0;
+        for (ApplicationProperties.Dispatch.Lane other : applicationProperties.getDispatch().getLanes()) {
+            if (other.getName().equals(laneName) || other.getReservedSmtpShare() <= 0) {
+                continue;
+            }
+            int slots = (int) Math.floor(relayLimit.limit * other.getReservedSmtpShare());
+            int used = relayLimit.laneInFlight.getOrDefault(other.getName(), 0);
+            reserved += Math.max(0, slots - used);
+        }
+        return reserved;
+    }
+
+    /**
+     * Why: Current limit của relay
+     * Context: Monitoring và debugging
+     */
+    public int getCurrentLimit(String relay) {
+        RelayLimit relayLimit = relayLimits.get(relay);
+        return relayLimit != null ? (int) relayLimit.limit : config().getInitialLimit();
+    }
+
+    private RelayLimit createRelayLimit(String relay) {
+        RelayLimit relayLimit = new RelayLimit(relay, config().getInitialLimit());
+
+        // Why: Expose limit, in-flight và latency per relay cho Prometheus
+        Gauge.builder("email.smtp.concurrency.limit", relayLimit, r -> r.limit)
+                .tag("relay", relay)
+                .register(meterRegistry);
+        Gauge.builder("email.smtp.concurrency.inflight", relayLimit, r -> r.inFlight)
+                .tag("relay", relay)
+                .register(meterRegistry);
+        Gauge.builder("email.smtp.latency.smoothed", relayLimit, r -> r.smoothedLatencyMs)
+                .tag("relay", relay)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        relayLimit.rejections = Counter.builder("email.smtp.concurrency.rejected")
+                .tag("relay", relay)
+                .register(meterRegistry);
+        relayLimit.decreases = Counter.builder("email.smtp.concurrency.decreased")
+                .tag("relay", relay)
+                .register(meterRegistry);
+
+        logger.info("Created SMTP concurrency limit for relay {} with initial limit {}",
+                   relay, relayLimit.limit);
+        return relayLimit;
+    }
+
+    private ApplicationProperties.Smtp.Concurrency config() {
+        return applicationProperties.getSmtp().getConcurrency();
+    }
+
+    /**
+     * Why: Trần của AIMD limit, tunable qua email_settings khi relay có sự cố
+     */
+    private int maxLimit() {
+        return Math.max(1, emailSettingsService.getInt(EmailSettings.SettingKeys.SMTP_MAX_CONCURRENCY,
+                config().getMaxLimit()));
+    }
+
+    /**
+     * Why: Apply AIMD rule sau mỗi SMTP call
+     * Context: Called khi permit được release
+     */
+    private void onRelease(RelayLimit relayLimit, String laneName, Outcome outcome, double latencyMs) {
+        ApplicationProperties.Smtp.Concurrency config = config();
+
+        synchronized (relayLimit) {
+            // Why: Chỉ tăng limit khi limit thực sự được dùng, tránh limit phình to lúc idle
+            boolean saturated = relayLimit.inFlight >= relayLimit.limit / 2;
+            relayLimit.inFlight--;
+            relayLimit.laneInFlight.merge(laneName, -1, Integer::sum);
+
+            switch (outcome) {
+                case SUCCESS -> {
+                    boolean latencySpike = latencyMs > config.getLatencyThresholdMs()
+                            || (relayLimit.smoothedLatencyMs > 0
+                                && latencyMs > relayLimit.smoothedLatencyMs * config.getLatencySpikeFactor());
+                    relayLimit.recordLatency(latencyMs);
+                    relayLimit.recordError(false);
+
+                    if (latencySpike) {
+                        decrease(relayLimit, config, "latency spike " + Math.round(latencyMs) + "ms");
+                    } else if (saturated && relayLimit.errorRate <= config.getMaxErrorRate()) {
+                        // Why: +1 mỗi "window" đầy đủ, giống TCP congestion avoidance
+                        relayLimit.limit = Math.min(maxLimit(),
+                                relayLimit.limit + 1.0 / relayLimit.limit);
+                    }
+                }
+                case DROPPED -> {
+                    relayLimit.recordError(true);
+                    decrease(relayLimit, config, "temporary failure");
+                }
+                case IGNORED -> {
+                    // Why: Permanent failures (vd. 550) không nói gì về capacity của relay
+                }
+            }
+
+            relayLimit.notifyAll();
+        }
+    }
+
+    private void decrease(RelayLimit relayLimit, ApplicationProperties.Smtp.Concurrency config,
+                          String reason) {
+        // Why: Một đợt lỗi đồng thời chỉ cắt limit một lần trong mỗi round trip
+        long now = System.nanoTime();
+        long cooldownNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(100L, (long) relayLimit.smoothedLatencyMs));
+        if (now - relayLimit.lastDecreaseNanos < cooldownNanos) {
+            return;
+        }
+
+        double previous = relayLimit.limit;
+        relayLimit.limit = Math.max(config.getMinLimit(), relayLimit.limit * config.getBackoffRatio());
+        relayLimit.lastDecreaseNanos = now;
+        relayLimit.decreases.increment();
+
+        logger.warn("SMTP concurrency limit for relay {} reduced {} -> {} ({})",
+                   relayLimit.relay, Math.round(previous), Math.round(relayLimit.limit), reason);
+    }
+
+    /**
+     * Why: Kết quả SMTP call từ góc nhìn congestion control
+     */
+    public enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+
+    /**
+     * Why: Handle cho một in-flight SMTP call
+     * Context: Phải release đúng một lần, thường trong finally block
+     */
+    public class Permit {
+        private final RelayLimit relayLimit;
+        private final String laneName;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(RelayLimit relayLimit, String laneName, long startNanos) {
+            this.relayLimit = relayLimit;
+            this.laneName = laneName;
+            this.startNanos = startNanos;
+        }
+
+        public void release(Outcome outcome) {
+            if (released) {
+                return;
+            }
+            released = true;
+            double latencyMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+            onRelease(relayLimit, laneName, outcome, latencyMs);
+        }
+    }
+
+    /**
+     * Why: Mutable state per relay, guarded bởi monitor của chính nó
+     */
+    private static class RelayLimit {
+        private final String relay;
+        private volatile double limit;
+        private volatile int inFlight;
+        private final Map<String, Integer> laneInFlight = new HashMap<>();
+        private volatile double smoothedLatencyMs;
+        private double errorRate;
+        private long lastDecreaseNanos;
+        private Counter rejections;
+        private Counter decreases;
+
+        private RelayLimit(String relay, int initialLimit) {
+            this.relay = relay;
+            this.limit = initialLimit;
+            this.lastDecreaseNanos = System.nanoTime() - TimeUnit.MINUTES.toNanos(1);
+        }
+
+        private void recordLatency(double latencyMs) {
+            smoothedLatencyMs = smoothedLatencyMs == 0
+                    ? latencyMs
+                    : smoothedLatencyMs + SMOOTHING * (latencyMs - smoothedLatencyMs);
+        }
+
+        private void recordError(boolean error) {
+            errorRate = errorRate + SMOOTHING * ((error ? 1.0 : 0.0) - errorRate);
+        }
+    }
+}
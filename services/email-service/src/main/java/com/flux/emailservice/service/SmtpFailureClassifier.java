@@ -0,0 +1,226 @@
+package com.flux.emailservice.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Why: Phân loại SMTP failures thành permanent và transient
+ * Context: 550 "no such user" không bao giờ thành công khi retry, 421 "try later" thì có.
+ *          Parse basic reply code (RFC 5321) và enhanced status code (RFC 3463)
+ */
+@Component
+public class SmtpFailureClassifier {
+
+    // Why: "550 5.1.1 <user@x.com>: Recipient address rejected" hoặc "421-4.7.0 Try again later"
+    private static final Pattern SMTP_REPLY = Pattern.compile(
+            "^([245]\\d{2})[ -](?:([245]\\.\\d{1,3}\\.\\d{1,3})\\b)?", Pattern.DOTALL);
+    // Why: RFC 3463 - enhanced status code đứng ngay sau reply code của từng dòng reply; match ở chỗ
+    //      khác trong text (IP, version, địa chỉ sender được quote) không phải status code
+    private static final Pattern ENHANCED_STATUS = Pattern.compile(
+            "^[245]\\d{2}[ -]([245]\\.\\d{1,3}\\.\\d{1,3})\\b", Pattern.MULTILINE);
+
+    /**
+     * Why: Classify exception từ SMTP send hoặc message preparation
+     * Context: Walk toàn bộ cause chain và per-message exceptions của MailSendException
+     */
+    public Classification classify(Throwable failure) {
+        if (failure instanceof MailParseException || failure instanceof MailPreparationException) {
+            return Classification.permanent(null, null, failure.getMessage());
+        }
+        if (failure instanceof MailAuthenticationException) {
+            // Why: Credentials sai là lỗi cấu hình relay, không phải lỗi của message
+            return Classification.transientFailure(null, null, failure.getMessage());
+        }
+
+        boolean ioFailure = false;
+        for (Throwable candidate : collectCandidates(failure)) {
+            Classification classification = parseReply(candidate.getMessage());
+            if (classification != null) {
+                return classification;
+            }
+            if (candidate instanceof AddressException) {
+                return Classification.permanent(null, null, candidate.getMessage());
+            }
+            if (candidate instanceof IOException) {
+                ioFailure = true;
+            }
+        }
+
+        if (ioFailure) {
+            return Classification.transientFailure(null, null, "Connection failure: " + failure.getMessage());
+        }
+        if (failure instanceof MessagingException) {
+            // Why: Lỗi build MIME message không tự hết khi retry
+            return Classification.permanent(null, null, failure.getMessage());
+        }
+
+        // Why: Không rõ nguyên nhân thì retry - an toàn hơn là drop email
+        return Classification.unknown(failure.getMessage());
+    }
+
+    /**
+     * Why: Relay chắc chắn chưa accept message nên gửi lại không tạo email trùng
+     * Context: Connect/auth lỗi hoặc relay trả 4xx/5xx reply (kể cả reply cho DATA) là reject rõ ràng.
+     *          Read timeout hay IOException không có reply code có thể xảy ra sau khi relay đã
+     *          accept DATA (chờ final reply, QUIT) nên không tính - connect timeout cũng vậy vì
+     *          không phân biệt được với read timeout
+     */
+    public boolean isDefinitelyNotAccepted(Throwable failure) {
+        if (failure instanceof MailAuthenticationException || failure instanceof MailParseException
+                || failure instanceof MailPreparationException) {
+            return true;
+        }
+
+        for (Throwable candidate : collectCandidates(failure)) {
+            if (parseReply(candidate.getMessage()) != null
+                    || candidate instanceof AddressException
+                    || candidate instanceof ConnectException
+                    || candidate instanceof NoRouteToHostException
+                    || candidate instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Why: Parse reply line của SMTP server
+     * Context: Enhanced status code được ưu tiên vì chính xác hơn basic code. Multiline reply có thể
+     *          chỉ ghi enhanced code ở dòng tiếp theo ("550-Mailbox unavailable\r\n550 5.1.1 ...")
+     */
+    Classification parseReply(String message) {
+        if (message == null) {
+            return null;
+        }
+
+        String trimmed = message.trim();
+        Matcher matcher = SMTP_REPLY.matcher(trimmed);
+        if (!matcher.find()) {
+            return null;
+        }
+
+        int replyCode = Integer.parseInt(matcher.group(1));
+        String enhancedStatus = matcher.group(2);
+        if (enhancedStatus == null) {
+            Matcher enhancedMatcher = ENHANCED_STATUS.matcher(trimmed);
+            enhancedStatus = enhancedMatcher.find() ? enhancedMatcher.group(1) : null;
+        }
+
+        char statusClass = enhancedStatus != null ? enhancedStatus.charAt(0) : trimmed.charAt(0);
+        return switch (statusClass) {
+            case '5' -> Classification.permanent(replyCode, enhancedStatus, trimmed);
+            case '4' -> Classification.transientFailure(replyCode, enhancedStatus, trimmed);
+            default -> null;
+        };
+    }
+
+    private List<Throwable> collectCandidates(Throwable failure) {
+        List<Throwable> candidates = new ArrayList<>();
+        if (failure instanceof MailSendException sendException) {
+            for (Exception messageException : sendException.getMessageExceptions()) {
+                addCauseChain(messageException, candidates);
+            }
+        }
+        addCauseChain(failure, candidates);
+        return candidates;
+    }
+
+    private void addCauseChain(Throwable throwable, List<Throwable> candidates) {
+        Throwable current = throwable;
+        while (current != null && !candidates.contains(current)) {
+            candidates.add(current);
+            if (current instanceof MessagingException messagingException
+                    && messagingException.getNextException() != null) {
+                addCauseChain(messagingException.getNextException(), candidates);
+            }
+            current = current.getCause();
+        }
+    }
+
+    /**
+     * Why: Loại failure quyết định retry policy
+     */
+    public enum FailureType {
+        PERMANENT,
+        TRANSIENT,
+        UNKNOWN
+    }
+
+    /**
+     * Why: Kết quả classification cho một failure
+     * Context: Mang theo reply code để log và feed suppression list
+     */
+    public static class Classification {
+        private final FailureType type;
+        private final Integer replyCode;
+        private final String enhancedStatus;
+        private final String detail;
+
+        private Classification(FailureType type, Integer replyCode, String enhancedStatus, String detail) {
+            this.type = type;
+            this.replyCode = replyCode;
+            this.enhancedStatus = enhancedStatus;
+            this.detail = detail;
+        }
+
+        public static Classification permanent(Integer replyCode, String enhancedStatus, String detail) {
+            return new Classification(FailureType.PERMANENT, replyCode, enhancedStatus, detail);
+        }
+
+        public static Classification transientFailure(Integer replyCode, String enhancedStatus, String detail) {
+            return new Classification(FailureType.TRANSIENT, replyCode, enhancedStatus, detail);
+        }
+
+        public static Classification unknown(String detail) {
+            return new Classification(FailureType.UNKNOWN, null, null, detail);
+        }
+
+        public boolean isPermanent() {
+            return type == FailureType.PERMANENT;
+        }
+
+        public boolean isTransient() {
+            return type == FailureType.TRANSIENT;
+        }
+
+        /**
+         * Why: Failure do chính mailbox người nhận (5.1.x hoặc 550/551/553 không có enhanced code)
+         * Context: Chỉ những failures này mới nên đưa recipient vào suppression list
+         */
+        public boolean isRecipientFailure() {
+            if (!isPermanent()) {
+                return false;
+            }
+            if (enhancedStatus != null) {
+                return enhancedStatus.startsWith("5.1.");
+            }
+            return replyCode != null && (replyCode == 550 || replyCode == 551 || replyCode == 553);
+        }
+
+        // Getters
+        public FailureType getType() { return type; }
+        public Integer getReplyCode() { return replyCode; }
+        public String getEnhancedStatus() { return enhancedStatus; }
+        public String getDetail() { return detail; }
+
+        @Override
+        public String toString() {
+            return String.format("Classification{type=%s, replyCode=%s, enhancedStatus=%s}",
+                               type, replyCode, enhancedStatus);
+        }
+    }
+}
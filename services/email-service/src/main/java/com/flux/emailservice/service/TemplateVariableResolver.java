@@ -0,0 +1,116 @@
+package com.flux.emailservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.Context;
+
+import java.time.Year;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Why: Layered template variables - global defaults < per-template defaults < per-recipient values
+ * Context: Constants như supportEmail, loginUrl, currentYear không còn được persist vào
+ *          template_variables của mỗi email_queue row mà được merge lúc render từ snapshot
+ *          in-memory. Defaults đến từ email_settings:
+ *            template.vars.global.<variable>          → mọi template
+ *            template.vars.<TEMPLATE_NAME>.<variable> → một template
+ *          và được rebuild mỗi khi EmailSettingsService có snapshot mới
+ */
+@Service
+public class TemplateVariableResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateVariableResolver.class);
+
+    static final String KEY_PREFIX = "template.vars.";
+    static final String GLOBAL_SCOPE = "global";
+
+    // Why: Fallback khi email_settings chưa có rows, giữ nguyên giá trị handlers từng hardcode
+    private static final Map<String, Object> BUILT_IN_GLOBALS = Map.of(
+            "supportEmail", "support@flux.com"
+    );
+    private static final Map<String, Map<String, Object>> BUILT_IN_TEMPLATE_DEFAULTS = Map.of(
+            "WELCOME_EMAIL", Map.of("loginUrl", "https://flux.com/login"),
+            "PASSWORD_RESET", Map.of("expiryMinutes", "30")
+    );
+
+    private final EmailSettingsService emailSettingsService;
+    private volatile Snapshot snapshot;
+
+    // Why: Snapshot đầu tiên được load trước khi @EventListener được đăng ký nên đọc trực tiếp
+    @Autowired
+    public TemplateVariableResolver(EmailSettingsService emailSettingsService) {
+        this.emailSettingsService = emailSettingsService;
+        this.snapshot = buildSnapshot(emailSettingsService.current().withPrefix(KEY_PREFIX));
+    }
+
+    @EventListener
+    public void onSettingsReloaded(EmailSettingsService.Snapshot settings) {
+        snapshot = buildSnapshot(settings.withPrefix(KEY_PREFIX));
+    }
+
+    // Why: Snapshot event chỉ có khi settings đổi, currentYear vẫn phải sang năm mới
+    @Scheduled(cron = "0 0 0 * * *")
+    public void refreshDaily() {
+        snapshot = buildSnapshot(emailSettingsService.current().withPrefix(KEY_PREFIX));
+    }
+
+    /**
+     * Why: Đưa variables vào Thymeleaf context theo thứ tự layer
+     * Context: Context tự copy vào map riêng nên không cần tạo merged map trung gian
+     */
+    public void populate(Context context, String templateName, Map<String, Object> variables) {
+        Snapshot current = snapshot;
+        context.setVariables(current.globals);
+        Map<String, Object> templateDefaults = current.templateDefaults.get(templateName);
+        if (templateDefaults != null) {
+            context.setVariables(templateDefaults);
+        }
+        if (variables != null) {
+            context.setVariables(variables);
+        }
+    }
+
+    private static Snapshot buildSnapshot(Map<String, String> settings) {
+        Map<String, Object> globals = new HashMap<>(BUILT_IN_GLOBALS);
+        Map<String, Map<String, Object>> templateDefaults = new HashMap<>();
+        BUILT_IN_TEMPLATE_DEFAULTS.forEach((name, defaults) -> templateDefaults.put(name, new HashMap<>(defaults)));
+
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            String key = setting.getKey().substring(KEY_PREFIX.length());
+            int separator = key.indexOf('.');
+            if (separator <= 0 || separator == key.length() - 1) {
+                logger.warn("Ignoring malformed template variable setting: {}", setting.getKey());
+                continue;
+            }
+            String scope = key.substring(0, separator);
+            String variable = key.substring(separator + 1);
+            if (GLOBAL_SCOPE.equals(scope)) {
+                globals.put(variable, setting.getValue());
+            } else {
+                templateDefaults.computeIfAbsent(scope, name -> new HashMap<>()).put(variable, setting.getValue());
+            }
+        }
+
+        // Why: Tính lại mỗi lần refresh thay vì mỗi email
+        globals.put("currentYear", String.valueOf(Year.now().getValue()));
+        return new Snapshot(globals, templateDefaults);
+    }
+
+    /**
+     * Why: Immutable snapshot, thay thế nguyên khối khi refresh
+     */
+    private static class Snapshot {
+        private final Map<String, Object> globals;
+        private final Map<String, Map<String, Object>> templateDefaults;
+
+        private Snapshot(Map<String, Object> globals, Map<String, Map<String, Object>> templateDefaults) {
+            this.globals = globals;
+            this.templateDefaults = templateDefaults;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.dto.DispatchCandidate;
+import com.flux.emailservice.entity.EmailQueue;
+import com.flux.emailservice.entity.EmailTemplate;
+import com.flux.emailservice.entity.EmailTemplateVersion;
+import com.flux.emailservice.repository.EmailTemplateVersionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Why: In-process cache của template versions theo id
+ * Context: Versions immutable nên cache vĩnh viễn, không cần invalidation giữa instances.
+ *          Chỉ có version mới khi template được edit nên map không cần eviction
+ */
+@Service
+public class TemplateVersionRegistry {
+
+    private final EmailTemplateVersionRepository emailTemplateVersionRepository;
+    private final EmailTemplateService emailTemplateService;
+
+    private final ConcurrentMap<Long, EmailTemplateVersion> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TemplateVersionRegistry(EmailTemplateVersionRepository emailTemplateVersionRepository,
+                                   EmailTemplateService emailTemplateService) {
+        this.emailTemplateVersionRepository = emailTemplateVersionRepository;
+        this.emailTemplateService = emailTemplateService;
+    }
+
+    /**
+     * Why: Version để render một email
+     * Context: Version đã pin lúc enqueue, rows cũ chưa pin thì dùng current version
+     */
+    public EmailTemplateVersion forEmail(EmailQueue email, EmailTemplate template) {
+        Long versionId = email.getTemplateVersionId();
+        return versionId != null ? get(versionId) : current(template);
+    }
+
+    /**
+     * Why: Version để render một dispatch candidate, resolve chỉ bằng ids trong projection
+     * Context: Pinned version trước, sau đó current version của template; template chưa có
+     *          version nào thì tạo version đầu tiên
+     */
+    public EmailTemplateVersion forCandidate(DispatchCandidate email) {
+        Long versionId = email.getTemplateVersionId() != null
+                ? email.getTemplateVersionId()
+                : email.getTemplateCurrentVersionId();
+        if (versionId == null) {
+            versionId = emailTemplateService.publishInitialVersion(email.getTemplateId());
+        }
+        return get(versionId);
+    }
+
+    /**
+     * Why: Current version của template, tạo version đầu tiên nếu template chưa có
+     */
+    public EmailTemplateVersion current(EmailTemplate template) {
+        Long versionId = template.getCurrentVersionId();
+        if (versionId == null) {
+            versionId = emailTemplateService.publishInitialVersion(template.getId());
+            template.setCurrentVersionId(versionId);
+        }
+        return get(versionId);
+    }
+
+    /**
+     * Why: Lookup version theo id, miss thì load từ DB một lần
+     * Context: Không dùng computeIfAbsent để DB query không giữ lock của map bin. Repository
+     *          đọc primary, kể cả version forCandidate vừa publish
+     */
+    public EmailTemplateVersion get(Long versionId) {
+        EmailTemplateVersion version = versions.get(versionId);
+        if (version != null) {
+            return version;
+        }
+        version = emailTemplateVersionRepository.findById(versionId)
+                .orElseThrow(() -> new RuntimeException("Template version not found: " + versionId));
+        EmailTemplateVersion existing = versions.putIfAbsent(versionId, version);
+        return existing != null ? existing : version;
+    }
+}
@@ -0,0 +1,173 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.dto.DispatchCandidate;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Why: Deficit round robin (DRR) giữa Flux servers khi chọn emails để dispatch
+ * Context: Mỗi round một server được quantum tỉ lệ với weight; server nhỏ luôn có lượt
+ *          trong batch kế tiếp, còn server lớn lấy toàn bộ phần throughput còn dư. System mail
+ *          (không gắn server: welcome, password reset...) không tham gia DRR mà được chọn trước,
+ *          nếu không nó chỉ nhận 1/(N+1) batch khi có N servers đang có backlog
+ */
+@Component
+public class TenantFairScheduler {
+
+    private final ApplicationProperties applicationProperties;
+    private final MeterRegistry meterRegistry;
+
+    // Why: Deficit được giữ qua các polls của cùng lane để fairness tính trên thời gian dài
+    private final ConcurrentMap<String, Map<String, Double>> deficitsByLane = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, QuotaWindow> quotaWindows = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TenantFairScheduler(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.applicationProperties = applicationProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Why: Chọn tối đa batchSize emails từ candidates theo DRR
+     * Context: admit là per-email gate (vd. domain shaping); email bị admit từ chối không tốn deficit
+     */
+    public Selection select(String lane, List<DispatchCandidate> candidates, int batchSize,
+                            Predicate<DispatchCandidate> admit) {
+        Map<String, Deque<DispatchCandidate>> queues = new LinkedHashMap<>();
+        List<DispatchCandidate> selected = new ArrayList<>(batchSize);
+        int skipped = 0;
+
+        for (DispatchCandidate email : candidates) {
+            if (email.getServerId() != null) {
+                queues.computeIfAbsent(email.getServerId(), key -> new ArrayDeque<>()).add(email);
+            } else if (selected.size() < batchSize) {
+                if (admit.test(email)) {
+                    selected.add(email);
+                } else {
+                    skipped++;
+                }
+            }
+        }
+
+        Map<String, Double> deficits = deficitsByLane.computeIfAbsent(lane, key -> new HashMap<>());
+
+        synchronized (deficits) {
+            while (selected.size() < batchSize && !queues.isEmpty()) {
+                Iterator<Map.Entry<String, Deque<DispatchCandidate>>> tenants = queues.entrySet().iterator();
+                while (tenants.hasNext() && selected.size() < batchSize) {
+                    Map.Entry<String, Deque<DispatchCandidate>> entry = tenants.next();
+                    String tenant = entry.getKey();
+                    Deque<DispatchCandidate> queue = entry.getValue();
+
+                    double deficit = deficits.getOrDefault(tenant, 0.0) + weightOf(tenant);
+                    while (deficit >= 1.0 && !queue.isEmpty() && selected.size() < batchSize) {
+                        if (!tryConsumeQuota(tenant)) {
+                            meterRegistry.counter("email.tenant.quota.exceeded").increment();
+                            queue.clear();
+                            break;
+                        }
+
+                        DispatchCandidate email = queue.poll();
+                        if (admit.test(email)) {
+                            selected.add(email);
+                            deficit -= 1.0;
+                        } else {
+                            releaseQuota(tenant);
+                            skipped++;
+                        }
+                    }
+
+                    if (queue.isEmpty()) {
+                        // Why: DRR rule - tenant hết backlog không được tích luỹ deficit
+                        deficits.remove(tenant);
+                        tenants.remove();
+                    } else {
+                        deficits.put(tenant, deficit);
+                    }
+                }
+            }
+        }
+
+        return new Selection(selected, skipped);
+    }
+
+    private double weightOf(String tenant) {
+        ApplicationProperties.Tenancy config = applicationProperties.getTenancy();
+        return Math.max(0.01, config.getWeights().getOrDefault(tenant, config.getDefaultWeight()));
+    }
+
+    /**
+     * Why: Optional per-tenant quota trong cửa sổ một phút
+     */
+    private boolean tryConsumeQuota(String tenant) {
+        ApplicationProperties.Tenancy config = applicationProperties.getTenancy();
+        int quota = config.getQuotasPerMinute().getOrDefault(tenant, config.getDefaultQuotaPerMinute());
+        if (quota <= 0) {
+            return true;
+        }
+        return quotaWindows.computeIfAbsent(tenant, key -> new QuotaWindow()).tryConsume(quota);
+    }
+
+    private void releaseQuota(String tenant) {
+        QuotaWindow window = quotaWindows.get(tenant);
+        if (window != null) {
+            window.release();
+        }
+    }
+
+    /**
+     * Why: Fixed one-minute window counter cho quota
+     */
+    private static class QuotaWindow {
+        private long windowStartMillis;
+        private int used;
+
+        private synchronized boolean tryConsume(int quota) {
+            long now = System.currentTimeMillis();
+            if (now - windowStartMillis >= 60_000) {
+                windowStartMillis = now;
+                used = 0;
+            }
+            if (used >= quota) {
+                return false;
+            }
+            used++;
+            return true;
+        }
+
+        private synchronized void release() {
+            used = Math.max(0, used - 1);
+        }
+    }
+
+    /**
+     * Why: Kết quả của một lần select
+     */
+    public static class Selection {
+        private final List<DispatchCandidate> selected;
+        private final int skipped;
+
+        public Selection(List<DispatchCandidate> selected, int skipped) {
+            this.selected = selected;
+            this.skipped = skipped;
+        }
+
+        // Getters
+        public List<DispatchCandidate> getSelected() { return selected; }
+        public int getSkipped() { return skipped; }
+    }
+}
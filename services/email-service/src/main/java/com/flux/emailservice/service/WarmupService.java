@@ -0,0 +1,246 @@
+package com.flux.emailservice.service;
+
+import com.flux.emailservice.config.ApplicationProperties;
+import com.flux.emailservice.entity.EmailTemplate;
+import com.flux.emailservice.repository.EmailTemplateRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Why: Warm-up trước khi instance nhận traffic
+ * Context: Pod lạnh trả hết chi phí cho những emails đầu tiên: template fetch + cache fill,
+ *          Thymeleaf parse, mở DB / SMTP connections và code còn chạy interpreted. Chạy như
+ *          ApplicationRunner nên Spring Boot chỉ publish ReadinessState.ACCEPTING_TRAFFIC sau khi
+ *          warm-up xong; RabbitMQ listeners và dispatch lanes cũng đợi isComplete()
+ */
+@Service
+public class WarmupService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmupService.class);
+
+    // Why: Recipient giả, isAllowed chỉ đọc counters nên không để lại state trong Redis
+    private static final String WARMUP_RECIPIENT = "warmup@warmup.invalid";
+
+    private final EmailTemplateRepository emailTemplateRepository;
+    private final EmailTemplateService emailTemplateService;
+    private final TemplateVersionRegistry templateVersionRegistry;
+    private final RateLimitService rateLimitService;
+    private final JavaMailSender mailSender;
+    private final DataSource dataSource;
+    private final RabbitListenerEndpointRegistry listenerEndpointRegistry;
+    private final ApplicationProperties applicationProperties;
+
+    private volatile boolean complete;
+    private volatile double renderP99Ms;
+
+    @Autowired
+    public WarmupService(EmailTemplateRepository emailTemplateRepository,
+                         EmailTemplateService emailTemplateService,
+                         TemplateVersionRegistry templateVersionRegistry,
+                         RateLimitService rateLimitService,
+                         JavaMailSender mailSender,
+                         DataSource dataSource,
+                         RabbitListenerEndpointRegistry listenerEndpointRegistry,
+                         ApplicationProperties applicationProperties,
+                         MeterRegistry meterRegistry) {
+        this.emailTemplateRepository = emailTemplateRepository;
+        this.emailTemplateService = emailTemplateService;
+        this.templateVersionRegistry = templateVersionRegistry;
+        this.rateLimitService = rateLimitService;
+        this.mailSender = mailSender;
+        this.dataSource = dataSource;
+        this.listenerEndpointRegistry = listenerEndpointRegistry;
+        this.applicationProperties = applicationProperties;
+
+        Gauge.builder("email.warmup.complete", this, service -> service.complete ? 1 : 0)
+                .register(meterRegistry);
+        Gauge.builder("email.warmup.render.p99", this, service -> service.renderP99Ms)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ApplicationProperties.Warmup config = applicationProperties.getWarmup();
+        if (!config.isEnabled()) {
+            complete = true;
+            return;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + config.getTimeoutSeconds() * 1_000_000_000L;
+        try {
+            openDatabaseConnections();
+            openSmtpConnection();
+            List<EmailTemplate> templates = preloadTemplates();
+            exerciseRateLimiter(config.getRateLimiterIterations(), deadline);
+            renderUntilStable(templates, config, deadline);
+        } catch (Exception e) {
+            // Why: Warm-up lỗi không được giữ pod ở trạng thái not-ready mãi
+            logger.warn("Warm-up aborted, accepting traffic anyway: {}", e.getMessage());
+        } finally {
+            complete = true;
+            listenerEndpointRegistry.start();
+            logger.info("Warm-up finished in {} ms (render p99 {} ms)",
+                       (System.nanoTime() - start) / 1_000_000, String.format("%.2f", renderP99Ms));
+        }
+    }
+
+    /**
+     * Why: Listeners và dispatch lanes chỉ chạy sau warm-up
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Why: Mở đủ minimum-idle connections ngay thay vì để Hikari fill dần sau request đầu
+     */
+    private void openDatabaseConnections() throws SQLException {
+        int minimumIdle = 1;
+        if (dataSource.isWrapperFor(HikariDataSource.class)) {
+            minimumIdle = Math.max(1, dataSource.unwrap(HikariDataSource.class).getMinimumIdle());
+        }
+        List<Connection> connections = new ArrayList<>(minimumIdle);
+        try {
+            for (int i = 0; i < minimumIdle; i++) {
+                Connection connection = dataSource.getConnection();
+                connections.add(connection);
+                connection.isValid(1);
+            }
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+        logger.debug("Warm-up opened {} database connections", connections.size());
+    }
+
+    /**
+     * Why: DNS, TLS handshake và AUTH với relay trước email đầu tiên
+     * Context: JavaMailSender không pool connections; relay lỗi chỉ được log, dispatch tự retry
+     */
+    private void openSmtpConnection() {
+        if (!(mailSender instanceof JavaMailSenderImpl senderImpl)) {
+            return;
+        }
+        try {
+            senderImpl.testConnection();
+        } catch (Exception e) {
+            logger.warn("Warm-up SMTP connection to {}:{} failed: {}",
+                       senderImpl.getHost(), senderImpl.getPort(), e.getMessage());
+        }
+    }
+
+    /**
+     * Why: Đọc active templates, fill email-templates cache qua service proxy và load current
+     *      versions vào registry
+     * Context: Templates chưa có version được tạo version đầu tiên ở đây thay vì trên send path
+     */
+    private List<EmailTemplate> preloadTemplates() {
+        List<EmailTemplate> templates = new ArrayList<>();
+        for (EmailTemplate template : emailTemplateRepository.findByIsActiveTrueOrderByCreatedAtDesc()) {
+            templateVersionRegistry.current(template);
+            emailTemplateService.getActiveTemplateByName(template.getTemplateName()).ifPresent(templates::add);
+        }
+        logger.debug("Warm-up preloaded {} templates", templates.size());
+        return templates;
+    }
+
+    private void exerciseRateLimiter(int iterations, long deadline) {
+        for (int i = 0; i < iterations && System.nanoTime() < deadline; i++) {
+            rateLimitService.isAllowed(WARMUP_RECIPIENT);
+        }
+    }
+
+    /**
+     * Why: Render synthetic email cho mỗi template theo rounds đến khi p99 ổn định
+     * Context: Round đầu trả Thymeleaf parse (cache theo content), các rounds sau đo khi JIT
+     *          compile dần hot path; dừng khi p99 đổi ít hơn tolerance trong stable-rounds
+     *          rounds liên tiếp, hoặc hết max-rounds / timeout
+     */
+    private void renderUntilStable(List<EmailTemplate> templates, ApplicationProperties.Warmup config,
+                                   long deadline) {
+        List<EmailTemplate> renderable = new ArrayList<>();
+        for (EmailTemplate template : templates) {
+            try {
+                render(template);
+                renderable.add(template);
+            } catch (Exception e) {
+                logger.warn("Warm-up skipped template {}: {}", template.getTemplateName(), e.getMessage());
+            }
+        }
+        if (renderable.isEmpty()) {
+            return;
+        }
+
+        int samplesPerRound = renderable.size() * Math.max(1, config.getRenderRoundSize());
+        long[] samples = new long[samplesPerRound];
+        double previousP99 = -1;
+        int stable = 0;
+        for (int round = 1; round <= config.getMaxRounds() && System.nanoTime() < deadline; round++) {
+            for (int i = 0; i < samplesPerRound; i++) {
+                EmailTemplate template = renderable.get(i % renderable.size());
+                long renderStart = System.nanoTime();
+                render(template);
+                samples[i] = System.nanoTime() - renderStart;
+            }
+            Arrays.sort(samples);
+            double p99 = samples[(int) Math.ceil(samplesPerRound * 0.99) - 1] / 1_000_000.0;
+            renderP99Ms = p99;
+
+            stable = previousP99 > 0 && Math.abs(p99 - previousP99) <= previousP99 * config.getStabilityTolerance()
+                    ? stable + 1
+                    : 0;
+            previousP99 = p99;
+            if (stable >= config.getStableRounds()) {
+                logger.info("Render p99 stable at {} ms after {} rounds", String.format("%.2f", p99), round);
+                return;
+            }
+        }
+        logger.warn("Render p99 not stable after warm-up budget, last p99 {} ms", String.format("%.2f", renderP99Ms));
+    }
+
+    private void render(EmailTemplate template) {
+        emailTemplateService.processTemplate(template, templateVersionRegistry.current(template),
+                sampleVariables());
+    }
+
+    /**
+     * Why: Variables giống events thật để render đi qua cùng code paths
+     */
+    private static Map<String, Object> sampleVariables() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", "Warm Up");
+        variables.put("userEmail", WARMUP_RECIPIENT);
+        variables.put("serverName", "Warm-up Server");
+        variables.put("inviterName", "Warm Up");
+        variables.put("inviteUrl", "https://flux.com/invite/warmup");
+        variables.put("actionUrl", "https://flux.com/warmup");
+        variables.put("resetToken", "warmup");
+        variables.put("resetUrl", "https://flux.com/reset-password?token=warmup");
+        variables.put("items", List.of());
+        variables.put("itemCount", 0);
+        variables.put("moreCount", 0);
+        return variables;
+    }
+}